@@ -0,0 +1,41 @@
+plugins {
+    java
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_21
+    targetCompatibility = JavaVersion.VERSION_21
+
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+val libsignalClientPath = project.findProperty("libsignal_client_path")?.toString()
+
+dependencies {
+    implementation(project(":lib"))
+    if (libsignalClientPath == null) {
+        implementation(libs.signalservice)
+    } else {
+        implementation(libs.signalservice) {
+            exclude(group = "org.signal", module = "libsignal-client")
+        }
+        implementation(files(libsignalClientPath))
+    }
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.annprocess)
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+// Run with e.g.: ./gradlew :benchmark:jmh -PjmhArgs="SessionStoreBenchmark -p count=10000"
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = project.findProperty("jmhArgs")?.toString()?.split(" ")?.filter { it.isNotBlank() } ?: listOf()
+}
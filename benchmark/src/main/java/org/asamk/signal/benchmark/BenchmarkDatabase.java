@@ -0,0 +1,88 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.storage.AccountDatabase;
+import org.asamk.signal.manager.storage.recipients.RecipientAddress;
+import org.asamk.signal.manager.storage.recipients.RecipientStore;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Account database in a temporary directory, deleted again when closed.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final ACI SELF_ACI = ACI.from(new UUID(0, 1));
+
+    private final Path directory;
+    private final AccountDatabase database;
+
+    private BenchmarkDatabase(final Path directory, final AccountDatabase database) {
+        this.directory = directory;
+        this.database = database;
+    }
+
+    static BenchmarkDatabase create(final DatabaseProfile profile) throws IOException, SQLException {
+        final var directory = Files.createTempDirectory("signal-cli-benchmark");
+        final var database = AccountDatabase.init(directory.resolve("account.db").toFile(), profile);
+        return new BenchmarkDatabase(directory, database);
+    }
+
+    /**
+     * Creates deterministic ACIs, so all benchmark runs work with the same data.
+     */
+    static ACI[] createAcis(final int count) {
+        final var random = new Random(count);
+        final var acis = new ACI[count];
+        for (var i = 0; i < count; i++) {
+            acis[i] = ACI.from(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return acis;
+    }
+
+    AccountDatabase getDatabase() {
+        return database;
+    }
+
+    RecipientStore createRecipientStore() {
+        return new RecipientStore((connection, recipientId, toBeMergedRecipientId) -> {
+        }, () -> new RecipientAddress(SELF_ACI, "+10000000000"), () -> null, database);
+    }
+
+    /**
+     * Runs the given action count times in a single transaction, which is a lot faster than separate transactions.
+     * Stores that don't take a connection parameter use the same connection, as it's bound to the current thread.
+     */
+    void populate(final int count, final PopulateAction action) throws Exception {
+        try (final var ignored = database.bindConnection(); final var connection = database.getConnection()) {
+            connection.setAutoCommit(false);
+            for (var i = 0; i < count; i++) {
+                action.apply(connection, i);
+            }
+            connection.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        database.close();
+        try (final var files = Files.walk(directory)) {
+            for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    interface PopulateAction {
+
+        void apply(Connection connection, int index) throws Exception;
+    }
+}
@@ -0,0 +1,74 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.api.TrustNewIdentity;
+import org.asamk.signal.manager.storage.identities.IdentityInfo;
+import org.asamk.signal.manager.storage.identities.IdentityKeyStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.IdentityKey;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.state.IdentityKeyStore.Direction;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentityKeyStoreBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int count;
+
+    @Param({"DEFAULT", "PERFORMANCE"})
+    private DatabaseProfile profile;
+
+    private BenchmarkDatabase database;
+    private IdentityKeyStore identityKeyStore;
+    private ACI[] acis;
+    private IdentityKey[] identityKeys;
+
+    @Setup
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.create(profile);
+        final var recipientStore = database.createRecipientStore();
+        identityKeyStore = new IdentityKeyStore(database.getDatabase(), TrustNewIdentity.ON_FIRST_USE, recipientStore);
+        acis = BenchmarkDatabase.createAcis(count);
+        identityKeys = new IdentityKey[count];
+        database.populate(count, (connection, i) -> {
+            identityKeys[i] = IdentityKeyPair.generate().getPublicKey();
+            identityKeyStore.saveIdentity(connection, acis[i], identityKeys[i]);
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public IdentityInfo getIdentityInfo() {
+        return identityKeyStore.getIdentityInfo(acis[ThreadLocalRandom.current().nextInt(count)]);
+    }
+
+    @Benchmark
+    public boolean isTrustedIdentity() {
+        final var i = ThreadLocalRandom.current().nextInt(count);
+        return identityKeyStore.isTrustedIdentity(acis[i], identityKeys[i], Direction.SENDING);
+    }
+}
@@ -0,0 +1,69 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.util.MessageCacheUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
+import org.whispersystems.signalservice.internal.push.Envelope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCacheUtilsBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    private int contentSize;
+
+    private SignalServiceEnvelope envelope;
+    private byte[] serializedEnvelope;
+
+    @Setup
+    public void setup() throws IOException {
+        final var content = new byte[contentSize];
+        new Random(contentSize).nextBytes(content);
+        final var timestamp = System.currentTimeMillis();
+        final var proto = new Envelope.Builder().type(Envelope.Type.UNIDENTIFIED_SENDER)
+                .timestamp(timestamp)
+                .serverTimestamp(timestamp)
+                .serverGuid(UUID.randomUUID().toString())
+                .destinationServiceId(BenchmarkDatabase.createAcis(1)[0].toString())
+                .content(ByteString.of(content))
+                .urgent(true)
+                .build();
+        envelope = new SignalServiceEnvelope(proto, timestamp);
+        serializedEnvelope = storeEnvelope();
+    }
+
+    @Benchmark
+    public byte[] storeEnvelope() throws IOException {
+        final var output = new ByteArrayOutputStream(contentSize + 256);
+        MessageCacheUtils.storeEnvelope(envelope, output);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public SignalServiceEnvelope loadEnvelope() throws IOException {
+        return MessageCacheUtils.loadEnvelope(new ByteArrayInputStream(serializedEnvelope));
+    }
+}
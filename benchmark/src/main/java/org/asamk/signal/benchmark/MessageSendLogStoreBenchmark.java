@@ -0,0 +1,104 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.ManagerRuntime;
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.api.MessageSendLogRetention;
+import org.asamk.signal.manager.storage.sendLog.MessageSendLogEntry;
+import org.asamk.signal.manager.storage.sendLog.MessageSendLogStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.signalservice.api.crypto.ContentHint;
+import org.whispersystems.signalservice.api.messages.SendMessageResult;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+import org.whispersystems.signalservice.api.push.SignalServiceAddress;
+import org.whispersystems.signalservice.internal.push.Content;
+import org.whispersystems.signalservice.internal.push.DataMessage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSendLogStoreBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int count;
+
+    @Param({"DEFAULT", "PERFORMANCE"})
+    private DatabaseProfile profile;
+
+    private BenchmarkDatabase database;
+    private MessageSendLogStore messageSendLogStore;
+    private ACI[] acis;
+    private long startTimestamp;
+    private AtomicLong nextTimestamp;
+
+    @Setup
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.create(profile);
+        final var runtime = ManagerRuntime.getDefault();
+        messageSendLogStore = new MessageSendLogStore(database.getDatabase(),
+                false,
+                MessageSendLogRetention.DEFAULT,
+                runtime.getScheduler(),
+                runtime.newAccountExecutor());
+        acis = BenchmarkDatabase.createAcis(count);
+        startTimestamp = System.currentTimeMillis();
+        database.populate(count,
+                (connection, i) -> messageSendLogStore.insertIfPossible(startTimestamp + i,
+                        createResult(acis[i], startTimestamp + i),
+                        ContentHint.RESENDABLE,
+                        true));
+        nextTimestamp = new AtomicLong(startTimestamp + count);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        messageSendLogStore.close();
+        database.close();
+    }
+
+    @Benchmark
+    public long insertIfPossible() {
+        final var timestamp = nextTimestamp.getAndIncrement();
+        final var aci = acis[ThreadLocalRandom.current().nextInt(count)];
+        return messageSendLogStore.insertIfPossible(timestamp,
+                createResult(aci, timestamp),
+                ContentHint.RESENDABLE,
+                true);
+    }
+
+    @Benchmark
+    public List<MessageSendLogEntry> findMessages() {
+        final var i = ThreadLocalRandom.current().nextInt(count);
+        return messageSendLogStore.findMessages(acis[i], 1, startTimestamp + i, false);
+    }
+
+    private static SendMessageResult createResult(final ACI aci, final long timestamp) {
+        final var dataMessage = new DataMessage.Builder().body("benchmark").timestamp(timestamp).build();
+        final var content = new Content.Builder().dataMessage(dataMessage).build();
+        return SendMessageResult.success(new SignalServiceAddress(aci),
+                List.of(1),
+                false,
+                false,
+                0,
+                Optional.of(content));
+    }
+}
@@ -0,0 +1,68 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.storage.recipients.RecipientAddress;
+import org.asamk.signal.manager.storage.recipients.RecipientId;
+import org.asamk.signal.manager.storage.recipients.RecipientStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipientStoreBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int count;
+
+    @Param({"DEFAULT", "PERFORMANCE"})
+    private DatabaseProfile profile;
+
+    private BenchmarkDatabase database;
+    private RecipientStore recipientStore;
+    private ACI[] acis;
+    private RecipientId[] recipientIds;
+
+    @Setup
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.create(profile);
+        recipientStore = database.createRecipientStore();
+        acis = BenchmarkDatabase.createAcis(count);
+        recipientIds = new RecipientId[count];
+        database.populate(count,
+                (connection, i) -> recipientIds[i] = recipientStore.resolveRecipient(connection,
+                        new RecipientAddress(acis[i], "+1" + (2000000000L + i))));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public RecipientId resolveRecipientByServiceId() {
+        return recipientStore.resolveRecipient(acis[ThreadLocalRandom.current().nextInt(count)]);
+    }
+
+    @Benchmark
+    public RecipientAddress resolveRecipientAddress() {
+        return recipientStore.resolveRecipientAddress(recipientIds[ThreadLocalRandom.current().nextInt(count)]);
+    }
+}
@@ -0,0 +1,108 @@
+package org.asamk.signal.benchmark;
+
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.storage.sessions.SessionStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.whispersystems.signalservice.api.push.ServiceIdType;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionStoreBenchmark {
+
+    private static final int GROUP_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    private int count;
+
+    @Param({"DEFAULT", "PERFORMANCE"})
+    private DatabaseProfile profile;
+
+    private BenchmarkDatabase database;
+    private SessionStore sessionStore;
+    private SignalProtocolAddress[] addresses;
+    private SessionRecord sessionRecord;
+
+    @Setup
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.create(profile);
+        sessionStore = newSessionStore();
+        sessionRecord = new SessionRecord();
+        final var acis = BenchmarkDatabase.createAcis(count);
+        addresses = new SignalProtocolAddress[count];
+        database.populate(count, (connection, i) -> {
+            addresses[i] = new SignalProtocolAddress(acis[i].toString(), 1);
+            sessionStore.storeSession(addresses[i], sessionRecord);
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * Loads a session from the database, with a new store, so the session isn't already cached.
+     * Creating the store is negligible compared to the query.
+     */
+    @Benchmark
+    public SessionRecord loadSession() {
+        return newSessionStore().loadSession(randomAddress());
+    }
+
+    /**
+     * Loads a session that was already cached by a previous access.
+     */
+    @Benchmark
+    public SessionRecord loadCachedSession() {
+        return sessionStore.loadSession(randomAddress());
+    }
+
+    @Benchmark
+    public void storeSession() {
+        sessionStore.storeSession(randomAddress(), sessionRecord);
+    }
+
+    /**
+     * Loads the sessions of a group from the database, like a sender key send does.
+     */
+    @Benchmark
+    public List<SessionRecord> loadExistingSessionsForGroup() throws NoSessionException {
+        final var random = ThreadLocalRandom.current();
+        final var group = IntStream.range(0, Math.min(GROUP_SIZE, count))
+                .mapToObj(i -> addresses[random.nextInt(count)])
+                .distinct()
+                .toList();
+        return newSessionStore().loadExistingSessions(group);
+    }
+
+    private SessionStore newSessionStore() {
+        return new SessionStore(database.getDatabase(), ServiceIdType.ACI);
+    }
+
+    private SignalProtocolAddress randomAddress() {
+        return addresses[ThreadLocalRandom.current().nextInt(count)];
+    }
+}
@@ -305,6 +305,14 @@ public interface Manager extends Closeable {
 
     void addClosedListener(Runnable listener);
 
+    /**
+     * Attachments of received messages are downloaded in the background, the listener is called once a download
+     * has finished.
+     */
+    void addAttachmentDownloadListener(AttachmentDownloadListener listener);
+
+    void removeAttachmentDownloadListener(AttachmentDownloadListener listener);
+
     InputStream retrieveAttachment(final String id) throws IOException;
 
     @Override
@@ -317,4 +325,13 @@ public interface Manager extends Closeable {
 
         void handleMessage(MessageEnvelope envelope, Throwable e);
     }
+
+    interface AttachmentDownloadListener {
+
+        /**
+         * @param id      the attachment id, as used in the received message
+         * @param success false if the download failed and the attachment file doesn't exist
+         */
+        void handleAttachmentDownload(String id, boolean success);
+    }
 }
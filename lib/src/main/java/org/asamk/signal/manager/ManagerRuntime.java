@@ -0,0 +1,243 @@
+package org.asamk.signal.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads shared by all accounts of the process, so the number of background threads doesn't grow with the number of
+ * accounts.
+ * <p>
+ * Background tasks of all accounts run on a bounded worker pool. Each account has a single executor for its jobs and
+ * other background tasks, which only uses a limited number of workers at once and only submits its next task when one
+ * of its tasks has finished, so a busy account can't starve the others.
+ * Calls into the signal service library wait for tasks they submit themselves, which could deadlock a bounded pool,
+ * so they run on a separate pool that grows as needed and shrinks when idle. Attachment downloads and the concurrent
+ * sends of a message to multiple recipients block on the network as well, so they also run on that pool, each limited
+ * to a fixed number of tasks at once.
+ * Periodic tasks like websocket keep alives and the message send log cleanup share a single scheduler thread, so
+ * they must be short or hand off their work to another executor.
+ * <p>
+ * Each account that receives messages still has its own threads: the receive thread with its network thread, the
+ * thread passing messages to the handlers and the decrypt threads.
+ */
+public final class ManagerRuntime implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManagerRuntime.class);
+
+    public static final int DEFAULT_WORKER_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_WORKER_THREADS_PER_ACCOUNT = 2;
+
+    private static ManagerRuntime defaultRuntime;
+
+    private final int workerThreadsPerAccount;
+    private final ExecutorService workers;
+    private final ExecutorService blockingExecutor;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * @param workerThreads           Maximum number of worker threads shared by all accounts
+     * @param workerThreadsPerAccount Maximum number of worker threads a single account uses at once
+     */
+    public ManagerRuntime(final int workerThreads, final int workerThreadsPerAccount, final boolean virtualThreads) {
+        if (workerThreads < 1 || workerThreadsPerAccount < 1) {
+            throw new IllegalArgumentException("Number of worker threads must be at least 1");
+        }
+        this.workerThreadsPerAccount = workerThreadsPerAccount;
+        if (virtualThreads) {
+            this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("worker-", 0).factory());
+            this.blockingExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                    .name("signal-service-", 0)
+                    .factory());
+        } else {
+            final var workerPool = new ThreadPoolExecutor(workerThreads,
+                    workerThreads,
+                    1,
+                    TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(),
+                    Thread.ofPlatform().name("worker-", 0).daemon().factory());
+            workerPool.allowCoreThreadTimeOut(true);
+            this.workers = workerPool;
+            this.blockingExecutor = Executors.newCachedThreadPool(Thread.ofPlatform()
+                    .name("signal-service-", 0)
+                    .daemon()
+                    .factory());
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("manager-scheduler").daemon().factory());
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * The runtime used by accounts that weren't given one, it's never closed.
+     */
+    public static synchronized ManagerRuntime getDefault() {
+        if (defaultRuntime == null) {
+            defaultRuntime = new ManagerRuntime(DEFAULT_WORKER_THREADS, DEFAULT_WORKER_THREADS_PER_ACCOUNT, false);
+        }
+        return defaultRuntime;
+    }
+
+    /**
+     * Create the executor for the background tasks of one account, running them on the shared worker pool.
+     * An account creates it only once and shares it between its components, so the per-account limit applies to all
+     * of them together. Shutting it down only affects the tasks of this executor.
+     */
+    public ExecutorService newAccountExecutor() {
+        return new AccountExecutor(workers, workerThreadsPerAccount);
+    }
+
+    /**
+     * Create an executor that runs at most the given number of tasks at once on the blocking executor, for work that
+     * mostly waits for the network. Shutting it down only affects the tasks of this executor.
+     */
+    public ExecutorService newBlockingExecutor(final int maxRunning) {
+        return new AccountExecutor(blockingExecutor, maxRunning);
+    }
+
+    public int getWorkerThreadsPerAccount() {
+        return workerThreadsPerAccount;
+    }
+
+    /**
+     * The executor for the signal service library, which must not be shut down by an account.
+     */
+    public ExecutorService getBlockingExecutor() {
+        return blockingExecutor;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        blockingExecutor.shutdown();
+    }
+
+    /**
+     * Runs at most a fixed number of tasks at once on the shared workers, the others wait in a queue of the account.
+     * When a task has finished, the next one is appended to the end of the shared queue, so the waiting tasks of other
+     * accounts run in between.
+     */
+    private static final class AccountExecutor extends AbstractExecutorService {
+
+        private final ExecutorService workers;
+        private final int maxRunning;
+
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private int running;
+        private boolean shutdown;
+
+        private AccountExecutor(final ExecutorService workers, final int maxRunning) {
+            this.workers = workers;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Executor has been shut down");
+                }
+                if (running >= maxRunning) {
+                    queue.add(task);
+                    return;
+                }
+                running++;
+            }
+            submitToWorkers(task);
+        }
+
+        private void submitToWorkers(final Runnable task) {
+            try {
+                workers.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        runNextTask();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        private void runNextTask() {
+            final Runnable next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    running--;
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                submitToWorkers(next);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Worker pool has been shut down, dropping queued tasks");
+                synchronized (this) {
+                    queue.clear();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown = true;
+            final var tasks = new ArrayList<>(queue);
+            queue.clear();
+            return tasks;
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && running == 0;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(
+                final long timeout, final TimeUnit unit
+        ) throws InterruptedException {
+            final var deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                final var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.asamk.signal.manager;
 
+import org.asamk.signal.manager.api.AccountStatistics;
+
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
@@ -18,6 +20,13 @@ public interface MultiAccountManager extends AutoCloseable {
 
     Manager getManager(String phoneNumber);
 
+    /**
+     * Marks the account of the manager as in use, so it isn't hibernated until the returned usage is closed.
+     */
+    Usage useManager(Manager manager);
+
+    AccountStatistics getAccountStatistics();
+
     URI getNewProvisioningDeviceLinkUri() throws TimeoutException, IOException;
 
     ProvisioningManager getProvisioningManagerFor(URI deviceLinkUri);
@@ -26,4 +35,10 @@ public interface MultiAccountManager extends AutoCloseable {
 
     @Override
     void close();
+
+    interface Usage extends AutoCloseable {
+
+        @Override
+        void close();
+    }
 }
@@ -1,8 +1,34 @@
 package org.asamk.signal.manager;
 
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.api.MessageSendLogRetention;
 import org.asamk.signal.manager.api.TrustNewIdentity;
 
-public record Settings(TrustNewIdentity trustNewIdentity, boolean disableMessageSendLog) {
+/**
+ * @param sendParallelism Maximum number of individual recipients a message is sent to concurrently
+ * @param runtime         Threads shared by all accounts
+ */
+public record Settings(
+        TrustNewIdentity trustNewIdentity,
+        boolean disableMessageSendLog,
+        DatabaseProfile databaseProfile,
+        boolean virtualThreads,
+        int sendParallelism,
+        MessageSendLogRetention messageSendLogRetention,
+        ManagerRuntime runtime
+) {
+
+    public static final int DEFAULT_SEND_PARALLELISM = 16;
 
     public static final Settings DEFAULT = new Settings(TrustNewIdentity.ON_FIRST_USE, false);
+
+    public Settings(final TrustNewIdentity trustNewIdentity, final boolean disableMessageSendLog) {
+        this(trustNewIdentity,
+                disableMessageSendLog,
+                DatabaseProfile.DEFAULT,
+                false,
+                DEFAULT_SEND_PARALLELISM,
+                MessageSendLogRetention.DEFAULT,
+                ManagerRuntime.getDefault());
+    }
 }
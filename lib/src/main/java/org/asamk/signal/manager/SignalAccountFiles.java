@@ -1,6 +1,7 @@
 package org.asamk.signal.manager;
 
 import org.asamk.signal.manager.api.AccountCheckException;
+import org.asamk.signal.manager.api.AccountHibernation;
 import org.asamk.signal.manager.api.NotRegisteredException;
 import org.asamk.signal.manager.api.ServiceEnvironment;
 import org.asamk.signal.manager.config.ServiceConfig;
@@ -12,6 +13,7 @@ import org.asamk.signal.manager.internal.PathConfig;
 import org.asamk.signal.manager.internal.ProvisioningManagerImpl;
 import org.asamk.signal.manager.internal.RegistrationManagerImpl;
 import org.asamk.signal.manager.storage.SignalAccount;
+import org.asamk.signal.manager.storage.accounts.AccountsStorage;
 import org.asamk.signal.manager.storage.accounts.AccountsStore;
 import org.asamk.signal.manager.util.KeyUtils;
 import org.slf4j.Logger;
@@ -20,6 +22,7 @@ import org.whispersystems.signalservice.api.push.exceptions.DeprecatedVersionExc
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -64,6 +67,24 @@ public class SignalAccountFiles {
     }
 
     public MultiAccountManager initMultiAccountManager() throws IOException {
+        return initMultiAccountManager(AccountHibernation.DISABLED);
+    }
+
+    /**
+     * With hibernation enabled, accounts are only opened when they're first used, instead of opening all of them at
+     * startup.
+     */
+    public MultiAccountManager initMultiAccountManager(final AccountHibernation hibernation) throws IOException {
+        if (hibernation.isEnabled()) {
+            final var numbers = accountsStore.getAllAccounts()
+                    .stream()
+                    .map(AccountsStorage.Account::number)
+                    .sorted()
+                    .toList();
+            logger.debug("Loaded {} hibernated accounts", numbers.size());
+            return new MultiAccountManagerImpl(List.of(), numbers, this, hibernation);
+        }
+
         final var managers = accountsStore.getAllAccounts().parallelStream().map(a -> {
             try {
                 return initManager(a.number(), a.path());
@@ -76,7 +97,7 @@ public class SignalAccountFiles {
             }
         }).filter(Objects::nonNull).toList();
 
-        return new MultiAccountManagerImpl(managers, this);
+        return new MultiAccountManagerImpl(managers, List.of(), this, hibernation);
     }
 
     public Manager initManager(String number) throws IOException, NotRegisteredException, AccountCheckException {
@@ -0,0 +1,23 @@
+package org.asamk.signal.manager.api;
+
+import java.time.Duration;
+
+/**
+ * When accounts of a multi account manager are opened and closed again.
+ * Hibernated accounts are only known by their number, they don't hold a database connection pool, threads or a
+ * connection to the server, until they are used again.
+ *
+ * @param idleTimeout  Accounts that haven't been used or received a message for this long are hibernated,
+ *                     {@link Duration#ZERO} opens all accounts at startup and keeps them open
+ * @param wakeInterval Hibernated accounts are opened in this interval, to receive the messages queued on the server,
+ *                     {@link Duration#ZERO} only opens them when they are used
+ */
+public record AccountHibernation(Duration idleTimeout, Duration wakeInterval) {
+
+    public static final Duration DEFAULT_WAKE_INTERVAL = Duration.ofMinutes(15);
+    public static final AccountHibernation DISABLED = new AccountHibernation(Duration.ZERO, Duration.ZERO);
+
+    public boolean isEnabled() {
+        return idleTimeout.isPositive();
+    }
+}
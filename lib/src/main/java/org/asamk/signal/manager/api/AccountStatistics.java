@@ -0,0 +1,20 @@
+package org.asamk.signal.manager.api;
+
+/**
+ * Statistics of the accounts of a multi account manager.
+ * The released file descriptors and threads are measured while accounts are hibernated, so they are estimates if
+ * other work happens at the same time.
+ *
+ * @param openFileDescriptors Open file descriptors of the process, or -1 if not available on this platform
+ */
+public record AccountStatistics(
+        int activeAccounts,
+        int hibernatedAccounts,
+        long activations,
+        long hibernations,
+        long releasedFileDescriptors,
+        long releasedThreads,
+        long openFileDescriptors,
+        int threads,
+        long heapUsedBytes
+) {}
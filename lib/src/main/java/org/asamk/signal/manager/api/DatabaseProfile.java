@@ -0,0 +1,12 @@
+package org.asamk.signal.manager.api;
+
+public enum DatabaseProfile {
+    /**
+     * SQLite defaults, with a rollback journal and full synchronous writes.
+     */
+    DEFAULT,
+    /**
+     * WAL journal for concurrent readers, larger page cache and memory mapped I/O.
+     */
+    PERFORMANCE
+}
@@ -0,0 +1,13 @@
+package org.asamk.signal.manager.api;
+
+public enum DeliveryOrder {
+    /**
+     * Received messages are passed to the handler in the order the server delivered them.
+     */
+    SERVER,
+    /**
+     * Messages of the same sender are passed to the handler in order, messages of other senders as soon as they have
+     * been decrypted.
+     */
+    SENDER
+}
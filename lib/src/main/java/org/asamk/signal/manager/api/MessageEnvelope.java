@@ -36,10 +36,12 @@ import org.whispersystems.signalservice.api.push.ServiceId;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public record MessageEnvelope(
         Optional<RecipientAddress> sourceAddress,
@@ -156,7 +158,7 @@ public record MessageEnvelope(
                                     .toList())
                             .orElse(List.of()),
                     dataMessage.getMentions()
-                            .map(a -> a.stream().map(m -> Mention.from(m, recipientResolver, addressResolver)).toList())
+                            .map(a -> Mention.from(a, recipientResolver, addressResolver))
                             .orElse(List.of()),
                     dataMessage.getPreviews()
                             .map(a -> a.stream().map(preview -> Preview.from(preview, fileProvider)).toList())
@@ -241,10 +243,7 @@ public record MessageEnvelope(
                         Optional.of(quote.getText()),
                         quote.getMentions() == null
                                 ? List.of()
-                                : quote.getMentions()
-                                        .stream()
-                                        .map(m -> Mention.from(m, recipientResolver, addressResolver))
-                                        .toList(),
+                                : Mention.from(quote.getMentions(), recipientResolver, addressResolver),
                         quote.getAttachments() == null
                                 ? List.of()
                                 : quote.getAttachments().stream().map(a -> Attachment.from(a, fileProvider)).toList(),
@@ -268,13 +267,19 @@ public record MessageEnvelope(
 
         public record Mention(RecipientAddress recipient, int start, int length) {
 
-            static Mention from(
-                    SignalServiceDataMessage.Mention mention,
+            static List<Mention> from(
+                    List<SignalServiceDataMessage.Mention> mentions,
                     RecipientResolver recipientResolver,
                     RecipientAddressResolver addressResolver
             ) {
-                return new Mention(addressResolver.resolveRecipientAddress(recipientResolver.resolveRecipient(mention.getServiceId()))
-                        .toApiRecipientAddress(), mention.getStart(), mention.getLength());
+                final var addresses = resolveRecipientAddresses(mentions.stream()
+                        .map(SignalServiceDataMessage.Mention::getServiceId)
+                        .toList(), recipientResolver, addressResolver);
+                return mentions.stream()
+                        .map(mention -> new Mention(addresses.get(mention.getServiceId()),
+                                mention.getStart(),
+                                mention.getLength()))
+                        .toList();
             }
         }
 
@@ -592,11 +597,9 @@ public record MessageEnvelope(
                         sentMessage.getDestination()
                                 .map(d -> addressResolver.resolveRecipientAddress(recipientResolver.resolveRecipient(d))
                                         .toApiRecipientAddress()),
-                        sentMessage.getRecipients()
-                                .stream()
-                                .map(d -> addressResolver.resolveRecipientAddress(recipientResolver.resolveRecipient(d))
-                                        .toApiRecipientAddress())
-                                .collect(Collectors.toSet()),
+                        Set.copyOf(resolveRecipientAddresses(sentMessage.getRecipients(),
+                                recipientResolver,
+                                addressResolver).values()),
                         sentMessage.getDataMessage()
                                 .map(message -> Data.from(message, recipientResolver, addressResolver, fileProvider)),
                         sentMessage.getEditMessage()
@@ -892,6 +895,25 @@ public record MessageEnvelope(
         }
     }
 
+    /**
+     * Resolve the addresses of multiple recipients with a single lookup, instead of one per recipient.
+     */
+    private static Map<ServiceId, RecipientAddress> resolveRecipientAddresses(
+            Collection<ServiceId> serviceIds,
+            RecipientResolver recipientResolver,
+            RecipientAddressResolver addressResolver
+    ) {
+        if (serviceIds.isEmpty()) {
+            return Map.of();
+        }
+        final var recipientIds = recipientResolver.resolveRecipients(serviceIds);
+        final var addresses = addressResolver.resolveRecipientAddresses(recipientIds.values());
+        final var result = new HashMap<ServiceId, RecipientAddress>();
+        recipientIds.forEach((serviceId, recipientId) -> result.put(serviceId,
+                addresses.get(recipientId).toApiRecipientAddress()));
+        return result;
+    }
+
     public static MessageEnvelope from(
             SignalServiceEnvelope envelope,
             SignalServiceContent content,
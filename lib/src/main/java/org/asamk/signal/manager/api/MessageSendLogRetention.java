@@ -0,0 +1,15 @@
+package org.asamk.signal.manager.api;
+
+import java.time.Duration;
+
+/**
+ * How long sent messages are kept in the message send log, for resending them to recipients that couldn't decrypt
+ * them.
+ *
+ * @param logDuration Entries older than this are removed
+ * @param maxEntries  Maximum number of logged messages, the oldest ones are removed first
+ */
+public record MessageSendLogRetention(Duration logDuration, int maxEntries) {
+
+    public static final MessageSendLogRetention DEFAULT = new MessageSendLogRetention(Duration.ofDays(1), 100_000);
+}
@@ -1,3 +1,37 @@
 package org.asamk.signal.manager.api;
 
-public record ReceiveConfig(boolean ignoreAttachments, boolean ignoreStories, boolean sendReadReceipts) {}
+/**
+ * @param batchSize          maximum number of envelopes read from the server, stored and acknowledged together
+ * @param decryptParallelism maximum number of senders whose envelopes of a batch are decrypted concurrently
+ * @param deliveryOrder      order in which the decrypted messages of a batch are passed to the handler
+ */
+public record ReceiveConfig(
+        boolean ignoreAttachments,
+        boolean ignoreStories,
+        boolean sendReadReceipts,
+        int batchSize,
+        int decryptParallelism,
+        DeliveryOrder deliveryOrder
+) {
+
+    public static final int DEFAULT_BATCH_SIZE = 30;
+    public static final int DEFAULT_DECRYPT_PARALLELISM = 4;
+
+    public ReceiveConfig {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        if (decryptParallelism < 1) {
+            throw new IllegalArgumentException("decryptParallelism must be at least 1");
+        }
+    }
+
+    public ReceiveConfig(boolean ignoreAttachments, boolean ignoreStories, boolean sendReadReceipts) {
+        this(ignoreAttachments,
+                ignoreStories,
+                sendReadReceipts,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_DECRYPT_PARALLELISM,
+                DeliveryOrder.SERVER);
+    }
+}
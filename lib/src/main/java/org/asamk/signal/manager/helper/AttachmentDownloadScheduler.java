@@ -0,0 +1,138 @@
+package org.asamk.signal.manager.helper;
+
+import org.asamk.signal.manager.ManagerRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentRemoteId;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs attachment downloads in the background with a limited number of concurrent downloads.
+ * A download that is already scheduled or running for the same remote id isn't started a second time.
+ * Failed downloads are retried with exponential backoff, the shared scheduler only triggers the retry, the download
+ * itself runs on the download executor again.
+ */
+final class AttachmentDownloadScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentDownloadScheduler.class);
+
+    private static final int MAX_CONCURRENT_DOWNLOADS = 4;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 1000;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<SignalServiceAttachmentRemoteId, CompletableFuture<Void>> downloads = new ConcurrentHashMap<>();
+    private final Map<SignalServiceAttachmentRemoteId, ScheduledFuture<?>> retries = new ConcurrentHashMap<>();
+
+    AttachmentDownloadScheduler(final ManagerRuntime runtime) {
+        this.executor = runtime.newBlockingExecutor(MAX_CONCURRENT_DOWNLOADS);
+        this.scheduler = runtime.getScheduler();
+    }
+
+    CompletableFuture<Void> schedule(final SignalServiceAttachmentRemoteId remoteId, final Download download) {
+        if (executor.isShutdown()) {
+            return CompletableFuture.failedFuture(new IOException("Attachment downloads have been stopped"));
+        }
+        final var future = new CompletableFuture<Void>();
+        final var existingFuture = downloads.putIfAbsent(remoteId, future);
+        if (existingFuture != null) {
+            return existingFuture;
+        }
+        try {
+            executor.execute(() -> runDownload(remoteId, download, future, 1));
+        } catch (RejectedExecutionException e) {
+            // The scheduler has been closed concurrently
+            failDownload(remoteId, future, new IOException("Attachment downloads have been stopped", e));
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the running downloads to finish, downloads waiting for a retry are given up.
+     */
+    @Override
+    public void close() {
+        executor.close();
+        for (final var remoteId : retries.keySet()) {
+            final var retry = retries.remove(remoteId);
+            final var future = downloads.get(remoteId);
+            if (retry != null && retry.cancel(false) && future != null) {
+                failDownload(remoteId, future, new IOException("Attachment downloads have been stopped"));
+            }
+        }
+    }
+
+    private void runDownload(
+            final SignalServiceAttachmentRemoteId remoteId,
+            final Download download,
+            final CompletableFuture<Void> future,
+            final int attempt
+    ) {
+        try {
+            download.run();
+        } catch (IOException e) {
+            if (attempt >= MAX_ATTEMPTS || executor.isShutdown()) {
+                logger.warn("Failed to download attachment ({}), giving up: {}", remoteId, e.getMessage());
+                failDownload(remoteId, future, e);
+                return;
+            }
+            final var delay = INITIAL_RETRY_DELAY_MILLIS << (attempt - 1);
+            logger.debug("Failed to download attachment ({}), retrying in {} ms: {}", remoteId, delay, e.getMessage());
+            try {
+                retries.put(remoteId,
+                        scheduler.schedule(() -> retryDownload(remoteId, download, future, attempt + 1),
+                                delay,
+                                TimeUnit.MILLISECONDS));
+            } catch (RejectedExecutionException ex) {
+                logger.warn("Failed to download attachment ({}), giving up: {}", remoteId, e.getMessage());
+                failDownload(remoteId, future, e);
+            }
+            return;
+        } catch (Throwable e) {
+            logger.warn("Unexpected error while downloading attachment ({})", remoteId, e);
+            failDownload(remoteId, future, e);
+            return;
+        }
+        downloads.remove(remoteId, future);
+        future.complete(null);
+    }
+
+    private void retryDownload(
+            final SignalServiceAttachmentRemoteId remoteId,
+            final Download download,
+            final CompletableFuture<Void> future,
+            final int attempt
+    ) {
+        retries.remove(remoteId);
+        try {
+            executor.execute(() -> runDownload(remoteId, download, future, attempt));
+        } catch (RejectedExecutionException e) {
+            failDownload(remoteId, future, new IOException("Attachment downloads have been stopped", e));
+        }
+    }
+
+    private void failDownload(
+            final SignalServiceAttachmentRemoteId remoteId,
+            final CompletableFuture<Void> future,
+            final Throwable e
+    ) {
+        downloads.remove(remoteId, future);
+        future.completeExceptionally(e);
+    }
+
+    @FunctionalInterface
+    interface Download {
+
+        void run() throws IOException;
+    }
+}
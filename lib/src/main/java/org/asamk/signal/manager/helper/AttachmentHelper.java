@@ -1,5 +1,6 @@
 package org.asamk.signal.manager.helper;
 
+import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.api.AttachmentInvalidException;
 import org.asamk.signal.manager.config.ServiceConfig;
 import org.asamk.signal.manager.internal.SignalDependencies;
@@ -23,16 +24,19 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AttachmentHelper {
+public class AttachmentHelper implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(AttachmentHelper.class);
 
     private final SignalDependencies dependencies;
     private final AttachmentStore attachmentStore;
+    private final AttachmentDownloadScheduler downloadScheduler;
+    private final List<Manager.AttachmentDownloadListener> downloadListeners = new ArrayList<>();
 
     public AttachmentHelper(final Context context) {
         this.dependencies = context.getDependencies();
         this.attachmentStore = context.getAttachmentStore();
+        this.downloadScheduler = new AttachmentDownloadScheduler(context.getAccount().getRuntime());
     }
 
     public File getAttachmentFile(SignalServiceAttachmentPointer pointer) {
@@ -64,6 +68,22 @@ public class AttachmentHelper {
         return messageSender.uploadAttachment(attachment);
     }
 
+    public void addAttachmentDownloadListener(final Manager.AttachmentDownloadListener listener) {
+        synchronized (downloadListeners) {
+            downloadListeners.add(listener);
+        }
+    }
+
+    public void removeAttachmentDownloadListener(final Manager.AttachmentDownloadListener listener) {
+        synchronized (downloadListeners) {
+            downloadListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Stores the attachment preview directly and downloads the attachment itself in the background.
+     * Download listeners are notified once the attachment file is complete.
+     */
     public void downloadAttachment(final SignalServiceAttachment attachment) {
         if (!attachment.isPointer()) {
             logger.warn("Invalid state, can't store an attachment stream.");
@@ -80,11 +100,41 @@ public class AttachmentHelper {
             }
         }
 
-        try {
-            attachmentStore.storeAttachment(pointer, outputStream -> this.retrieveAttachment(pointer, outputStream));
-        } catch (IOException e) {
-            logger.warn("Failed to download attachment ({}), ignoring: {}", pointer.getRemoteId(), e.getMessage());
+        final var id = attachmentStore.getAttachmentFile(pointer).getName();
+        downloadScheduler.schedule(pointer.getRemoteId(), () -> downloadAttachmentFile(pointer))
+                .whenComplete((result, e) -> {
+                    synchronized (downloadListeners) {
+                        for (final var listener : downloadListeners) {
+                            try {
+                                listener.handleAttachmentDownload(id, e == null);
+                            } catch (Throwable ex) {
+                                logger.warn("Attachment download listener failed, ignoring", ex);
+                            }
+                        }
+                    }
+                });
+    }
+
+    private void downloadAttachmentFile(final SignalServiceAttachmentPointer pointer) throws IOException {
+        logger.debug("Downloading attachment {} with size {}", pointer.getRemoteId(), pointer.getSize());
+        // The download file is only removed after success, so a retry can resume the download
+        final var downloadFile = attachmentStore.getAttachmentDownloadFile(pointer);
+        try (var input = dependencies.getMessageReceiver()
+                .retrieveAttachment(pointer, downloadFile, ServiceConfig.MAX_ATTACHMENT_SIZE)) {
+            attachmentStore.storeAttachment(pointer, outputStream -> IOUtils.copyStream(input, outputStream));
+        } catch (InvalidMessageException e) {
+            // Downloaded data is corrupt, start from scratch next time
+            Files.deleteIfExists(downloadFile.toPath());
+            throw new IOException(e);
+        } catch (MissingConfigurationException e) {
+            throw new IOException(e);
         }
+        Files.deleteIfExists(downloadFile.toPath());
+    }
+
+    @Override
+    public void close() {
+        downloadScheduler.close();
     }
 
     void retrieveAttachment(SignalServiceAttachment attachment, OutputStream outputStream) throws IOException {
@@ -173,6 +173,12 @@ public class Context implements AutoCloseable {
     @Override
     public void close() {
         jobExecutor.close();
+        if (attachmentHelper != null) {
+            attachmentHelper.close();
+        }
+        if (receiveHelper != null) {
+            receiveHelper.close();
+        }
     }
 
     private interface Callable {
@@ -28,6 +28,7 @@ import org.asamk.signal.manager.api.StickerPackId;
 import org.asamk.signal.manager.api.TrustLevel;
 import org.asamk.signal.manager.api.UntrustedIdentityException;
 import org.asamk.signal.manager.groups.GroupUtils;
+import org.asamk.signal.manager.internal.SessionLockManager;
 import org.asamk.signal.manager.internal.SignalDependencies;
 import org.asamk.signal.manager.jobs.RetrieveStickerPackJob;
 import org.asamk.signal.manager.storage.SignalAccount;
@@ -100,7 +101,10 @@ public final class IncomingMessageHandler {
         SignalServiceContent content = null;
         if (!envelope.isReceipt()) {
             account.getIdentityKeyStore().setRetryingDecryption(true);
-            try {
+            try (
+                    final var ignored = openDecryptionLockScope(envelope);
+                    final var ignored2 = account.bindDatabaseConnection()
+            ) {
                 final var cipherResult = dependencies.getCipher()
                         .decrypt(envelope.getProto(), envelope.getServerDeliveredTimestamp());
                 content = validate(envelope.getProto(), cipherResult, envelope.getServerDeliveredTimestamp());
@@ -123,11 +127,12 @@ public final class IncomingMessageHandler {
         return new Pair<>(actions, null);
     }
 
-    public Pair<List<HandleAction>, Exception> handleEnvelope(
-            final SignalServiceEnvelope envelope,
-            final ReceiveConfig receiveConfig,
-            final Manager.ReceiveMessageHandler handler
-    ) {
+    /**
+     * Decrypt an envelope, without handling its content.
+     * Can be called concurrently for envelopes of different senders, envelopes of the same sender need to be
+     * decrypted in the order they were received.
+     */
+    public DecryptedEnvelope decryptEnvelope(final SignalServiceEnvelope envelope) {
         final var actions = new ArrayList<HandleAction>();
         SignalServiceContent content = null;
         Exception exception = null;
@@ -136,12 +141,15 @@ public final class IncomingMessageHandler {
                 // uuid in envelope is sent by server
                 .ifPresent(serviceId -> account.getRecipientResolver().resolveRecipient(serviceId));
         if (!envelope.isReceipt()) {
-            try {
+            try (
+                    final var ignored = openDecryptionLockScope(envelope);
+                    final var ignored2 = account.bindDatabaseConnection()
+            ) {
                 final var cipherResult = dependencies.getCipher()
                         .decrypt(envelope.getProto(), envelope.getServerDeliveredTimestamp());
                 content = validate(envelope.getProto(), cipherResult, envelope.getServerDeliveredTimestamp());
                 if (content == null) {
-                    return new Pair<>(List.of(), null);
+                    return DecryptedEnvelope.dropped(envelope);
                 }
             } catch (ProtocolUntrustedIdentityException e) {
                 final var recipientId = account.getRecipientResolver().resolveRecipient(e.getSender());
@@ -188,14 +196,32 @@ public final class IncomingMessageHandler {
                 exception = e;
             } catch (SelfSendException e) {
                 logger.debug("Dropping unidentified message from self.");
-                return new Pair<>(List.of(), null);
+                return DecryptedEnvelope.dropped(envelope);
             } catch (Exception e) {
                 logger.debug("Failed to handle incoming message", e);
                 exception = e;
             }
         }
 
-        actions.addAll(checkAndHandleMessage(envelope, content, receiveConfig, handler, exception));
+        return new DecryptedEnvelope(envelope, content, actions, exception, false);
+    }
+
+    /**
+     * Handle the content of a decrypted envelope and pass it to the handler.
+     * Must be called in the order the envelopes should be delivered to the handler.
+     */
+    public Pair<List<HandleAction>, Exception> handleDecryptedEnvelope(
+            final DecryptedEnvelope decryptedEnvelope,
+            final ReceiveConfig receiveConfig,
+            final Manager.ReceiveMessageHandler handler
+    ) {
+        if (decryptedEnvelope.dropped()) {
+            return new Pair<>(List.of(), null);
+        }
+        final var envelope = decryptedEnvelope.envelope();
+        final var exception = decryptedEnvelope.exception();
+        final var actions = new ArrayList<>(decryptedEnvelope.actions());
+        actions.addAll(checkAndHandleMessage(envelope, decryptedEnvelope.content(), receiveConfig, handler, exception));
         return new Pair<>(actions, exception);
     }
 
@@ -313,8 +339,11 @@ public final class IncomingMessageHandler {
             logger.debug("Received a sender key distribution message for distributionId {} from {}",
                     message.getDistributionId(),
                     protocolAddress);
-            new SignalGroupSessionBuilder(dependencies.getSessionLock(),
-                    new GroupSessionBuilder(account.getSenderKeyStore())).process(protocolAddress, message);
+            try (final var ignored = dependencies.getSessionLock()
+                    .openScope(List.of(sender, message.getDistributionId()))) {
+                new SignalGroupSessionBuilder(dependencies.getSessionLock(),
+                        new GroupSessionBuilder(account.getSenderKeyStore())).process(protocolAddress, message);
+            }
         }
 
         if (content.getDecryptionErrorMessage().isPresent()) {
@@ -922,6 +951,19 @@ public final class IncomingMessageHandler {
         this.account.getProfileStore().storeProfileKey(source, profileKey);
     }
 
+    /**
+     * The sender of a sealed sender message is only known after decrypting it, so those are decrypted with the
+     * account wide session lock.
+     */
+    private SessionLockManager.Scope openDecryptionLockScope(SignalServiceEnvelope envelope) {
+        final var serviceId = envelope.getSourceServiceId().map(ServiceId::parseOrNull).orElse(null);
+        if (envelope.isUnidentifiedSender() || serviceId == null) {
+            return dependencies.getSessionLock().openScope(List.of());
+        }
+        return dependencies.getSessionLock()
+                .openScope(List.of(account.getRecipientResolver().resolveRecipient(serviceId)));
+    }
+
     private SignalServiceAddress getSenderAddress(SignalServiceEnvelope envelope, SignalServiceContent content) {
         final var serviceId = envelope.getSourceServiceId().map(ServiceId::parseOrNull).orElse(null);
         if (!envelope.isUnidentifiedSender() && serviceId != null) {
@@ -961,4 +1003,20 @@ public final class IncomingMessageHandler {
     }
 
     private record DeviceAddress(RecipientId recipientId, ServiceId serviceId, int deviceId) {}
+
+    /**
+     * @param dropped if the envelope was dropped during decryption and should not be handled
+     */
+    public record DecryptedEnvelope(
+            SignalServiceEnvelope envelope,
+            SignalServiceContent content,
+            List<HandleAction> actions,
+            Exception exception,
+            boolean dropped
+    ) {
+
+        private static DecryptedEnvelope dropped(SignalServiceEnvelope envelope) {
+            return new DecryptedEnvelope(envelope, null, List.of(), null, true);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package org.asamk.signal.manager.helper;
+
+import org.asamk.signal.manager.api.DeliveryOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Decrypts the envelopes of a received batch with multiple threads.
+ * <p>
+ * Envelopes are partitioned by their source, the envelopes of one sender are decrypted by a single thread in the
+ * order the server delivered them, so the sessions of each sender advance in order.
+ * <p>
+ * Sealed sender envelopes don't reveal their sender before decryption, so they all end up in the same partition and
+ * are decrypted one after another in server order. Their decryption needs the account wide session lock anyway. So
+ * only envelopes with a visible source, e.g. receipts and messages from senders without unidentified access, are
+ * decrypted concurrently, while the order of each sender's messages is kept for all envelopes.
+ * <p>
+ * The decrypted envelopes are passed to the consumer on the calling thread, in the configured delivery order.
+ */
+final class ParallelDecrypter<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelDecrypter.class);
+
+    private final ExecutorService executor;
+    private final DeliveryOrder deliveryOrder;
+    private final Function<SignalServiceEnvelope, T> decrypter;
+
+    /**
+     * @param executor runs the partitions, its number of threads limits how many are decrypted concurrently
+     */
+    ParallelDecrypter(
+            final ExecutorService executor,
+            final DeliveryOrder deliveryOrder,
+            final Function<SignalServiceEnvelope, T> decrypter
+    ) {
+        this.executor = executor;
+        this.deliveryOrder = deliveryOrder;
+        this.decrypter = decrypter;
+    }
+
+    /**
+     * @param consumer called with the index of each envelope and its decryption result, or null if decrypting failed
+     *                 unexpectedly
+     */
+    void decrypt(final List<SignalServiceEnvelope> envelopes, final BiConsumer<Integer, T> consumer) {
+        final var partitions = new LinkedHashMap<String, List<Integer>>();
+        for (var i = 0; i < envelopes.size(); i++) {
+            final var source = envelopes.get(i).getSourceServiceId().orElse("");
+            partitions.computeIfAbsent(source, s -> new ArrayList<>()).add(i);
+        }
+
+        final List<CompletableFuture<T>> results = new ArrayList<>(envelopes.size());
+        for (var i = 0; i < envelopes.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        final BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        for (final var partition : partitions.values()) {
+            executor.execute(() -> {
+                for (final var index : partition) {
+                    T result;
+                    try {
+                        result = decrypter.apply(envelopes.get(index));
+                    } catch (Exception e) {
+                        logger.error("Unknown error when decrypting message", e);
+                        result = null;
+                    }
+                    results.get(index).complete(result);
+                    completed.add(index);
+                }
+            });
+        }
+
+        // Already decrypted envelopes must always be handled, otherwise their content would be lost
+        try {
+            for (var i = 0; i < envelopes.size(); i++) {
+                final var index = switch (deliveryOrder) {
+                    case SERVER -> i;
+                    case SENDER -> takeUninterruptibly(completed);
+                };
+                consumer.accept(index, results.get(index).join());
+            }
+        } finally {
+            // The executor is shared by the following batches, don't leave partitions running if the consumer failed
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    private static int takeUninterruptibly(final BlockingQueue<Integer> queue) {
+        var interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
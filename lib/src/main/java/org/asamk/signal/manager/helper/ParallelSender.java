@@ -0,0 +1,243 @@
+package org.asamk.signal.manager.helper;
+
+import org.asamk.signal.manager.storage.recipients.RecipientId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.signalservice.api.messages.SendMessageResult;
+import org.whispersystems.signalservice.api.push.SignalServiceAddress;
+import org.whispersystems.signalservice.api.push.exceptions.ProofRequiredException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Sends a message to multiple individual recipients, with a limited number of sends running concurrently.
+ * <p>
+ * If the server rate limits a send, all workers pause until the server's retry-after has passed and the send is
+ * retried. A proof required failure can't be resolved by waiting, so the remaining recipients are not attempted and
+ * get the same failure. Unexpected exceptions stop the remaining sends and are rethrown to the caller.
+ * <p>
+ * The sends run on the shared executor of the runtime that grows as needed, no more than the parallelism are submitted
+ * to it at once, so the concurrency of a single send is still limited without starting threads of its own.
+ */
+final class ParallelSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSender.class);
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1_000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final Function<RecipientId, SendMessageResult> sender;
+    private final Function<RecipientId, SignalServiceAddress> addressResolver;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition resumed = lock.newCondition();
+    private long pausedUntil = System.nanoTime();
+    private ProofRequiredException proofRequired;
+
+    ParallelSender(
+            final int parallelism,
+            final ExecutorService executor,
+            final Function<RecipientId, SendMessageResult> sender,
+            final Function<RecipientId, SignalServiceAddress> addressResolver
+    ) {
+        this.parallelism = parallelism;
+        this.executor = executor;
+        this.sender = sender;
+        this.addressResolver = addressResolver;
+    }
+
+    /**
+     * @return the results in the same order as the recipients
+     */
+    List<SendMessageResult> send(final List<RecipientId> recipientIds) {
+        final var results = new SendMessageResult[recipientIds.size()];
+        final var workers = Math.min(parallelism, recipientIds.size());
+        if (workers <= 1) {
+            for (var i = 0; i < results.length; i++) {
+                results[i] = sendWithRetries(recipientIds.get(i));
+            }
+            return Arrays.asList(results);
+        }
+
+        final var nextIndex = new AtomicInteger();
+        final var failure = new AtomicReference<Throwable>();
+        final var finished = new CountDownLatch(workers);
+        final var workerThreads = new HashSet<Thread>();
+        for (var i = 0; i < workers; i++) {
+            try {
+                executor.execute(() -> {
+                    synchronized (workerThreads) {
+                        workerThreads.add(Thread.currentThread());
+                    }
+                    try {
+                        int index;
+                        while ((index = nextIndex.getAndIncrement()) < results.length) {
+                            results[index] = sendWithRetries(recipientIds.get(index));
+                        }
+                    } catch (RuntimeException | Error e) {
+                        nextIndex.set(results.length);
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        synchronized (workerThreads) {
+                            workerThreads.remove(Thread.currentThread());
+                        }
+                        // The thread is shared, don't leak an interrupt meant for this send to the next task
+                        Thread.interrupted();
+                        finished.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                if (i == 0) {
+                    throw e;
+                }
+                // The already running workers send to the remaining recipients
+                for (var j = i; j < workers; j++) {
+                    finished.countDown();
+                }
+                break;
+            }
+        }
+
+        if (awaitWorkers(finished, nextIndex, results.length, workerThreads)) {
+            for (var i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = SendMessageResult.networkFailure(addressResolver.apply(recipientIds.get(i)));
+                }
+            }
+        }
+        switch (failure.get()) {
+            case null -> {
+            }
+            case RuntimeException e -> throw e;
+            case Error e -> throw e;
+            case Throwable e -> throw new RuntimeException(e);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * If the current thread is interrupted, no further sends are started and the running ones are interrupted.
+     * The workers are still waited for, so they don't write results after returning.
+     *
+     * @return true, if the current thread was interrupted
+     */
+    private static boolean awaitWorkers(
+            final CountDownLatch finished,
+            final AtomicInteger nextIndex,
+            final int count,
+            final Set<Thread> workerThreads
+    ) {
+        var interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                if (!interrupted) {
+                    interrupted = true;
+                    nextIndex.set(count);
+                    synchronized (workerThreads) {
+                        workerThreads.forEach(Thread::interrupt);
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return interrupted;
+    }
+
+    private SendMessageResult sendWithRetries(final RecipientId recipientId) {
+        try {
+            for (var attempt = 0; ; attempt++) {
+                final var previousProofRequired = awaitResume();
+                if (previousProofRequired != null) {
+                    return SendMessageResult.proofRequiredFailure(addressResolver.apply(recipientId),
+                            previousProofRequired);
+                }
+
+                final var result = sender.apply(recipientId);
+                if (result.getProofRequiredFailure() != null) {
+                    stop(result.getProofRequiredFailure());
+                    return result;
+                }
+                if (result.getRateLimitFailure() == null || attempt >= MAX_RATE_LIMIT_RETRIES) {
+                    return result;
+                }
+
+                final var retryAfterMillis = result.getRateLimitFailure()
+                        .getRetryAfterMilliseconds()
+                        .orElse(DEFAULT_RETRY_AFTER_MILLIS << attempt);
+                if (retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+                    return result;
+                }
+                pause(retryAfterMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SendMessageResult.networkFailure(addressResolver.apply(recipientId));
+        }
+    }
+
+    private void pause(final long millis) {
+        final var until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        lock.lock();
+        try {
+            if (until - pausedUntil > 0) {
+                logger.debug("Rate limited by the server, pausing sending for {}ms", millis);
+                pausedUntil = until;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stop(final ProofRequiredException e) {
+        lock.lock();
+        try {
+            if (proofRequired == null) {
+                logger.debug("Server requires a proof, not sending to remaining recipients");
+                proofRequired = e;
+            }
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the current rate limit pause has passed.
+     *
+     * @return the proof required failure, if sending has been stopped
+     */
+    private ProofRequiredException awaitResume() throws InterruptedException {
+        lock.lock();
+        try {
+            while (proofRequired == null) {
+                final var remainingNanos = pausedUntil - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                resumed.awaitNanos(remainingNanos);
+            }
+            return proofRequired;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.asamk.signal.manager.helper;
+
+import org.asamk.signal.manager.Manager;
+import org.asamk.signal.manager.api.MessageEnvelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes received messages to the wrapped handler on a separate thread, so a slow handler doesn't block
+ * decryption of the following messages. The queue is bounded, if the handler can't keep up, the receiving thread
+ * blocks until there's space again.
+ * <p>
+ * Work that must only happen once the handler has seen a message, like deleting it from the message cache, is queued
+ * with {@link #runAfterHandled(Runnable)}. If the handler thread stops before, that work is skipped, so the message
+ * stays cached and is handled again by the next receive.
+ */
+final class ReceiveHandlerDispatcher implements Manager.ReceiveMessageHandler, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReceiveHandlerDispatcher.class);
+    private static final AtomicInteger threadNumber = new AtomicInteger(0);
+    private static final int QUEUE_SIZE = 100;
+    private static final QueuedMessage STOP = new QueuedMessage(null, null, null);
+
+    private final Manager.ReceiveMessageHandler handler;
+    private final BlockingQueue<QueuedMessage> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+
+    ReceiveHandlerDispatcher(final Manager.ReceiveMessageHandler handler) {
+        this.handler = handler;
+        this.thread = Thread.ofPlatform()
+                .name("receive-handler-" + threadNumber.getAndIncrement())
+                .start(this::dispatchMessages);
+    }
+
+    @Override
+    public void handleMessage(final MessageEnvelope envelope, final Throwable e) {
+        try {
+            queue.put(new QueuedMessage(envelope, e, null));
+        } catch (InterruptedException ex) {
+            logger.debug("Interrupted while queuing message for handler, handling it directly");
+            Thread.currentThread().interrupt();
+            callHandler(new QueuedMessage(envelope, e, null));
+        }
+    }
+
+    /**
+     * Runs the callback on the handler thread, once all messages queued before have been passed to the handler.
+     * If the current thread is interrupted while waiting for space in the queue, the callback isn't run.
+     */
+    void runAfterHandled(final Runnable callback) {
+        try {
+            queue.put(new QueuedMessage(null, null, callback));
+        } catch (InterruptedException e) {
+            logger.debug("Interrupted while queuing callback for handler, skipping it");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until all queued messages have been passed to the handler and their callbacks have run.
+     */
+    void awaitHandled() {
+        final var handled = new CountDownLatch(1);
+        runAfterHandled(handled::countDown);
+        try {
+            while (thread.isAlive() && handled.getCount() > 0) {
+                handled.await(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until all queued messages have been passed to the handler.
+     */
+    @Override
+    public void close() {
+        try {
+            queue.put(STOP);
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchMessages() {
+        while (true) {
+            final QueuedMessage message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                logger.debug("Handler thread interrupted, dropping {} queued messages", queue.size());
+                return;
+            }
+            if (message == STOP) {
+                return;
+            }
+            if (message.callback() != null) {
+                runCallback(message.callback());
+            } else {
+                callHandler(message);
+            }
+        }
+    }
+
+    private void callHandler(final QueuedMessage message) {
+        try {
+            handler.handleMessage(message.envelope(), message.exception());
+        } catch (Throwable e) {
+            logger.warn("Message handler failed, ignoring", e);
+        }
+    }
+
+    private static void runCallback(final Runnable callback) {
+        try {
+            callback.run();
+        } catch (Throwable e) {
+            logger.warn("Message handler callback failed, ignoring", e);
+        }
+    }
+
+    private record QueuedMessage(MessageEnvelope envelope, Throwable exception, Runnable callback) {}
+}
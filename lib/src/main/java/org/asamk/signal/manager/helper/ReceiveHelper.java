@@ -2,6 +2,7 @@ package org.asamk.signal.manager.helper;
 
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.actions.HandleAction;
+import org.asamk.signal.manager.api.Pair;
 import org.asamk.signal.manager.api.ReceiveConfig;
 import org.asamk.signal.manager.api.UntrustedIdentityException;
 import org.asamk.signal.manager.internal.SignalDependencies;
@@ -20,33 +21,46 @@ import org.whispersystems.signalservice.api.websocket.WebSocketUnavailableExcept
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 
-public class ReceiveHelper {
+public class ReceiveHelper implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(ReceiveHelper.class);
     private static final int MAX_BACKOFF_COUNTER = 9;
+    private static final int RECEIVED_BATCHES_QUEUE_SIZE = 4;
+    private static final Duration NETWORK_THREAD_JOIN_TIMEOUT = Duration.ofSeconds(10);
+    private static final AtomicInteger threadNumber = new AtomicInteger(0);
 
     private final SignalAccount account;
     private final SignalDependencies dependencies;
     private final Context context;
 
-    private ReceiveConfig receiveConfig = new ReceiveConfig(false, false, false);
-    private boolean needsToRetryFailedMessages = false;
+    private volatile ReceiveConfig receiveConfig = new ReceiveConfig(false, false, false);
+    private volatile boolean needsToRetryFailedMessages = false;
     private boolean hasCaughtUpWithOldMessages = false;
-    private boolean isWaitingForMessage = false;
-    private boolean shouldStop = false;
+    private volatile boolean isWaitingForMessage = false;
+    private volatile boolean shouldStop = false;
     private Callable authenticationFailureListener;
     private Callable caughtUpWithOldMessagesListener;
+    private ThreadPoolExecutor decryptPool;
 
     public ReceiveHelper(final Context context) {
         this.account = context.getAccount();
@@ -105,8 +119,13 @@ public class ReceiveHelper {
                 .subscribe(this::onWebSocketStateChange);
         signalWebSocket.connect();
 
-        try {
-            receiveMessagesInternal(signalWebSocket, timeout, returnOnTimeout, maxMessages, handler, queuedActions);
+        try (final var handlerDispatcher = new ReceiveHandlerDispatcher(handler)) {
+            receiveMessagesInternal(signalWebSocket,
+                    timeout,
+                    returnOnTimeout,
+                    maxMessages,
+                    handlerDispatcher,
+                    queuedActions);
         } finally {
             hasCaughtUpWithOldMessages = false;
             handleQueuedActions(queuedActions.keySet());
@@ -117,45 +136,198 @@ public class ReceiveHelper {
         }
     }
 
+    /**
+     * Reading, storing and acknowledging messages from the server runs on a separate network thread, so the server
+     * queue is drained while the previous messages are still being decrypted.
+     * The messages of a batch are decrypted in parallel for different senders, and handled on the current thread in
+     * the configured delivery order.
+     */
     private void receiveMessagesInternal(
             final SignalWebSocket signalWebSocket,
             Duration timeout,
             boolean returnOnTimeout,
             Integer maxMessages,
-            Manager.ReceiveMessageHandler handler,
+            final ReceiveHandlerDispatcher handler,
+            final Map<HandleAction, HandleAction> queuedActions
+    ) throws IOException {
+        final BlockingQueue<ReceiveEvent> events = new ArrayBlockingQueue<>(RECEIVED_BATCHES_QUEUE_SIZE);
+        final var consumerActive = new AtomicBoolean(true);
+        final var networkThread = Thread.ofPlatform()
+                .name("receive-network-" + threadNumber.getAndIncrement())
+                .daemon()
+                .start(() -> readMessagesFromServer(signalWebSocket,
+                        timeout,
+                        returnOnTimeout,
+                        maxMessages,
+                        new EventSink(events, consumerActive)));
+        final var config = receiveConfig;
+        final var decrypter = new ParallelDecrypter<>(getDecryptPool(config.decryptParallelism()),
+                config.deliveryOrder(),
+                this::decryptEnvelope);
+        try {
+            handleReceiveEvents(events, decrypter, handler, queuedActions);
+        } finally {
+            // The network thread must not block on the full queue, the messages of dropped events are already cached
+            // and are retried by the next receive
+            consumerActive.set(false);
+            networkThread.interrupt();
+            events.clear();
+            try {
+                if (!networkThread.join(NETWORK_THREAD_JOIN_TIMEOUT)) {
+                    logger.warn("Network receive thread didn't stop in time, ignoring");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The decrypt threads are kept between receive calls, so receiving repeatedly doesn't start new threads each time.
+     * They stop when they have been idle for a while.
+     */
+    private synchronized ExecutorService getDecryptPool(final int parallelism) {
+        if (decryptPool == null) {
+            final var threadBuilder = account.useVirtualThreads() ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+            decryptPool = new ThreadPoolExecutor(parallelism,
+                    parallelism,
+                    1,
+                    TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(),
+                    threadBuilder.name("receive-decrypt-", 0).factory());
+            decryptPool.allowCoreThreadTimeOut(true);
+        } else if (parallelism > decryptPool.getMaximumPoolSize()) {
+            decryptPool.setMaximumPoolSize(parallelism);
+            decryptPool.setCorePoolSize(parallelism);
+        } else if (parallelism < decryptPool.getMaximumPoolSize()) {
+            decryptPool.setCorePoolSize(parallelism);
+            decryptPool.setMaximumPoolSize(parallelism);
+        }
+        return decryptPool;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (decryptPool != null) {
+            decryptPool.close();
+            decryptPool = null;
+        }
+    }
+
+    private void handleReceiveEvents(
+            final BlockingQueue<ReceiveEvent> events,
+            final ParallelDecrypter<IncomingMessageHandler.DecryptedEnvelope> decrypter,
+            final ReceiveHandlerDispatcher handler,
             final Map<HandleAction, HandleAction> queuedActions
     ) throws IOException {
-        int remainingMessages = maxMessages == null ? -1 : maxMessages;
-        var backOffCounter = 0;
         isWaitingForMessage = false;
 
-        while (!shouldStop && remainingMessages != 0) {
+        while (!shouldStop) {
             if (needsToRetryFailedMessages) {
                 retryFailedReceivedMessages(handler);
                 needsToRetryFailedMessages = false;
             }
-            SignalServiceEnvelope envelope;
-            final CachedMessage[] cachedMessage = {null};
+            final ReceiveEvent event;
+            try {
+                isWaitingForMessage = true;
+                event = events.take();
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                isWaitingForMessage = false;
+            }
+
+            switch (event) {
+                case ReceiveEvent.Messages(var cachedMessages) -> {
+                    logger.debug("{} new messages received from server", cachedMessages.size());
+                    handleCachedMessages(cachedMessages, decrypter, handler, queuedActions);
+                }
+                case ReceiveEvent.QueueEmpty() -> {
+                    logger.debug("Received indicator that server queue is empty");
+                    handleQueuedActions(queuedActions.keySet());
+                    queuedActions.clear();
+
+                    context.getJobExecutor().enqueueJob(new CleanOldPreKeysJob());
+                    hasCaughtUpWithOldMessages = true;
+                    caughtUpWithOldMessagesListener.call();
+                }
+                case ReceiveEvent.Reconnecting() -> hasCaughtUpWithOldMessages = false;
+                case ReceiveEvent.Idle() -> {
+                }
+                case ReceiveEvent.Finished() -> {
+                    return;
+                }
+                case ReceiveEvent.Failed(var e) -> throw e;
+            }
+        }
+    }
+
+    private void readMessagesFromServer(
+            final SignalWebSocket signalWebSocket,
+            Duration timeout,
+            boolean returnOnTimeout,
+            Integer maxMessages,
+            final EventSink events
+    ) {
+        ReceiveEvent lastEvent;
+        try {
+            lastEvent = readMessagesFromServerInternal(signalWebSocket,
+                    timeout,
+                    returnOnTimeout,
+                    maxMessages,
+                    events);
+        } catch (InterruptedException e) {
+            logger.debug("Reading messages from server interrupted");
+            return;
+        } catch (IOException e) {
+            lastEvent = new ReceiveEvent.Failed(e);
+        } catch (Throwable e) {
+            logger.error("Unexpected error when reading messages from server", e);
+            lastEvent = new ReceiveEvent.Finished();
+        }
+        try {
+            events.put(lastEvent);
+        } catch (InterruptedException ignored) {
+            // The consumer has already stopped
+        }
+    }
+
+    private ReceiveEvent readMessagesFromServerInternal(
+            final SignalWebSocket signalWebSocket,
+            Duration timeout,
+            boolean returnOnTimeout,
+            Integer maxMessages,
+            final EventSink events
+    ) throws IOException, InterruptedException {
+        int remainingMessages = maxMessages == null ? -1 : maxMessages;
+        var backOffCounter = 0;
+
+        while (!shouldStop && remainingMessages != 0) {
+            final List<CachedMessage> cachedMessages = new ArrayList<>();
+            final boolean queueNotEmpty;
             final var nowMillis = System.currentTimeMillis();
             if (nowMillis - account.getLastReceiveTimestamp() > 60000) {
                 account.setLastReceiveTimestamp(nowMillis);
             }
-            logger.debug("Checking for new message from server");
+            final var batchSize = remainingMessages > 0
+                    ? Math.min(remainingMessages, receiveConfig.batchSize())
+                    : receiveConfig.batchSize();
+            logger.debug("Checking for new messages from server");
             try {
-                isWaitingForMessage = true;
-                var queueNotEmpty = signalWebSocket.readMessageBatch(timeout.toMillis(), 1, batch -> {
+                queueNotEmpty = signalWebSocket.readMessageBatch(timeout.toMillis(), batchSize, batch -> {
                     logger.debug("Retrieved {} envelopes!", batch.size());
-                    isWaitingForMessage = false;
+                    // store all messages on disk, before acknowledging receipt to the server
                     for (final var it : batch) {
-                        SignalServiceEnvelope envelope1 = new SignalServiceEnvelope(it.getEnvelope(),
+                        SignalServiceEnvelope envelope = new SignalServiceEnvelope(it.getEnvelope(),
                                 it.getServerDeliveredTimestamp());
-                        final var recipientId = envelope1.getSourceServiceId()
+                        final var recipientId = envelope.getSourceServiceId()
                                 .map(ServiceId::parseOrNull)
                                 .map(s -> account.getRecipientResolver().resolveRecipient(s))
                                 .orElse(null);
                         logger.trace("Storing new message from {}", recipientId);
-                        // store message on disk, before acknowledging receipt to the server
-                        cachedMessage[0] = account.getMessageCache().cacheMessage(envelope1, recipientId);
+                        cachedMessages.add(account.getMessageCache().cacheMessage(envelope, recipientId));
+                    }
+                    for (final var it : batch) {
                         try {
                             signalWebSocket.sendAck(it);
                         } catch (IOException e) {
@@ -163,27 +335,7 @@ public class ReceiveHelper {
                         }
                     }
                 });
-                isWaitingForMessage = false;
                 backOffCounter = 0;
-
-                if (queueNotEmpty) {
-                    if (remainingMessages > 0) {
-                        remainingMessages -= 1;
-                    }
-                    envelope = cachedMessage[0].loadEnvelope();
-                    logger.debug("New message received from server");
-                } else {
-                    logger.debug("Received indicator that server queue is empty");
-                    handleQueuedActions(queuedActions.keySet());
-                    queuedActions.clear();
-
-                    context.getJobExecutor().enqueueJob(new CleanOldPreKeysJob());
-                    hasCaughtUpWithOldMessages = true;
-                    caughtUpWithOldMessagesListener.call();
-
-                    // Continue to wait another timeout for new messages
-                    continue;
-                }
             } catch (AssertionError e) {
                 if (e.getCause() instanceof InterruptedException) {
                     break;
@@ -196,71 +348,135 @@ public class ReceiveHelper {
                     final var sleepMilliseconds = 100 * (long) Math.pow(2, backOffCounter);
                     backOffCounter = Math.min(backOffCounter + 1, MAX_BACKOFF_COUNTER);
                     logger.warn("Connection closed unexpectedly, reconnecting in {} ms", sleepMilliseconds);
-                    try {
-                        Thread.sleep(sleepMilliseconds);
-                    } catch (InterruptedException interruptedException) {
-                        return;
+                    Thread.sleep(sleepMilliseconds);
+                    if (!events.put(new ReceiveEvent.Reconnecting())) {
+                        break;
                     }
-                    hasCaughtUpWithOldMessages = false;
                     signalWebSocket.connect();
                     continue;
                 }
                 throw e;
             } catch (TimeoutException e) {
                 backOffCounter = 0;
-                if (returnOnTimeout) return;
+                if (returnOnTimeout || !events.put(new ReceiveEvent.Idle())) {
+                    break;
+                }
                 continue;
             } catch (Exception e) {
                 logger.error("Unknown error when receiving messages", e);
                 continue;
             }
 
-            try {
-                final var result = context.getIncomingMessageHandler().handleEnvelope(envelope, receiveConfig, handler);
-                for (final var h : result.first()) {
-                    final var existingAction = queuedActions.get(h);
-                    if (existingAction == null) {
-                        queuedActions.put(h, h);
-                    } else {
-                        existingAction.mergeOther(h);
-                    }
+            if (!cachedMessages.isEmpty()) {
+                if (remainingMessages > 0) {
+                    remainingMessages = Math.max(0, remainingMessages - cachedMessages.size());
+                }
+                if (!events.put(new ReceiveEvent.Messages(cachedMessages))) {
+                    break;
                 }
-                final var exception = result.second();
+            }
+            if (!queueNotEmpty && !events.put(new ReceiveEvent.QueueEmpty())) {
+                break;
+            }
+        }
+        return new ReceiveEvent.Finished();
+    }
 
-                if (hasCaughtUpWithOldMessages) {
-                    handleQueuedActions(queuedActions.keySet());
-                    queuedActions.clear();
+    private void handleCachedMessages(
+            final List<CachedMessage> cachedMessages,
+            final ParallelDecrypter<IncomingMessageHandler.DecryptedEnvelope> decrypter,
+            final ReceiveHandlerDispatcher handler,
+            final Map<HandleAction, HandleAction> queuedActions
+    ) {
+        final var loadedMessages = new ArrayList<CachedMessage>(cachedMessages.size());
+        final var envelopes = new ArrayList<SignalServiceEnvelope>(cachedMessages.size());
+        for (final var cachedMessage : cachedMessages) {
+            final SignalServiceEnvelope envelope;
+            try {
+                envelope = cachedMessage.loadEnvelope();
+            } catch (IOException e) {
+                logger.warn("Failed to read cached message, keeping it for later: {}", e.getMessage());
+                continue;
+            }
+            if (envelope == null) {
+                logger.warn("Failed to load cached message, ignoring");
+                continue;
+            }
+            loadedMessages.add(cachedMessage);
+            envelopes.add(envelope);
+        }
+        decrypter.decrypt(envelopes, (index, decryptedEnvelope) -> {
+            if (decryptedEnvelope != null) {
+                // If decryption failed unexpectedly, the message is kept in the message cache and retried later
+                handleDecryptedMessage(loadedMessages.get(index), decryptedEnvelope, handler, queuedActions);
+            }
+        });
+    }
+
+    private IncomingMessageHandler.DecryptedEnvelope decryptEnvelope(final SignalServiceEnvelope envelope) {
+        return context.getIncomingMessageHandler().decryptEnvelope(envelope);
+    }
+
+    private void handleDecryptedMessage(
+            final CachedMessage cachedMessage,
+            final IncomingMessageHandler.DecryptedEnvelope decryptedEnvelope,
+            final ReceiveHandlerDispatcher handler,
+            final Map<HandleAction, HandleAction> queuedActions
+    ) {
+        final var envelope = decryptedEnvelope.envelope();
+        try {
+            final Pair<List<HandleAction>, Exception> result;
+            // The content handling does many small store lookups, reuse a single connection for them
+            try (final var ignored = account.bindDatabaseConnection()) {
+                result = context.getIncomingMessageHandler()
+                        .handleDecryptedEnvelope(decryptedEnvelope, receiveConfig, handler);
+            }
+            for (final var h : result.first()) {
+                final var existingAction = queuedActions.get(h);
+                if (existingAction == null) {
+                    queuedActions.put(h, h);
+                } else {
+                    existingAction.mergeOther(h);
                 }
-                if (cachedMessage[0] != null) {
-                    if (exception instanceof UntrustedIdentityException) {
-                        logger.debug("Keeping message with untrusted identity in message cache");
-                        final var address = ((UntrustedIdentityException) exception).getSender();
-                        if (envelope.getSourceServiceId().isEmpty() && address.uuid().isPresent()) {
-                            final var recipientId = account.getRecipientResolver()
-                                    .resolveRecipient(ACI.from(address.uuid().get()));
-                            try {
-                                cachedMessage[0] = account.getMessageCache()
-                                        .replaceSender(cachedMessage[0], recipientId);
-                            } catch (IOException ioException) {
-                                logger.warn("Failed to move cached message to recipient folder: {}",
-                                        ioException.getMessage(),
-                                        ioException);
-                            }
-                        }
-                    } else {
-                        cachedMessage[0].delete();
+            }
+            final var exception = result.second();
+
+            if (hasCaughtUpWithOldMessages) {
+                handleQueuedActions(queuedActions.keySet());
+                queuedActions.clear();
+            }
+            if (exception instanceof UntrustedIdentityException) {
+                logger.debug("Keeping message with untrusted identity in message cache");
+                final var address = ((UntrustedIdentityException) exception).getSender();
+                if (envelope.getSourceServiceId().isEmpty() && address.uuid().isPresent()) {
+                    final var recipientId = account.getRecipientResolver()
+                            .resolveRecipient(ACI.from(address.uuid().get()));
+                    try {
+                        account.getMessageCache().replaceSender(cachedMessage, recipientId);
+                    } catch (IOException ioException) {
+                        logger.warn("Failed to move cached message to recipient folder: {}",
+                                ioException.getMessage(),
+                                ioException);
                     }
                 }
-            } catch (Exception e) {
-                logger.error("Unknown error when handling messages", e);
+            } else {
+                // Only delete the message once the handler has seen it, it was already acknowledged to the server
+                handler.runAfterHandled(cachedMessage::delete);
             }
+        } catch (Exception e) {
+            logger.error("Unknown error when handling messages", e);
         }
     }
 
-    private void retryFailedReceivedMessages(Manager.ReceiveMessageHandler handler) {
+    private void retryFailedReceivedMessages(final ReceiveHandlerDispatcher handler) {
+        // Messages still waiting for the handler are in the cache until they're handled, don't handle them twice
+        handler.awaitHandled();
         Set<HandleAction> queuedActions = new HashSet<>();
         for (var cachedMessage : account.getMessageCache().getCachedMessages()) {
-            var actions = retryFailedReceivedMessage(handler, cachedMessage);
+            final List<HandleAction> actions;
+            try (final var ignored = account.bindDatabaseConnection()) {
+                actions = retryFailedReceivedMessage(handler, cachedMessage);
+            }
             if (actions != null) {
                 queuedActions.addAll(actions);
             }
@@ -269,9 +485,15 @@ public class ReceiveHelper {
     }
 
     private List<HandleAction> retryFailedReceivedMessage(
-            final Manager.ReceiveMessageHandler handler, final CachedMessage cachedMessage
+            final ReceiveHandlerDispatcher handler, final CachedMessage cachedMessage
     ) {
-        var envelope = cachedMessage.loadEnvelope();
+        final SignalServiceEnvelope envelope;
+        try {
+            envelope = cachedMessage.loadEnvelope();
+        } catch (IOException e) {
+            logger.warn("Failed to read cached message, retrying later: {}", e.getMessage());
+            return null;
+        }
         if (envelope == null) {
             cachedMessage.delete();
             return null;
@@ -284,7 +506,7 @@ public class ReceiveHelper {
         if (exception instanceof UntrustedIdentityException) {
             if (System.currentTimeMillis() - envelope.getServerDeliveredTimestamp() > 1000L * 60 * 60 * 24 * 30) {
                 // Envelope is more than a month old, cleaning up.
-                cachedMessage.delete();
+                handler.runAfterHandled(cachedMessage::delete);
                 return null;
             }
             if (envelope.getSourceServiceId().isEmpty()) {
@@ -303,7 +525,7 @@ public class ReceiveHelper {
         }
 
         // If successful and for all other errors that are not recoverable, delete the cached message
-        cachedMessage.delete();
+        handler.runAfterHandled(cachedMessage::delete);
         return actions;
     }
 
@@ -330,4 +552,39 @@ public class ReceiveHelper {
 
         void call();
     }
+
+    private sealed interface ReceiveEvent {
+
+        record Messages(List<CachedMessage> cachedMessages) implements ReceiveEvent {}
+
+        record QueueEmpty() implements ReceiveEvent {}
+
+        record Reconnecting() implements ReceiveEvent {}
+
+        record Idle() implements ReceiveEvent {}
+
+        record Finished() implements ReceiveEvent {}
+
+        record Failed(IOException exception) implements ReceiveEvent {}
+    }
+
+    /**
+     * Passes events from the network thread to the consumer, dropping them once the consumer has stopped.
+     */
+    private record EventSink(BlockingQueue<ReceiveEvent> events, AtomicBoolean consumerActive) {
+
+        private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+        /**
+         * @return false if the event was dropped, because the consumer has stopped
+         */
+        boolean put(final ReceiveEvent event) throws InterruptedException {
+            while (consumerActive.get()) {
+                if (events.offer(event, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
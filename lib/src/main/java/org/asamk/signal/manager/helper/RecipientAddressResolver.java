@@ -3,7 +3,22 @@ package org.asamk.signal.manager.helper;
 import org.asamk.signal.manager.storage.recipients.RecipientAddress;
 import org.asamk.signal.manager.storage.recipients.RecipientId;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 public interface RecipientAddressResolver {
 
     RecipientAddress resolveRecipientAddress(RecipientId recipientId);
+
+    /**
+     * Resolve the addresses of multiple recipients at once, implementations should look them up with a single query.
+     */
+    default Map<RecipientId, RecipientAddress> resolveRecipientAddresses(Collection<RecipientId> recipientIds) {
+        final var addresses = new HashMap<RecipientId, RecipientAddress>();
+        for (final var recipientId : recipientIds) {
+            addresses.put(recipientId, resolveRecipientAddress(recipientId));
+        }
+        return addresses;
+    }
 }
@@ -8,6 +8,7 @@ import org.asamk.signal.manager.api.NotAGroupMemberException;
 import org.asamk.signal.manager.api.Profile;
 import org.asamk.signal.manager.api.UnregisteredRecipientException;
 import org.asamk.signal.manager.groups.GroupUtils;
+import org.asamk.signal.manager.internal.SessionLockManager;
 import org.asamk.signal.manager.internal.SignalDependencies;
 import org.asamk.signal.manager.storage.SignalAccount;
 import org.asamk.signal.manager.storage.groups.GroupInfo;
@@ -50,7 +51,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import okio.ByteString;
 
@@ -77,25 +77,50 @@ public class SendHelper {
             final RecipientId recipientId,
             Optional<Long> editTargetTimestamp
     ) {
-        var contact = account.getContactStore().getContact(recipientId);
-        if (contact == null || !contact.isProfileSharingEnabled() || contact.isHidden()) {
-            final var contactBuilder = contact == null ? Contact.newBuilder() : Contact.newBuilder(contact);
-            contact = contactBuilder.withIsProfileSharingEnabled(true).withIsHidden(false).build();
-            account.getContactStore().storeContact(recipientId, contact);
+        Contact contact;
+        try (final var ignored = account.bindDatabaseConnection()) {
+            contact = account.getContactStore().getContact(recipientId);
+            if (contact == null || !contact.isProfileSharingEnabled() || contact.isHidden()) {
+                final var contactBuilder = contact == null ? Contact.newBuilder() : Contact.newBuilder(contact);
+                contact = contactBuilder.withIsProfileSharingEnabled(true).withIsHidden(false).build();
+                account.getContactStore().storeContact(recipientId, contact);
+            }
         }
 
-        final var expirationTime = contact.messageExpirationTime();
-        messageBuilder.withExpiration(expirationTime);
+        final SignalServiceDataMessage message;
+        // The builder is shared by the concurrent sends to multiple recipients
+        synchronized (messageBuilder) {
+            final var expirationTime = contact.messageExpirationTime();
+            messageBuilder.withExpiration(expirationTime);
 
-        if (!contact.isBlocked()) {
-            final var profileKey = account.getProfileKey().serialize();
-            messageBuilder.withProfileKey(profileKey);
-        }
+            if (!contact.isBlocked()) {
+                final var profileKey = account.getProfileKey().serialize();
+                messageBuilder.withProfileKey(profileKey);
+            }
 
-        final var message = messageBuilder.build();
+            message = messageBuilder.build();
+        }
         return sendMessage(message, recipientId, editTargetTimestamp);
     }
 
+    /**
+     * Send a single message to each of the recipients, up to the configured send parallelism concurrently.
+     * The message is extended with the current expiration timer of each recipient.
+     *
+     * @return the results in the same order as the recipients
+     */
+    public List<SendMessageResult> sendMessage(
+            final SignalServiceDataMessage.Builder messageBuilder,
+            final List<RecipientId> recipientIds,
+            Optional<Long> editTargetTimestamp
+    ) {
+        final var parallelSender = new ParallelSender(account.getSendParallelism(),
+                account.getRuntime().getBlockingExecutor(),
+                recipientId -> sendMessage(messageBuilder, recipientId, editTargetTimestamp),
+                context.getRecipientHelper()::resolveSignalServiceAddress);
+        return parallelSender.send(recipientIds);
+    }
+
     /**
      * Send a group message to the given group
      * The message is extended with the current expiration timer for the group and the group context.
@@ -337,23 +362,13 @@ public class SendHelper {
             final Optional<Long> editTargetTimestamp
     ) throws IOException {
         final var messageSender = dependencies.getMessageSender();
-        final var messageSendLogStore = account.getMessageSendLogStore();
-        final AtomicLong entryId = new AtomicLong(-1);
-
         final var urgent = true;
+        final var messageSendLogBatch = account.getMessageSendLogStore()
+                .startBatch(message.getTimestamp(), contentHint, urgent);
+
         final PartialSendCompleteListener partialSendCompleteListener = sendResult -> {
             logger.trace("Partial message send result: {}", sendResult.isSuccess());
-            synchronized (entryId) {
-                if (entryId.get() == -1) {
-                    final var newId = messageSendLogStore.insertIfPossible(message.getTimestamp(),
-                            sendResult,
-                            contentHint,
-                            urgent);
-                    entryId.set(newId);
-                } else {
-                    messageSendLogStore.addRecipientToExistingEntryIfPossible(entryId.get(), sendResult);
-                }
-            }
+            messageSendLogBatch.add(sendResult);
         };
         final LegacySenderHandler legacySender = (recipients, unidentifiedAccess, isRecipientUpdate) ->
                 editTargetTimestamp.isEmpty()
@@ -389,33 +404,19 @@ public class SendHelper {
                 editTargetTimestamp.map(timestamp -> new SignalServiceEditMessage(timestamp, message)).orElse(null),
                 sendResult -> {
                     logger.trace("Partial message send results: {}", sendResult.size());
-                    synchronized (entryId) {
-                        if (entryId.get() == -1) {
-                            final var newId = messageSendLogStore.insertIfPossible(message.getTimestamp(),
-                                    sendResult,
-                                    contentHint,
-                                    urgent);
-                            entryId.set(newId);
-                        } else {
-                            messageSendLogStore.addRecipientToExistingEntryIfPossible(entryId.get(), sendResult);
-                        }
-                    }
-                    synchronized (entryId) {
-                        if (entryId.get() == -1) {
-                            final var newId = messageSendLogStore.insertIfPossible(message.getTimestamp(),
-                                    sendResult,
-                                    contentHint,
-                                    urgent);
-                            entryId.set(newId);
-                        } else {
-                            messageSendLogStore.addRecipientToExistingEntryIfPossible(entryId.get(), sendResult);
-                        }
-                    }
+                    messageSendLogBatch.add(sendResult);
                 });
-        final var results = sendGroupMessageInternal(legacySender, senderKeySender, recipientIds, distributionId);
+        final List<SendMessageResult> results;
+        try {
+            results = sendGroupMessageInternal(legacySender, senderKeySender, recipientIds, distributionId);
+        } finally {
+            messageSendLogBatch.commit();
+        }
 
-        for (var r : results) {
-            handleSendMessageResult(r);
+        try (final var ignored = account.bindDatabaseConnection()) {
+            for (var r : results) {
+                handleSendMessageResult(r);
+            }
         }
 
         return results;
@@ -439,8 +440,10 @@ public class SendHelper {
                 recipientIds,
                 distributionId);
 
-        for (var r : results) {
-            handleSendMessageResult(r);
+        try (final var ignored = account.bindDatabaseConnection()) {
+            for (var r : results) {
+                handleSendMessageResult(r);
+            }
         }
 
         return results;
@@ -467,55 +470,62 @@ public class SendHelper {
             final Set<RecipientId> recipientIds,
             final DistributionId distributionId
     ) throws IOException {
-        long startTime = System.currentTimeMillis();
-        // isRecipientUpdate is true if we've already sent this message to some recipients in the past, otherwise false.
-        final var isRecipientUpdate = false;
-        Set<RecipientId> senderKeyTargets = distributionId == null
-                ? Set.of()
-                : getSenderKeyCapableRecipientIds(recipientIds);
-        final var allResults = new ArrayList<SendMessageResult>(recipientIds.size());
-
-        if (!senderKeyTargets.isEmpty()) {
-            final var results = sendGroupMessageInternalWithSenderKey(senderKeySender,
-                    senderKeyTargets,
-                    distributionId,
-                    isRecipientUpdate);
-
-            if (results == null) {
-                senderKeyTargets = Set.of();
-            } else {
-                results.stream().filter(SendMessageResult::isSuccess).forEach(allResults::add);
-                final var recipientResolver = account.getRecipientResolver();
-                final var failedTargets = results.stream()
-                        .filter(r -> !r.isSuccess())
-                        .map(r -> recipientResolver.resolveRecipient(r.getAddress()))
-                        .toList();
-                if (!failedTargets.isEmpty()) {
-                    senderKeyTargets = new HashSet<>(senderKeyTargets);
-                    failedTargets.forEach(senderKeyTargets::remove);
+        final var lockKeys = new ArrayList<Object>(recipientIds);
+        if (distributionId != null) {
+            lockKeys.add(distributionId);
+        }
+        try (final var ignored = dependencies.getSessionLock().openScope(lockKeys)) {
+            long startTime = System.currentTimeMillis();
+            // isRecipientUpdate is true if we've already sent this message to some recipients in the past,
+            // otherwise false.
+            final var isRecipientUpdate = false;
+            Set<RecipientId> senderKeyTargets = distributionId == null
+                    ? Set.of()
+                    : getSenderKeyCapableRecipientIds(recipientIds);
+            final var allResults = new ArrayList<SendMessageResult>(recipientIds.size());
+
+            if (!senderKeyTargets.isEmpty()) {
+                final var results = sendGroupMessageInternalWithSenderKey(senderKeySender,
+                        senderKeyTargets,
+                        distributionId,
+                        isRecipientUpdate);
+
+                if (results == null) {
+                    senderKeyTargets = Set.of();
+                } else {
+                    results.stream().filter(SendMessageResult::isSuccess).forEach(allResults::add);
+                    final var recipientResolver = account.getRecipientResolver();
+                    final var failedTargets = results.stream()
+                            .filter(r -> !r.isSuccess())
+                            .map(r -> recipientResolver.resolveRecipient(r.getAddress()))
+                            .toList();
+                    if (!failedTargets.isEmpty()) {
+                        senderKeyTargets = new HashSet<>(senderKeyTargets);
+                        failedTargets.forEach(senderKeyTargets::remove);
+                    }
                 }
             }
-        }
 
-        final var legacyTargets = new HashSet<>(recipientIds);
-        legacyTargets.removeAll(senderKeyTargets);
-        final boolean onlyTargetIsSelfWithLinkedDevice = recipientIds.isEmpty() && account.isMultiDevice();
+            final var legacyTargets = new HashSet<>(recipientIds);
+            legacyTargets.removeAll(senderKeyTargets);
+            final boolean onlyTargetIsSelfWithLinkedDevice = recipientIds.isEmpty() && account.isMultiDevice();
 
-        if (!legacyTargets.isEmpty() || onlyTargetIsSelfWithLinkedDevice) {
-            if (!legacyTargets.isEmpty()) {
-                logger.debug("Need to do {} legacy sends.", legacyTargets.size());
-            } else {
-                logger.debug("Need to do a legacy send to send a sync message for a group of only ourselves.");
-            }
+            if (!legacyTargets.isEmpty() || onlyTargetIsSelfWithLinkedDevice) {
+                if (!legacyTargets.isEmpty()) {
+                    logger.debug("Need to do {} legacy sends.", legacyTargets.size());
+                } else {
+                    logger.debug("Need to do a legacy send to send a sync message for a group of only ourselves.");
+                }
 
-            final List<SendMessageResult> results = sendGroupMessageInternalWithLegacy(legacySender,
-                    legacyTargets,
-                    isRecipientUpdate || !allResults.isEmpty());
-            allResults.addAll(results);
+                final List<SendMessageResult> results = sendGroupMessageInternalWithLegacy(legacySender,
+                        legacyTargets,
+                        isRecipientUpdate || !allResults.isEmpty());
+                allResults.addAll(results);
+            }
+            final var duration = Duration.ofMillis(System.currentTimeMillis() - startTime);
+            logger.debug("Sending took {}", duration.toString());
+            return allResults;
         }
-        final var duration = Duration.ofMillis(System.currentTimeMillis() - startTime);
-        logger.debug("Sending took {}", duration.toString());
-        return allResults;
     }
 
     private Set<RecipientId> getSenderKeyCapableRecipientIds(final Set<RecipientId> recipientIds) {
@@ -677,46 +687,62 @@ public class SendHelper {
                                 SignalServiceMessageSender.IndividualSendEvents.EMPTY,
                                 urgent,
                                 editTargetTimestamp.get()));
-        messageSendLogStore.insertIfPossible(message.getTimestamp(), result, ContentHint.RESENDABLE, urgent);
-        handleSendMessageResult(result);
+        try (final var ignored = account.bindDatabaseConnection()) {
+            messageSendLogStore.insertIfPossible(message.getTimestamp(), result, ContentHint.RESENDABLE, urgent);
+            handleSendMessageResult(result);
+        }
         return result;
     }
 
     private SendMessageResult handleSendMessage(RecipientId recipientId, SenderHandler s) {
-        var messageSender = dependencies.getMessageSender();
+        try (final var ignored = openSessionLockScope(recipientId)) {
+            var messageSender = dependencies.getMessageSender();
 
-        var address = context.getRecipientHelper().resolveSignalServiceAddress(recipientId);
-        try {
+            var address = context.getRecipientHelper().resolveSignalServiceAddress(recipientId);
             try {
-                return s.send(messageSender, address, context.getUnidentifiedAccessHelper().getAccessFor(recipientId));
-            } catch (UnregisteredUserException e) {
-                final RecipientId newRecipientId;
                 try {
-                    newRecipientId = context.getRecipientHelper().refreshRegisteredUser(recipientId);
-                } catch (UnregisteredRecipientException ex) {
-                    return SendMessageResult.unregisteredFailure(address);
+                    return s.send(messageSender,
+                            address,
+                            context.getUnidentifiedAccessHelper().getAccessFor(recipientId));
+                } catch (UnregisteredUserException e) {
+                    final RecipientId newRecipientId;
+                    try {
+                        newRecipientId = context.getRecipientHelper().refreshRegisteredUser(recipientId);
+                    } catch (UnregisteredRecipientException ex) {
+                        return SendMessageResult.unregisteredFailure(address);
+                    }
+                    address = context.getRecipientHelper().resolveSignalServiceAddress(newRecipientId);
+                    try (final var ignored3 = openSessionLockScope(newRecipientId)) {
+                        return s.send(messageSender,
+                                address,
+                                context.getUnidentifiedAccessHelper().getAccessFor(newRecipientId));
+                    }
                 }
-                address = context.getRecipientHelper().resolveSignalServiceAddress(newRecipientId);
-                return s.send(messageSender,
-                        address,
-                        context.getUnidentifiedAccessHelper().getAccessFor(newRecipientId));
+            } catch (UnregisteredUserException e) {
+                return SendMessageResult.unregisteredFailure(address);
+            } catch (ProofRequiredException e) {
+                return SendMessageResult.proofRequiredFailure(address, e);
+            } catch (RateLimitException e) {
+                logger.warn("Sending failed due to rate limiting from the signal server: {}", e.getMessage());
+                return SendMessageResult.rateLimitFailure(address, e);
+            } catch (org.whispersystems.signalservice.api.crypto.UntrustedIdentityException e) {
+                return SendMessageResult.identityFailure(address, e.getIdentityKey());
+            } catch (IOException e) {
+                logger.warn("Failed to send message due to IO exception: {}", e.getMessage());
+                logger.debug("Exception", e);
+                return SendMessageResult.networkFailure(address);
             }
-        } catch (UnregisteredUserException e) {
-            return SendMessageResult.unregisteredFailure(address);
-        } catch (ProofRequiredException e) {
-            return SendMessageResult.proofRequiredFailure(address, e);
-        } catch (RateLimitException e) {
-            logger.warn("Sending failed due to rate limiting from the signal server: {}", e.getMessage());
-            return SendMessageResult.rateLimitFailure(address, e);
-        } catch (org.whispersystems.signalservice.api.crypto.UntrustedIdentityException e) {
-            return SendMessageResult.identityFailure(address, e.getIdentityKey());
-        } catch (IOException e) {
-            logger.warn("Failed to send message due to IO exception: {}", e.getMessage());
-            logger.debug("Exception", e);
-            return SendMessageResult.networkFailure(address);
         }
     }
 
+    /**
+     * Only lock the sessions of the recipient while sending, so sends to different recipients can run in parallel.
+     * The sessions of our own devices for the sync message are locked separately, only while they're used.
+     */
+    private SessionLockManager.Scope openSessionLockScope(final RecipientId recipientId) {
+        return dependencies.getSessionLock().openScope(List.of(recipientId));
+    }
+
     private SendMessageResult sendSelfMessage(SignalServiceDataMessage message, Optional<Long> editTargetTimestamp) {
         var address = account.getSelfAddress();
         var transcript = new SentTranscriptMessage(Optional.of(address),
@@ -734,6 +760,12 @@ public class SendHelper {
     }
 
     private void handleSendMessageResult(final SendMessageResult r) {
+        try (final var ignored = account.bindDatabaseConnection()) {
+            handleSendMessageResultInternal(r);
+        }
+    }
+
+    private void handleSendMessageResultInternal(final SendMessageResult r) {
         if (r.isSuccess() && !r.getSuccess().isUnidentified()) {
             final var recipientId = account.getRecipientResolver().resolveRecipient(r.getAddress());
             final var profile = account.getProfileStore().getProfile(recipientId);
@@ -1,89 +1,428 @@
 package org.asamk.signal.manager.internal;
 
+import org.asamk.signal.manager.ManagerRuntime;
 import org.asamk.signal.manager.helper.Context;
 import org.asamk.signal.manager.jobs.Job;
+import org.asamk.signal.manager.jobs.PersistentJob;
+import org.asamk.signal.manager.jobs.RetryJobException;
+import org.asamk.signal.manager.storage.jobs.JobStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Runs the background jobs of an account.
+ * <p>
+ * Waiting jobs run in the order of their priority and then in the order they were enqueued. A job that is enqueued
+ * while an equal job with the same key is still waiting replaces the waiting job, so the most recent data is used, and
+ * only a limited number of jobs of the same class run at once. Jobs that fail with a {@link RetryJobException} are run
+ * again with an exponential backoff.
+ * {@link PersistentJob}s are stored in the account database until they have finished, so they're resumed by
+ * {@link #resumePersistedJobs()} after a restart.
+ */
 public class JobExecutor implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(JobExecutor.class);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long NOT_STORED = -1;
+    private static final Duration INITIAL_RETRY_DELAY = Duration.ofSeconds(10);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+    private static final Comparator<QueuedJob> QUEUE_ORDER = Comparator.comparing(QueuedJob::priority)
+            .thenComparingLong(QueuedJob::sequence);
+
     private final Context context;
+    private final Supplier<JobStore> jobStore;
     private final ExecutorService executorService;
-    private Job running;
-    private final Queue<Job> queue = new ArrayDeque<>();
+    private final ScheduledExecutorService scheduler;
+    private final int maxRunning;
+    private final int maxRunningLowPriority;
+
+    // Guarded by this
+    private final NavigableSet<QueuedJob> queue = new TreeSet<>(QUEUE_ORDER);
+    private final Map<String, QueuedJob> waitingByKey = new HashMap<>();
+    private final Map<QueuedJob, ScheduledFuture<?>> delayedJobs = new HashMap<>();
+    private final Map<Class<?>, Integer> runningByClass = new HashMap<>();
+    private long nextSequence;
+    private int running;
+    private boolean resumed;
+    private boolean closed;
 
     public JobExecutor(final Context context) {
+        this(context,
+                context.getAccount().getRuntime(),
+                context.getAccount().getExecutor(),
+                () -> context.getAccount().getJobStore());
+    }
+
+    JobExecutor(
+            final Context context,
+            final ManagerRuntime runtime,
+            final ExecutorService accountExecutor,
+            final Supplier<JobStore> jobStore
+    ) {
         this.context = context;
-        this.executorService = Executors.newCachedThreadPool();
+        this.jobStore = jobStore;
+        this.executorService = accountExecutor;
+        this.scheduler = runtime.getScheduler();
+        this.maxRunning = runtime.getWorkerThreadsPerAccount();
+        this.maxRunningLowPriority = Math.max(1, maxRunning - 1);
     }
 
     public void enqueueJob(Job job) {
-        if (executorService.isShutdown()) {
-            logger.debug("Not enqueuing {} job, shutting down", job.getClass().getSimpleName());
-            return;
-        }
+        enqueueJob(job, Duration.ZERO);
+    }
 
-        synchronized (queue) {
-            logger.trace("Enqueuing {} job", job.getClass().getSimpleName());
-            queue.add(job);
+    /**
+     * Enqueue a job that is run after the given delay.
+     * If an equal job is already waiting, the new job takes its place in the queue, and a waiting retry is run without
+     * further delay.
+     */
+    public void enqueueJob(Job job, Duration delay) {
+        final var name = job.getClass().getSimpleName();
+        final var key = job.getKey();
+        final QueuedJob queuedJob;
+        synchronized (this) {
+            if (closed) {
+                logger.debug("Not enqueuing {} job, shutting down", name);
+                return;
+            }
+            final var waitingJob = key == null ? null : waitingByKey.get(key);
+            if (waitingJob != null) {
+                logger.trace("Replacing waiting {} job with the equal new job", name);
+                waitingJob.job = job;
+                final var delayedJob = delayedJobs.get(waitingJob);
+                if (!delay.isPositive() && delayedJob != null && delayedJob.cancel(false)) {
+                    delayedJobs.remove(waitingJob);
+                    queue.add(waitingJob);
+                }
+                queuedJob = null;
+            } else {
+                logger.trace("Enqueuing {} job", name);
+                queuedJob = new QueuedJob(job, key, 0, NOT_STORED, nextSequence++);
+                if (key != null) {
+                    waitingByKey.put(key, queuedJob);
+                }
+            }
         }
 
-        runNextJob();
+        if (queuedJob == null) {
+            if (job instanceof PersistentJob persistentJob) {
+                updateStoredJobData(persistentJob, key);
+            }
+        } else {
+            if (job instanceof PersistentJob persistentJob) {
+                // The key is already reserved, so no equal job can be stored meanwhile
+                queuedJob.generation = storeJob(persistentJob, key, delay);
+            }
+            schedule(queuedJob, delay);
+        }
+        runNextJobs();
     }
 
-    private void runNextJob() {
-        Job job;
-        synchronized (queue) {
-            if (running != null) {
+    /**
+     * Enqueue the persistent jobs that haven't finished before the last shutdown.
+     * Only has an effect the first time it's called.
+     */
+    public void resumePersistedJobs() {
+        synchronized (this) {
+            if (resumed || closed) {
                 return;
             }
-            job = queue.poll();
-            running = job;
+            resumed = true;
         }
 
-        if (job == null) {
+        final List<JobStore.StoredJob> storedJobs;
+        try {
+            storedJobs = getJobStore().getJobs();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load stored jobs, ignoring: {}", e.getMessage());
+            return;
+        }
+        if (!storedJobs.isEmpty()) {
+            logger.debug("Resuming {} stored jobs", storedJobs.size());
+        }
+        final var now = System.currentTimeMillis();
+        for (final var storedJob : storedJobs) {
+            final PersistentJob job;
+            try {
+                job = PersistentJob.deserialize(storedJob.type(), storedJob.data());
+            } catch (IOException e) {
+                logger.warn("Failed to restore stored {} job, ignoring: {}", storedJob.type(), e.getMessage());
+                deleteStoredJob(storedJob.key(), storedJob.generation());
+                continue;
+            }
+            final var key = job.getKey();
             synchronized (this) {
-                this.notifyAll();
+                if (closed) {
+                    return;
+                }
+                if (waitingByKey.containsKey(key)) {
+                    continue;
+                }
+                final var queuedJob = new QueuedJob(job,
+                        key,
+                        storedJob.attempts(),
+                        storedJob.generation(),
+                        nextSequence++);
+                waitingByKey.put(key, queuedJob);
+                schedule(queuedJob, Duration.ofMillis(Math.max(0, storedJob.runAfter() - now)));
             }
+        }
+        runNextJobs();
+    }
+
+    private synchronized void schedule(final QueuedJob queuedJob, final Duration delay) {
+        if (closed) {
             return;
         }
-        logger.debug("Running {} job", job.getClass().getSimpleName());
-        executorService.execute(() -> {
-            try {
-                job.run(context);
-            } catch (Throwable e) {
-                logger.warn("Job {} failed", job.getClass().getSimpleName(), e);
-            } finally {
-                synchronized (queue) {
-                    running = null;
+        if (!delay.isPositive()) {
+            queue.add(queuedJob);
+            return;
+        }
+        final var future = scheduler.schedule(() -> {
+            synchronized (this) {
+                if (delayedJobs.remove(queuedJob) == null) {
+                    return;
                 }
-                runNextJob();
+                queue.add(queuedJob);
             }
-        });
+            runNextJobs();
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+        delayedJobs.put(queuedJob, future);
     }
 
-    @Override
-    public void close() {
-        final boolean queueEmpty;
-        synchronized (queue) {
-            queueEmpty = queue.isEmpty();
+    private void runNextJobs() {
+        final var jobs = new ArrayList<QueuedJob>();
+        synchronized (this) {
+            final var iterator = queue.iterator();
+            while (running < maxRunning && iterator.hasNext()) {
+                final var queuedJob = iterator.next();
+                final var job = queuedJob.job();
+                if (job.getPriority() == Job.Priority.LOW && running >= maxRunningLowPriority) {
+                    continue;
+                }
+                final int runningOfClass = runningByClass.getOrDefault(job.getClass(), 0);
+                if (runningOfClass >= job.getMaxConcurrency()) {
+                    continue;
+                }
+                iterator.remove();
+                if (queuedJob.key() != null) {
+                    waitingByKey.remove(queuedJob.key(), queuedJob);
+                }
+                runningByClass.put(job.getClass(), runningOfClass + 1);
+                running++;
+                jobs.add(queuedJob);
+            }
+            if (running == 0 && queue.isEmpty()) {
+                this.notifyAll();
+            }
+        }
+
+        for (final var queuedJob : jobs) {
+            logger.debug("Running {} job", queuedJob.job().getClass().getSimpleName());
+            executorService.execute(() -> runJob(queuedJob));
+        }
+    }
+
+    private void runJob(final QueuedJob queuedJob) {
+        final var job = queuedJob.job();
+        final var name = job.getClass().getSimpleName();
+        RetryJobException retryException = null;
+        try {
+            job.run(context);
+        } catch (RetryJobException e) {
+            retryException = e;
+        } catch (Throwable e) {
+            logger.warn("Job {} failed", name, e);
+        }
+
+        final var key = queuedJob.key();
+        final boolean equalJobWaiting;
+        final boolean isClosed;
+        synchronized (this) {
+            running--;
+            runningByClass.computeIfPresent(job.getClass(), (c, n) -> n == 1 ? null : n - 1);
+            equalJobWaiting = key != null && waitingByKey.containsKey(key);
+            isClosed = closed;
         }
-        if (queueEmpty) {
-            executorService.close();
+
+        final var attempts = queuedJob.attempts() + 1;
+        if (equalJobWaiting) {
+            // The waiting job supersedes this one, it has already replaced the stored entry
+            logger.trace("Job {} superseded by a waiting equal job", name);
+        } else if (retryException != null && attempts < MAX_ATTEMPTS) {
+            final var delay = getRetryDelay(attempts, retryException.getRetryAfter());
+            if (updateStoredJob(queuedJob, attempts, System.currentTimeMillis() + delay.toMillis())) {
+                logger.warn("{}, retrying in {}s: {}",
+                        retryException.getMessage(),
+                        delay.toSeconds(),
+                        retryException.getCause() == null ? "" : retryException.getCause().getMessage());
+                if (!isClosed) {
+                    retryLater(queuedJob, attempts, delay);
+                }
+            } else {
+                // An equal job has been enqueued and started while this one was running, it replaced the stored entry
+                logger.debug("{}, not retrying as it's superseded by a newer equal job", retryException.getMessage());
+            }
+        } else {
+            if (retryException != null) {
+                logger.warn("{}, giving up after {} attempts", retryException.getMessage(), attempts);
+                logger.debug("Job {} failed", name, retryException);
+            }
+            // Keeps the stored entry if an equal job was enqueued and started while this one was running
+            deleteStoredJob(key, queuedJob.generation);
+        }
+
+        runNextJobs();
+    }
+
+    private synchronized void retryLater(final QueuedJob failedJob, final int attempts, final Duration delay) {
+        final var key = failedJob.key();
+        if (key != null && waitingByKey.containsKey(key)) {
+            return;
+        }
+        final var queuedJob = new QueuedJob(failedJob.job(), key, attempts, failedJob.generation, nextSequence++);
+        if (key != null) {
+            waitingByKey.put(key, queuedJob);
+        }
+        schedule(queuedJob, delay);
+    }
+
+    private static Duration getRetryDelay(final int attempts, final Duration retryAfter) {
+        final var backoff = INITIAL_RETRY_DELAY.multipliedBy(1L << Math.min(attempts - 1, 16));
+        final var delay = backoff.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : backoff;
+        return retryAfter != null && retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+    }
+
+    private JobStore getJobStore() {
+        return jobStore.get();
+    }
+
+    /**
+     * @return the generation of the stored job, or {@link #NOT_STORED} if it couldn't be stored
+     */
+    private long storeJob(final PersistentJob job, final String key, final Duration delay) {
+        try {
+            final var runAfter = delay.isPositive() ? System.currentTimeMillis() + delay.toMillis() : 0;
+            return getJobStore().addJob(key, job.getType(), job.serialize(), runAfter);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to store {} job, ignoring: {}", job.getClass().getSimpleName(), e.getMessage());
+            return NOT_STORED;
+        }
+    }
+
+    private void updateStoredJobData(final PersistentJob job, final String key) {
+        try {
+            getJobStore().updateJobData(key, job.getType(), job.serialize());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to update stored job {}, ignoring: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the stored job has been replaced by a newer equal job
+     */
+    private boolean updateStoredJob(final QueuedJob queuedJob, final int attempts, final long runAfter) {
+        if (queuedJob.generation == NOT_STORED) {
+            return true;
+        }
+        try {
+            return getJobStore().updateJobAttempts(queuedJob.key(), queuedJob.generation, attempts, runAfter);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to update stored job {}, ignoring: {}", queuedJob.key(), e.getMessage());
+            return true;
+        }
+    }
+
+    private void deleteStoredJob(final String key, final long generation) {
+        if (generation == NOT_STORED) {
             return;
         }
+        try {
+            getJobStore().deleteJob(key, generation);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete stored job {}, ignoring: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for the running jobs and the waiting jobs that aren't persistent.
+     * Waiting persistent jobs and retries stay stored and are resumed after the next start.
+     */
+    @Override
+    public void close() {
         synchronized (this) {
+            closed = true;
+            delayedJobs.values().forEach(future -> future.cancel(false));
+            delayedJobs.clear();
+            queue.removeIf(queuedJob -> queuedJob.job() instanceof PersistentJob);
             try {
-                this.wait();
+                while (running > 0 || !queue.isEmpty()) {
+                    this.wait();
+                }
             } catch (InterruptedException ignored) {
             }
         }
-        executorService.close();
+    }
+
+    private static final class QueuedJob {
+
+        private final String key;
+        private final Job.Priority priority;
+        private final int attempts;
+        private final long sequence;
+        // Guarded by the executor, replaced by an equal job while waiting
+        private Job job;
+        // Generation of the stored entry of a persistent job, set before the job is scheduled
+        private long generation;
+
+        private QueuedJob(
+                final Job job,
+                final String key,
+                final int attempts,
+                final long generation,
+                final long sequence
+        ) {
+            this.job = job;
+            this.key = key;
+            this.priority = job.getPriority();
+            this.attempts = attempts;
+            this.generation = generation;
+            this.sequence = sequence;
+        }
+
+        Job job() {
+            return job;
+        }
+
+        String key() {
+            return key;
+        }
+
+        Job.Priority priority() {
+            return priority;
+        }
+
+        int attempts() {
+            return attempts;
+        }
+
+        long sequence() {
+            return sequence;
+        }
     }
 }
@@ -86,7 +86,6 @@ import org.signal.libsignal.protocol.InvalidMessageException;
 import org.signal.libsignal.usernames.BaseUsernameException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.whispersystems.signalservice.api.SignalSessionLock;
 import org.whispersystems.signalservice.api.messages.SignalServiceDataMessage;
 import org.whispersystems.signalservice.api.messages.SignalServicePreview;
 import org.whispersystems.signalservice.api.messages.SignalServiceReceiptMessage;
@@ -118,10 +117,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -137,7 +134,7 @@ public class ManagerImpl implements Manager {
     private final SignalDependencies dependencies;
     private final Context context;
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutorService executor;
 
     private Thread receiveThread;
     private boolean isReceivingSynchronous;
@@ -155,21 +152,17 @@ public class ManagerImpl implements Manager {
             String userAgent
     ) {
         this.account = account;
+        final var runtime = account.getRuntime();
+        this.executor = account.getExecutor();
 
-        final var sessionLock = new SignalSessionLock() {
-            private final ReentrantLock LEGACY_LOCK = new ReentrantLock();
-
-            @Override
-            public Lock acquire() {
-                LEGACY_LOCK.lock();
-                return LEGACY_LOCK::unlock;
-            }
-        };
+        final var sessionLock = new SessionLockManager();
+        account.setOwnSessionsAccessHandler(sessionLock::lockOwnSessions);
         this.dependencies = new SignalDependencies(serviceEnvironmentConfig,
                 userAgent,
                 account.getCredentialsProvider(),
                 account.getSignalServiceDataStore(),
-                executor,
+                runtime.getBlockingExecutor(),
+                runtime.getScheduler(),
                 sessionLock);
         final var avatarStore = new AvatarStore(pathConfig.avatarsPath());
         final var attachmentStore = new AttachmentStore(pathConfig.attachmentsPath());
@@ -224,6 +217,7 @@ public class ManagerImpl implements Manager {
 
     public void checkAccountState() throws IOException {
         context.getAccountHelper().checkAccountState();
+        context.getJobExecutor().resumePersistedJobs();
         final var lastRecipientsRefresh = account.getLastRecipientsRefresh();
         if (lastRecipientsRefresh == null
                 || lastRecipientsRefresh < System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)) {
@@ -540,6 +534,9 @@ public class ManagerImpl implements Manager {
         var results = new HashMap<RecipientIdentifier, List<SendMessageResult>>();
         long timestamp = System.currentTimeMillis();
         messageBuilder.withTimestamp(timestamp);
+        final var singleRecipients = new ArrayList<RecipientIdentifier.Single>();
+        final var singleRecipientIds = new ArrayList<RecipientId>();
+        final var groups = new ArrayList<RecipientIdentifier.Group>();
         for (final var recipient : recipients) {
             if (recipient instanceof RecipientIdentifier.NoteToSelf || (
                     recipient instanceof RecipientIdentifier.Single single
@@ -552,20 +549,29 @@ public class ManagerImpl implements Manager {
                 results.put(recipient, List.of(toSendMessageResult(result)));
             } else if (recipient instanceof RecipientIdentifier.Single single) {
                 try {
-                    final var recipientId = context.getRecipientHelper().resolveRecipient(single);
-                    final var result = context.getSendHelper()
-                            .sendMessage(messageBuilder, recipientId, editTargetTimestamp);
-                    results.put(recipient, List.of(toSendMessageResult(result)));
+                    singleRecipientIds.add(context.getRecipientHelper().resolveRecipient(single));
+                    singleRecipients.add(single);
                 } catch (UnregisteredRecipientException e) {
                     results.put(recipient,
                             List.of(SendMessageResult.unregisteredFailure(single.toPartialRecipientAddress())));
                 }
             } else if (recipient instanceof RecipientIdentifier.Group group) {
-                final var result = context.getSendHelper()
-                        .sendAsGroupMessage(messageBuilder, group.groupId(), notifySelf, editTargetTimestamp);
-                results.put(recipient, result.stream().map(this::toSendMessageResult).toList());
+                groups.add(group);
+            }
+        }
+        if (!singleRecipientIds.isEmpty()) {
+            final var singleResults = context.getSendHelper()
+                    .sendMessage(messageBuilder, singleRecipientIds, editTargetTimestamp);
+            for (var i = 0; i < singleRecipients.size(); i++) {
+                results.put(singleRecipients.get(i), List.of(toSendMessageResult(singleResults.get(i))));
             }
         }
+        // Group messages are sent last, as they add the group context to the message builder
+        for (final var group : groups) {
+            final var result = context.getSendHelper()
+                    .sendAsGroupMessage(messageBuilder, group.groupId(), notifySelf, editTargetTimestamp);
+            results.put(group, result.stream().map(this::toSendMessageResult).toList());
+        }
         return new SendMessageResults(timestamp, results);
     }
 
@@ -1332,6 +1338,16 @@ public class ManagerImpl implements Manager {
         }
     }
 
+    @Override
+    public void addAttachmentDownloadListener(final AttachmentDownloadListener listener) {
+        context.getAttachmentHelper().addAttachmentDownloadListener(listener);
+    }
+
+    @Override
+    public void removeAttachmentDownloadListener(final AttachmentDownloadListener listener) {
+        context.getAttachmentHelper().removeAttachmentDownloadListener(listener);
+    }
+
     @Override
     public InputStream retrieveAttachment(final String id) throws IOException {
         return context.getAttachmentHelper().retrieveAttachment(id).getStream();
@@ -1349,8 +1365,8 @@ public class ManagerImpl implements Manager {
         if (thread != null) {
             stopReceiveThread(thread);
         }
+        // The account executor is shared with the other components and closed by the account
         context.close();
-        executor.close();
 
         dependencies.getSignalWebSocket().disconnect();
         dependencies.getPushServiceSocket().close();
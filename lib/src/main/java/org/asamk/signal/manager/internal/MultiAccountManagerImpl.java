@@ -1,28 +1,44 @@
 package org.asamk.signal.manager.internal;
 
+import com.sun.management.UnixOperatingSystemMXBean;
+
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
 import org.asamk.signal.manager.ProvisioningManager;
 import org.asamk.signal.manager.RegistrationManager;
 import org.asamk.signal.manager.SignalAccountFiles;
+import org.asamk.signal.manager.api.AccountCheckException;
+import org.asamk.signal.manager.api.AccountHibernation;
+import org.asamk.signal.manager.api.AccountStatistics;
+import org.asamk.signal.manager.api.NotRegisteredException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public class MultiAccountManagerImpl implements MultiAccountManager {
 
     private static final Logger logger = LoggerFactory.getLogger(MultiAccountManagerImpl.class);
+    private static final long MAX_HIBERNATION_CHECK_INTERVAL_SECONDS = 60;
+    private static final Usage NO_USAGE = () -> {
+    };
 
     private final Set<Consumer<Manager>> onManagerAddedHandlers = new HashSet<>();
     private final Set<Consumer<Manager>> onManagerRemovedHandlers = new HashSet<>();
@@ -30,19 +46,68 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
     private final Map<URI, ProvisioningManager> provisioningManagers = new HashMap<>();
     private final SignalAccountFiles signalAccountFiles;
 
-    public MultiAccountManagerImpl(final Collection<Manager> managers, final SignalAccountFiles signalAccountFiles) {
+    private final AccountHibernation hibernation;
+    private final ScheduledExecutorService hibernationScheduler;
+    // Guarded by managers
+    private final Set<String> hibernatedNumbers = new LinkedHashSet<>();
+    private final Set<String> hibernatingNumbers = new HashSet<>();
+    private final Map<Manager, Integer> managersInUse = new HashMap<>();
+    private final Map<String, Object> activationLocks = new ConcurrentHashMap<>();
+    private final Set<String> pendingWakes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    private final AtomicLong activations = new AtomicLong();
+    private final AtomicLong hibernations = new AtomicLong();
+    private final AtomicLong releasedFileDescriptors = new AtomicLong();
+    private final AtomicLong releasedThreads = new AtomicLong();
+
+    public MultiAccountManagerImpl(
+            final Collection<Manager> managers,
+            final Collection<String> hibernatedNumbers,
+            final SignalAccountFiles signalAccountFiles,
+            final AccountHibernation hibernation
+    ) {
         this.signalAccountFiles = signalAccountFiles;
+        this.hibernation = hibernation;
         this.managers.addAll(managers);
-        managers.forEach(m -> m.addClosedListener(() -> this.removeManager(m)));
+        this.hibernatedNumbers.addAll(hibernatedNumbers);
+        managers.forEach(this::trackManager);
+
+        if (hibernation.isEnabled()) {
+            this.hibernationScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("account-hibernation")
+                    .daemon()
+                    .factory());
+            final var checkInterval = Math.min(MAX_HIBERNATION_CHECK_INTERVAL_SECONDS,
+                    Math.max(1, hibernation.idleTimeout().toSeconds()));
+            hibernationScheduler.scheduleWithFixedDelay(this::hibernateIdleAccounts,
+                    checkInterval,
+                    checkInterval,
+                    TimeUnit.SECONDS);
+            if (hibernation.wakeInterval().isPositive()) {
+                final var wakeInterval = hibernation.wakeInterval().toSeconds();
+                hibernationScheduler.scheduleWithFixedDelay(this::wakeHibernatedAccounts,
+                        wakeInterval,
+                        wakeInterval,
+                        TimeUnit.SECONDS);
+            }
+        } else {
+            this.hibernationScheduler = null;
+        }
     }
 
     @Override
     public List<String> getAccountNumbers() {
         synchronized (managers) {
-            return managers.stream().map(Manager::getSelfNumber).toList();
+            final var numbers = new ArrayList<>(managers.stream().map(Manager::getSelfNumber).toList());
+            numbers.addAll(hibernatedNumbers);
+            return numbers;
         }
     }
 
+    /**
+     * @return the managers of the currently active accounts, hibernated accounts are only included once they're
+     * activated by {@link #getManager(String)}
+     */
     @Override
     public List<Manager> getManagers() {
         synchronized (managers) {
@@ -56,7 +121,7 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
                 return;
             }
             managers.add(m);
-            m.addClosedListener(() -> this.removeManager(m));
+            trackManager(m);
         }
         synchronized (onManagerAddedHandlers) {
             for (final var handler : onManagerAddedHandlers) {
@@ -77,6 +142,12 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
             if (!managers.remove(m)) {
                 return;
             }
+            final var number = m.getSelfNumber();
+            if (hibernatingNumbers.remove(number)) {
+                hibernatedNumbers.add(number);
+            } else {
+                lastUsed.remove(number);
+            }
         }
         synchronized (onManagerRemovedHandlers) {
             for (final var handler : onManagerRemovedHandlers) {
@@ -95,8 +166,56 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
     @Override
     public Manager getManager(final String number) {
         synchronized (managers) {
-            return managers.stream().filter(m -> m.getSelfNumber().equals(number)).findFirst().orElse(null);
+            final var manager = managers.stream()
+                    .filter(m -> m.getSelfNumber().equals(number))
+                    .findFirst()
+                    .orElse(null);
+            if (manager != null && !hibernatingNumbers.contains(number)) {
+                markUsed(number);
+                return manager;
+            }
+            if (manager == null && !hibernatedNumbers.contains(number)) {
+                return null;
+            }
         }
+        // The account is hibernated or currently being hibernated, activate waits for the hibernation to finish
+        return activate(number);
+    }
+
+    @Override
+    public Usage useManager(final Manager manager) {
+        if (!hibernation.isEnabled()) {
+            return NO_USAGE;
+        }
+        synchronized (managers) {
+            managersInUse.merge(manager, 1, Integer::sum);
+        }
+        return () -> {
+            synchronized (managers) {
+                managersInUse.computeIfPresent(manager, (m, count) -> count == 1 ? null : count - 1);
+            }
+            // The idle time starts when the account isn't used anymore
+            markUsed(manager.getSelfNumber());
+        };
+    }
+
+    @Override
+    public AccountStatistics getAccountStatistics() {
+        final int activeAccounts;
+        final int hibernatedAccounts;
+        synchronized (managers) {
+            activeAccounts = managers.size();
+            hibernatedAccounts = hibernatedNumbers.size();
+        }
+        return new AccountStatistics(activeAccounts,
+                hibernatedAccounts,
+                activations.get(),
+                hibernations.get(),
+                releasedFileDescriptors.get(),
+                releasedThreads.get(),
+                getOpenFileDescriptorCount(),
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
     }
 
     @Override
@@ -123,6 +242,9 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
 
     @Override
     public void close() {
+        if (hibernationScheduler != null) {
+            hibernationScheduler.shutdownNow();
+        }
         synchronized (managers) {
             for (var m : new ArrayList<>(managers)) {
                 m.close();
@@ -130,4 +252,138 @@ public class MultiAccountManagerImpl implements MultiAccountManager {
             managers.clear();
         }
     }
+
+    private void trackManager(final Manager m) {
+        m.addClosedListener(() -> this.removeManager(m));
+        if (hibernation.isEnabled()) {
+            final var number = m.getSelfNumber();
+            markUsed(number);
+            // Receiving messages keeps an account active, without starting to receive for it
+            m.addReceiveHandler((envelope, e) -> markUsed(number), true);
+        }
+    }
+
+    private void markUsed(final String number) {
+        if (hibernation.isEnabled()) {
+            lastUsed.put(number, System.nanoTime());
+        }
+    }
+
+    private Manager activate(final String number) {
+        synchronized (activationLocks.computeIfAbsent(number, n -> new Object())) {
+            synchronized (managers) {
+                final var manager = managers.stream()
+                        .filter(m -> m.getSelfNumber().equals(number))
+                        .findFirst()
+                        .orElse(null);
+                if (manager != null) {
+                    markUsed(number);
+                    return manager;
+                }
+                if (!hibernatedNumbers.contains(number)) {
+                    return null;
+                }
+            }
+
+            logger.debug("Activating hibernated account {}", number);
+            final Manager manager;
+            try {
+                manager = signalAccountFiles.initManager(number);
+            } catch (NotRegisteredException e) {
+                logger.warn("Account {} is no longer registered, removing it", number);
+                synchronized (managers) {
+                    hibernatedNumbers.remove(number);
+                }
+                return null;
+            } catch (IOException | AccountCheckException e) {
+                logger.warn("Failed to activate account {}, keeping it hibernated: {}", number, e.getMessage());
+                return null;
+            }
+            synchronized (managers) {
+                hibernatedNumbers.remove(number);
+            }
+            activations.incrementAndGet();
+            addManager(manager);
+            return manager;
+        }
+    }
+
+    private void hibernate(final Manager m) {
+        final var number = m.getSelfNumber();
+        synchronized (activationLocks.computeIfAbsent(number, n -> new Object())) {
+            synchronized (managers) {
+                // Check again while holding the locks, the account may have been used since it was found idle
+                if (!managers.contains(m) || managersInUse.containsKey(m) || !isIdle(number)) {
+                    return;
+                }
+                hibernatingNumbers.add(number);
+            }
+
+            logger.debug("Hibernating idle account {}", number);
+            final var fileDescriptorsBefore = getOpenFileDescriptorCount();
+            final var threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            m.close();
+            if (fileDescriptorsBefore >= 0) {
+                releasedFileDescriptors.addAndGet(Math.max(0, fileDescriptorsBefore - getOpenFileDescriptorCount()));
+            }
+            final var threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+            releasedThreads.addAndGet(Math.max(0, threadsBefore - threadsAfter));
+            hibernations.incrementAndGet();
+        }
+    }
+
+    private boolean isIdle(final String number) {
+        final var lastUsedTime = lastUsed.get(number);
+        return lastUsedTime == null || System.nanoTime() - lastUsedTime >= hibernation.idleTimeout().toNanos();
+    }
+
+    private void hibernateIdleAccounts() {
+        for (final var m : getManagers()) {
+            if (!isIdle(m.getSelfNumber())) {
+                continue;
+            }
+            try {
+                hibernate(m);
+            } catch (Exception e) {
+                logger.warn("Failed to hibernate account {}, ignoring: {}", m.getSelfNumber(), e.getMessage());
+            }
+        }
+        logger.debug("Account statistics: {}", getAccountStatistics());
+    }
+
+    /**
+     * Spreads the wakes of the hibernated accounts over the wake interval, so they're not all opened at once.
+     */
+    private void wakeHibernatedAccounts() {
+        final List<String> numbers;
+        synchronized (managers) {
+            numbers = hibernatedNumbers.stream().filter(number -> !pendingWakes.contains(number)).toList();
+        }
+        if (numbers.isEmpty()) {
+            return;
+        }
+        logger.debug("Waking {} hibernated accounts to receive queued messages", numbers.size());
+        final var spacing = hibernation.wakeInterval().toMillis() / numbers.size();
+        for (var i = 0; i < numbers.size(); i++) {
+            final var number = numbers.get(i);
+            pendingWakes.add(number);
+            hibernationScheduler.schedule(() -> wakeHibernatedAccount(number), i * spacing, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void wakeHibernatedAccount(final String number) {
+        try {
+            activate(number);
+        } catch (Exception e) {
+            logger.warn("Failed to wake account {}, ignoring: {}", number, e.getMessage());
+        } finally {
+            pendingWakes.remove(number);
+        }
+    }
+
+    private static long getOpenFileDescriptorCount() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os
+                ? os.getOpenFileDescriptorCount()
+                : -1;
+    }
 }
@@ -0,0 +1,125 @@
+package org.asamk.signal.manager.internal;
+
+import org.whispersystems.signalservice.api.SignalSessionLock;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Session lock that is striped by the recipients a thread is encrypting for or decrypting from.
+ * <p>
+ * The signal service library acquires the lock without telling for which address, so the addresses have to be
+ * declared beforehand with {@link #openScope(Collection)}. Acquiring the lock then only locks the stripes of the
+ * scope's addresses, so operations for different recipients can run in parallel. Without a scope all stripes are
+ * locked, like a single account wide lock.
+ * <p>
+ * Stripes are always locked in ascending order and nested acquisitions reuse the stripes of the outermost one, so
+ * threads locking multiple stripes can't deadlock.
+ * <p>
+ * The sessions of our own devices are used for the sync message of every send, so they have their own lock instead of
+ * a stripe in each send's scope, see {@link #lockOwnSessions()}.
+ */
+public final class SessionLockManager implements SignalSessionLock {
+
+    private static final int STRIPES = 64;
+    private static final int[] ALL_STRIPES = IntStream.range(0, STRIPES).toArray();
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ReentrantLock ownSessionsLock = new ReentrantLock();
+    private final ThreadLocal<int[]> scope = new ThreadLocal<>();
+    private final ThreadLocal<Held> held = new ThreadLocal<>();
+
+    public SessionLockManager() {
+        for (var i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Restrict the session lock acquisitions of the current thread to the given keys, until the scope is closed.
+     * Nested scopes are combined with the enclosing scope.
+     *
+     * @param keys e.g. the recipient ids and distribution ids whose sessions will be used, an empty collection
+     *             doesn't restrict the lock
+     */
+    public Scope openScope(final Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return () -> {};
+        }
+        final var previous = scope.get();
+        final var stripes = IntStream.concat(previous == null ? IntStream.empty() : Arrays.stream(previous),
+                keys.stream().mapToInt(key -> Math.floorMod(key.hashCode(), STRIPES))).distinct().sorted().toArray();
+        scope.set(stripes);
+        return () -> {
+            if (previous == null) {
+                scope.remove();
+            } else {
+                scope.set(previous);
+            }
+        };
+    }
+
+    @Override
+    public Lock acquire() {
+        final var current = held.get();
+        final int[] stripes;
+        if (current != null) {
+            stripes = current.stripes;
+            current.depth++;
+        } else {
+            final var scopeStripes = scope.get();
+            stripes = scopeStripes == null ? ALL_STRIPES : scopeStripes;
+            held.set(new Held(stripes));
+        }
+        for (final var stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return () -> {
+            final var h = held.get();
+            if (--h.depth == 0) {
+                held.remove();
+                if (h.ownSessionsLocked) {
+                    ownSessionsLock.unlock();
+                }
+            }
+            for (var i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        };
+    }
+
+    /**
+     * Lock the sessions of our own devices until the session lock currently held by this thread is released.
+     * Does nothing if the thread doesn't hold the session lock.
+     * <p>
+     * This lock is only taken after the stripes and a thread holding it never waits for another stripe, because nested
+     * acquisitions reuse the stripes it already holds. So it can't deadlock with the stripes.
+     */
+    public void lockOwnSessions() {
+        final var h = held.get();
+        if (h == null || h.ownSessionsLocked) {
+            return;
+        }
+        ownSessionsLock.lock();
+        h.ownSessionsLocked = true;
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static final class Held {
+
+        private final int[] stripes;
+        private int depth = 1;
+        private boolean ownSessionsLocked;
+
+        private Held(final int[] stripes) {
+            this.stripes = stripes;
+        }
+    }
+}
@@ -8,7 +8,6 @@ import org.whispersystems.signalservice.api.SignalServiceAccountManager;
 import org.whispersystems.signalservice.api.SignalServiceDataStore;
 import org.whispersystems.signalservice.api.SignalServiceMessageReceiver;
 import org.whispersystems.signalservice.api.SignalServiceMessageSender;
-import org.whispersystems.signalservice.api.SignalSessionLock;
 import org.whispersystems.signalservice.api.SignalWebSocket;
 import org.whispersystems.signalservice.api.crypto.SignalServiceCipher;
 import org.whispersystems.signalservice.api.groupsv2.ClientZkOperations;
@@ -18,7 +17,6 @@ import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 import org.whispersystems.signalservice.api.services.ProfileService;
 import org.whispersystems.signalservice.api.svr.SecureValueRecovery;
 import org.whispersystems.signalservice.api.util.CredentialsProvider;
-import org.whispersystems.signalservice.api.util.UptimeSleepTimer;
 import org.whispersystems.signalservice.api.websocket.WebSocketFactory;
 import org.whispersystems.signalservice.internal.push.PushServiceSocket;
 import org.whispersystems.signalservice.internal.websocket.WebSocketConnection;
@@ -26,6 +24,7 @@ import org.whispersystems.signalservice.internal.websocket.WebSocketConnection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Supplier;
 
 public class SignalDependencies {
@@ -37,7 +36,8 @@ public class SignalDependencies {
     private final CredentialsProvider credentialsProvider;
     private final SignalServiceDataStore dataStore;
     private final ExecutorService executor;
-    private final SignalSessionLock sessionLock;
+    private final ScheduledExecutorService scheduler;
+    private final SessionLockManager sessionLock;
 
     private boolean allowStories = true;
 
@@ -61,13 +61,15 @@ public class SignalDependencies {
             final CredentialsProvider credentialsProvider,
             final SignalServiceDataStore dataStore,
             final ExecutorService executor,
-            final SignalSessionLock sessionLock
+            final ScheduledExecutorService scheduler,
+            final SessionLockManager sessionLock
     ) {
         this.serviceEnvironmentConfig = serviceEnvironmentConfig;
         this.userAgent = userAgent;
         this.credentialsProvider = credentialsProvider;
         this.dataStore = dataStore;
         this.executor = executor;
+        this.scheduler = scheduler;
         this.sessionLock = sessionLock;
     }
 
@@ -92,7 +94,7 @@ public class SignalDependencies {
         return serviceEnvironmentConfig;
     }
 
-    public SignalSessionLock getSessionLock() {
+    public SessionLockManager getSessionLock() {
         return sessionLock;
     }
 
@@ -148,8 +150,7 @@ public class SignalDependencies {
 
     public SignalWebSocket getSignalWebSocket() {
         return getOrCreate(() -> signalWebSocket, () -> {
-            final var timer = new UptimeSleepTimer();
-            final var healthMonitor = new SignalWebSocketHealthMonitor(timer);
+            final var healthMonitor = new SignalWebSocketHealthMonitor(scheduler);
             final var webSocketFactory = new WebSocketFactory() {
                 @Override
                 public WebSocketConnection createWebSocket() {
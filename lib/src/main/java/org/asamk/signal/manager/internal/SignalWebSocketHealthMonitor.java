@@ -4,12 +4,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.signalservice.api.SignalWebSocket;
 import org.whispersystems.signalservice.api.util.Preconditions;
-import org.whispersystems.signalservice.api.util.SleepTimer;
 import org.whispersystems.signalservice.api.websocket.HealthMonitor;
 import org.whispersystems.signalservice.api.websocket.WebSocketConnectionState;
 import org.whispersystems.signalservice.internal.websocket.WebSocketConnection;
 
 import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.rxjava3.schedulers.Schedulers;
@@ -19,7 +20,7 @@ import io.reactivex.rxjava3.schedulers.Schedulers;
  * unhealthy, will trigger restarting both.
  * <p>
  * The monitor is also responsible for sending heartbeats/keep-alive messages to prevent
- * timeouts.
+ * timeouts. They are sent by a scheduler that is shared with other accounts, instead of a thread per account.
  */
 final class SignalWebSocketHealthMonitor implements HealthMonitor {
 
@@ -29,15 +30,15 @@ final class SignalWebSocketHealthMonitor implements HealthMonitor {
     private static final long MAX_TIME_SINCE_SUCCESSFUL_KEEP_ALIVE = KEEP_ALIVE_SEND_CADENCE * 3;
 
     private SignalWebSocket signalWebSocket;
-    private final SleepTimer sleepTimer;
+    private final ScheduledExecutorService scheduler;
 
-    private volatile KeepAliveSender keepAliveSender;
+    private volatile ScheduledFuture<?> keepAliveSender;
 
     private final HealthState identified = new HealthState();
     private final HealthState unidentified = new HealthState();
 
-    public SignalWebSocketHealthMonitor(SleepTimer sleepTimer) {
-        this.sleepTimer = sleepTimer;
+    public SignalWebSocketHealthMonitor(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
     }
 
     public void monitor(SignalWebSocket signalWebSocket) {
@@ -71,10 +72,14 @@ final class SignalWebSocketHealthMonitor implements HealthMonitor {
         healthState.needsKeepAlive = connectionState == WebSocketConnectionState.CONNECTED;
 
         if (keepAliveSender == null && isKeepAliveNecessary()) {
-            keepAliveSender = new KeepAliveSender();
-            keepAliveSender.start();
+            identified.lastKeepAliveReceived = System.currentTimeMillis();
+            unidentified.lastKeepAliveReceived = System.currentTimeMillis();
+            keepAliveSender = scheduler.scheduleWithFixedDelay(this::sendKeepAlive,
+                    KEEP_ALIVE_SEND_CADENCE,
+                    KEEP_ALIVE_SEND_CADENCE,
+                    TimeUnit.MILLISECONDS);
         } else if (keepAliveSender != null && !isKeepAliveNecessary()) {
-            keepAliveSender.shutdown();
+            keepAliveSender.cancel(false);
             keepAliveSender = null;
         }
     }
@@ -104,57 +109,41 @@ final class SignalWebSocketHealthMonitor implements HealthMonitor {
         return identified.needsKeepAlive || unidentified.needsKeepAlive;
     }
 
-    private static class HealthState {
-
-        private final HttpErrorTracker mismatchErrorTracker = new HttpErrorTracker(5, TimeUnit.MINUTES.toMillis(1));
-
-        private volatile boolean needsKeepAlive;
-        private volatile long lastKeepAliveReceived;
-    }
-
     /**
      * Sends periodic heartbeats/keep-alives over both WebSockets to prevent connection timeouts. If
      * either WebSocket fails 3 times to get a return heartbeat both are forced to be recreated.
      */
-    private class KeepAliveSender extends Thread {
-
-        private volatile boolean shouldKeepRunning = true;
-
-        public void run() {
-            identified.lastKeepAliveReceived = System.currentTimeMillis();
-            unidentified.lastKeepAliveReceived = System.currentTimeMillis();
-
-            while (shouldKeepRunning && isKeepAliveNecessary()) {
-                try {
-                    sleepTimer.sleep(KEEP_ALIVE_SEND_CADENCE);
-
-                    if (shouldKeepRunning && isKeepAliveNecessary()) {
-                        long keepAliveRequiredSinceTime = System.currentTimeMillis()
-                                - MAX_TIME_SINCE_SUCCESSFUL_KEEP_ALIVE;
-
-                        if (identified.lastKeepAliveReceived < keepAliveRequiredSinceTime
-                                || unidentified.lastKeepAliveReceived < keepAliveRequiredSinceTime) {
-                            logger.warn("Missed keep alives, identified last: "
-                                    + identified.lastKeepAliveReceived
-                                    + " unidentified last: "
-                                    + unidentified.lastKeepAliveReceived
-                                    + " needed by: "
-                                    + keepAliveRequiredSinceTime);
-                            signalWebSocket.forceNewWebSockets();
-                            signalWebSocket.connect();
-                        } else {
-                            signalWebSocket.sendKeepAlive();
-                        }
-                    }
-                } catch (Throwable e) {
-                    logger.warn("Error occured in KeepAliveSender, ignoring ...", e);
-                }
+    private void sendKeepAlive() {
+        if (!isKeepAliveNecessary()) {
+            return;
+        }
+        try {
+            long keepAliveRequiredSinceTime = System.currentTimeMillis() - MAX_TIME_SINCE_SUCCESSFUL_KEEP_ALIVE;
+
+            if (identified.lastKeepAliveReceived < keepAliveRequiredSinceTime
+                    || unidentified.lastKeepAliveReceived < keepAliveRequiredSinceTime) {
+                logger.warn("Missed keep alives, identified last: "
+                        + identified.lastKeepAliveReceived
+                        + " unidentified last: "
+                        + unidentified.lastKeepAliveReceived
+                        + " needed by: "
+                        + keepAliveRequiredSinceTime);
+                signalWebSocket.forceNewWebSockets();
+                signalWebSocket.connect();
+            } else {
+                signalWebSocket.sendKeepAlive();
             }
+        } catch (Throwable e) {
+            logger.warn("Error occurred while sending keep alive, ignoring ...", e);
         }
+    }
 
-        public void shutdown() {
-            shouldKeepRunning = false;
-        }
+    private static class HealthState {
+
+        private final HttpErrorTracker mismatchErrorTracker = new HttpErrorTracker(5, TimeUnit.MINUTES.toMillis(1));
+
+        private volatile boolean needsKeepAlive;
+        private volatile long lastKeepAliveReceived;
     }
 
     private static final class HttpErrorTracker {
@@ -16,7 +16,17 @@ public class CheckWhoAmIJob implements Job {
         try {
             context.getAccountHelper().checkWhoAmiI();
         } catch (IOException e) {
-            logger.warn("Failed to check whoAmI", e);
+            throw new RetryJobException("Failed to check whoAmI", e);
         }
     }
+
+    @Override
+    public String getKey() {
+        return "check-who-am-i";
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.HIGH;
+    }
 }
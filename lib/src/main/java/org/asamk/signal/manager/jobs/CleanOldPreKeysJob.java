@@ -13,4 +13,9 @@ public class CleanOldPreKeysJob implements Job {
         logger.trace("Cleaning old prekeys");
         context.getPreKeyHelper().cleanOldPreKeys();
     }
+
+    @Override
+    public String getKey() {
+        return "clean-old-pre-keys";
+    }
 }
@@ -4,7 +4,9 @@ import org.asamk.signal.manager.helper.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DownloadProfileAvatarJob implements Job {
+public class DownloadProfileAvatarJob implements PersistentJob {
+
+    static final String TYPE = "download-profile-avatar";
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadProfileAvatarJob.class);
     private final String avatarPath;
@@ -20,4 +22,25 @@ public class DownloadProfileAvatarJob implements Job {
         context.getProfileHelper()
                 .downloadProfileAvatar(account.getSelfRecipientId(), avatarPath, account.getProfileKey());
     }
+
+    @Override
+    public String getKey() {
+        // Only the latest own avatar needs to be downloaded, a newer job replaces a waiting one
+        return TYPE;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String serialize() {
+        return avatarPath == null ? "" : avatarPath;
+    }
 }
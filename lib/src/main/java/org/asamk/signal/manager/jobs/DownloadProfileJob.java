@@ -5,7 +5,9 @@ import org.asamk.signal.manager.storage.recipients.RecipientAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DownloadProfileJob implements Job {
+public class DownloadProfileJob implements PersistentJob {
+
+    static final String TYPE = "download-profile";
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadProfileJob.class);
     private final RecipientAddress address;
@@ -21,4 +23,24 @@ public class DownloadProfileJob implements Job {
         final var recipientId = account.getRecipientStore().resolveRecipient(address);
         context.getProfileHelper().refreshRecipientProfile(recipientId);
     }
+
+    @Override
+    public String getKey() {
+        return TYPE + ":" + address.getIdentifier();
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String serialize() {
+        return address.getIdentifier();
+    }
 }
@@ -5,4 +5,34 @@ import org.asamk.signal.manager.helper.Context;
 public interface Job {
 
     void run(Context context);
+
+    /**
+     * Jobs with the same key are coalesced, a job that is enqueued while another one with the same key is waiting to
+     * run replaces the waiting job.
+     *
+     * @return the key identifying equivalent jobs, or null if the job should never be coalesced
+     */
+    default String getKey() {
+        return null;
+    }
+
+    default Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
+    /**
+     * @return the maximum number of jobs of this class running at the same time
+     */
+    default int getMaxConcurrency() {
+        return 1;
+    }
+
+    enum Priority {
+        HIGH,
+        NORMAL,
+        /**
+         * Expensive jobs, which never take the last free slot so they don't block cheaper jobs.
+         */
+        LOW,
+    }
 }
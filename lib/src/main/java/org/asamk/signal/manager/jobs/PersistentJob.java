@@ -0,0 +1,54 @@
+package org.asamk.signal.manager.jobs;
+
+import org.asamk.signal.manager.api.StickerPackId;
+import org.asamk.signal.manager.storage.recipients.RecipientAddress;
+import org.whispersystems.signalservice.api.push.ServiceId;
+import org.whispersystems.signalservice.internal.util.Hex;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * A job that is stored in the account database until it has finished, so it's run again after a restart.
+ * Persistent jobs must have a key.
+ */
+public interface PersistentJob extends Job {
+
+    /**
+     * The type is stored in the database, so it must not change when the class is renamed.
+     */
+    String getType();
+
+    /**
+     * @return the data needed to recreate the job with {@link #deserialize(String, String)}
+     */
+    String serialize();
+
+    static PersistentJob deserialize(final String type, final String data) throws IOException {
+        try {
+            return switch (type) {
+                case DownloadProfileJob.TYPE -> new DownloadProfileJob(deserializeAddress(data));
+                case DownloadProfileAvatarJob.TYPE -> new DownloadProfileAvatarJob(data.isEmpty() ? null : data);
+                case RefreshRecipientsJob.TYPE -> new RefreshRecipientsJob();
+                case RetrieveStickerPackJob.TYPE -> {
+                    final var parts = data.split(":", 2);
+                    yield new RetrieveStickerPackJob(StickerPackId.deserialize(Hex.fromStringCondensed(parts[0])),
+                            Hex.fromStringCondensed(parts[1]));
+                }
+                case SyncStorageJob.TYPE -> new SyncStorageJob();
+                default -> throw new IOException("Unknown job type " + type);
+            };
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Invalid job data for " + type, e);
+        }
+    }
+
+    private static RecipientAddress deserializeAddress(final String identifier) {
+        final var serviceId = ServiceId.parseOrNull(identifier);
+        return serviceId == null
+                ? new RecipientAddress(identifier)
+                : new RecipientAddress(Optional.of(serviceId), Optional.empty());
+    }
+}
@@ -4,7 +4,9 @@ import org.asamk.signal.manager.helper.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class RefreshRecipientsJob implements Job {
+public class RefreshRecipientsJob implements PersistentJob {
+
+    static final String TYPE = "refresh-recipients";
 
     private static final Logger logger = LoggerFactory.getLogger(RefreshRecipientsJob.class);
 
@@ -20,4 +22,19 @@ public class RefreshRecipientsJob implements Job {
             logger.debug("Full CDSI refresh failed", e);
         }
     }
+
+    @Override
+    public String getKey() {
+        return TYPE;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String serialize() {
+        return "";
+    }
 }
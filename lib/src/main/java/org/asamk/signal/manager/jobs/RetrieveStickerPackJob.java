@@ -9,7 +9,9 @@ import org.whispersystems.signalservice.internal.util.Hex;
 
 import java.io.IOException;
 
-public class RetrieveStickerPackJob implements Job {
+public class RetrieveStickerPackJob implements PersistentJob {
+
+    static final String TYPE = "retrieve-sticker-pack";
 
     private static final Logger logger = LoggerFactory.getLogger(RetrieveStickerPackJob.class);
 
@@ -27,13 +29,32 @@ public class RetrieveStickerPackJob implements Job {
         try {
             context.getStickerHelper().retrieveStickerPack(packId, packKey);
         } catch (IOException e) {
-            logger.warn("Failed to retrieve sticker pack {}: {}",
-                    Hex.toStringCondensed(packId.serialize()),
-                    e.getMessage());
+            throw new RetryJobException("Failed to retrieve sticker pack " + Hex.toStringCondensed(packId.serialize()),
+                    e);
         } catch (InvalidMessageException e) {
             logger.warn("Failed to retrieve sticker pack {}, invalid pack data: {}",
                     Hex.toStringCondensed(packId.serialize()),
                     e.getMessage());
         }
     }
+
+    @Override
+    public String getKey() {
+        return TYPE + ":" + Hex.toStringCondensed(packId.serialize());
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String serialize() {
+        return Hex.toStringCondensed(packId.serialize()) + ":" + Hex.toStringCondensed(packKey);
+    }
 }
@@ -0,0 +1,27 @@
+package org.asamk.signal.manager.jobs;
+
+import java.time.Duration;
+
+/**
+ * Thrown by a job that failed temporarily and should be run again later, with an increasing delay.
+ */
+public class RetryJobException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RetryJobException(final String message, final Throwable cause) {
+        this(message, cause, null);
+    }
+
+    /**
+     * @param retryAfter the minimum delay before the job is run again, e.g. requested by a rate limit
+     */
+    public RetryJobException(final String message, final Throwable cause, final Duration retryAfter) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
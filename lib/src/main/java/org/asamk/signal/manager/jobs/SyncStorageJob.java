@@ -6,7 +6,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 
-public class SyncStorageJob implements Job {
+public class SyncStorageJob implements PersistentJob {
+
+    static final String TYPE = "sync-storage";
 
     private static final Logger logger = LoggerFactory.getLogger(SyncStorageJob.class);
 
@@ -16,7 +18,22 @@ public class SyncStorageJob implements Job {
         try {
             context.getStorageHelper().syncDataWithStorage();
         } catch (IOException e) {
-            logger.warn("Failed to sync storage data", e);
+            throw new RetryJobException("Failed to sync storage data", e);
         }
     }
+
+    @Override
+    public String getKey() {
+        return TYPE;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String serialize() {
+        return "";
+    }
 }
@@ -2,9 +2,11 @@ package org.asamk.signal.manager.storage;
 
 import com.zaxxer.hikari.HikariDataSource;
 
+import org.asamk.signal.manager.api.DatabaseProfile;
 import org.asamk.signal.manager.api.Pair;
 import org.asamk.signal.manager.storage.groups.GroupStore;
 import org.asamk.signal.manager.storage.identities.IdentityKeyStore;
+import org.asamk.signal.manager.storage.jobs.JobStore;
 import org.asamk.signal.manager.storage.keyValue.KeyValueStore;
 import org.asamk.signal.manager.storage.prekeys.KyberPreKeyStore;
 import org.asamk.signal.manager.storage.prekeys.PreKeyStore;
@@ -33,14 +35,14 @@ import java.util.UUID;
 public class AccountDatabase extends Database {
 
     private static final Logger logger = LoggerFactory.getLogger(AccountDatabase.class);
-    private static final long DATABASE_VERSION = 23;
+    private static final long DATABASE_VERSION = 25;
 
     private AccountDatabase(final HikariDataSource dataSource) {
         super(logger, DATABASE_VERSION, dataSource);
     }
 
-    public static AccountDatabase init(File databaseFile) throws SQLException {
-        return initDatabase(databaseFile, AccountDatabase::new);
+    public static AccountDatabase init(File databaseFile, DatabaseProfile profile) throws SQLException {
+        return initDatabase(databaseFile, profile, AccountDatabase::new);
     }
 
     @Override
@@ -59,6 +61,7 @@ public class AccountDatabase extends Database {
         KeyValueStore.createSql(connection);
         CdsiStore.createSql(connection);
         UnknownStorageIdStore.createSql(connection);
+        JobStore.createSql(connection);
     }
 
     @Override
@@ -573,6 +576,29 @@ public class AccountDatabase extends Database {
                                         """);
             }
         }
+        if (oldVersion < 24) {
+            logger.debug("Updating database: Creating job table");
+            try (final var statement = connection.createStatement()) {
+                statement.executeUpdate("""
+                                        CREATE TABLE job (
+                                          _id INTEGER PRIMARY KEY,
+                                          key TEXT UNIQUE NOT NULL,
+                                          type TEXT NOT NULL,
+                                          data TEXT NOT NULL,
+                                          attempts INTEGER NOT NULL DEFAULT 0,
+                                          run_after INTEGER NOT NULL DEFAULT 0
+                                        ) STRICT;
+                                        """);
+            }
+        }
+        if (oldVersion < 25) {
+            logger.debug("Updating database: Create job generation column");
+            try (final var statement = connection.createStatement()) {
+                statement.executeUpdate("""
+                                        ALTER TABLE job ADD generation INTEGER NOT NULL DEFAULT 0;
+                                        """);
+            }
+        }
     }
 
     private static void createUuidMappingTable(
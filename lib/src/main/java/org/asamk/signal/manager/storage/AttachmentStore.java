@@ -11,6 +11,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 public class AttachmentStore {
@@ -35,6 +37,14 @@ public class AttachmentStore {
         storeAttachment(getAttachmentFile(pointer), storer);
     }
 
+    /**
+     * File for the still encrypted attachment while it's being downloaded, kept to resume failed downloads.
+     */
+    public File getAttachmentDownloadFile(final SignalServiceAttachmentPointer pointer) throws IOException {
+        createAttachmentsDir();
+        return new File(attachmentsPath, pointer.getRemoteId().toString() + ".download");
+    }
+
     public File getAttachmentFile(final SignalServiceAttachmentPointer pointer) {
         return getAttachmentFile(pointer.getRemoteId(),
                 pointer.getFileName(),
@@ -48,8 +58,15 @@ public class AttachmentStore {
 
     private void storeAttachment(final File attachmentFile, final AttachmentStorer storer) throws IOException {
         createAttachmentsDir();
-        try (OutputStream output = new FileOutputStream(attachmentFile)) {
-            storer.store(output);
+        // Write to a temporary file first, so the attachment file only exists once it's complete
+        final var tmpFile = new File(attachmentsPath, attachmentFile.getName() + ".tmp");
+        try {
+            try (OutputStream output = new FileOutputStream(tmpFile)) {
+                storer.store(output);
+            }
+            Files.move(tmpFile.toPath(), attachmentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
         }
     }
 
@@ -0,0 +1,155 @@
+package org.asamk.signal.manager.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Database connection that is used for all database accesses of one thread, while it's bound with
+ * {@link Database#bindConnection()}.
+ * <p>
+ * The connection is only taken from the pool on the first access. Closing the connections returned by
+ * {@link #getConnection()} doesn't return the connection to the pool, it only rolls back a transaction that was left
+ * open. A transaction started while an outer transaction is still open is run as a savepoint, so committing it doesn't
+ * commit the outer transaction. Prepared statements are cached per physical connection, see {@link StatementCache}.
+ */
+public final class BoundConnection implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundConnection.class);
+
+    private final Database database;
+    private final Runnable onClose;
+    private Connection connection;
+    private StatementCache statements;
+    private int references = 1;
+
+    BoundConnection(final Database database, final Runnable onClose) {
+        this.database = database;
+        this.onClose = onClose;
+    }
+
+    void retain() {
+        references++;
+    }
+
+    Connection getConnection() throws SQLException {
+        if (connection == null) {
+            final var pooledConnection = database.getPooledConnection();
+            try {
+                statements = database.getStatementCache(pooledConnection);
+            } catch (SQLException e) {
+                pooledConnection.close();
+                throw e;
+            }
+            connection = pooledConnection;
+        }
+        final var handler = new ConnectionHandler(!connection.getAutoCommit());
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler);
+    }
+
+    @Override
+    public void close() {
+        if (--references > 0) {
+            return;
+        }
+        onClose.run();
+        if (connection == null) {
+            return;
+        }
+        statements.releaseAll();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close database connection, ignoring: {}", e.getMessage());
+        }
+        connection = null;
+        statements = null;
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        // Opened inside an outer transaction, so its own transactions are savepoints
+        private final boolean nested;
+        private Savepoint savepoint;
+        private boolean closed;
+
+        private ConnectionHandler(final boolean nested) {
+            this.nested = nested;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        // Same as returning the connection to the pool, but without resetting an outer transaction
+                        if (nested) {
+                            if (savepoint != null) {
+                                connection.rollback(savepoint);
+                                connection.releaseSavepoint(savepoint);
+                                savepoint = null;
+                            }
+                        } else if (!connection.getAutoCommit()) {
+                            connection.rollback();
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                    yield null;
+                }
+                case "isClosed" -> closed || connection.isClosed();
+                case "getAutoCommit" -> nested ? savepoint == null : connection.getAutoCommit();
+                case "setAutoCommit" -> {
+                    if (!nested) {
+                        yield StatementCache.invoke(connection, method, args);
+                    }
+                    final var autoCommit = (Boolean) args[0];
+                    if (autoCommit && savepoint != null) {
+                        connection.releaseSavepoint(savepoint);
+                        savepoint = null;
+                    } else if (!autoCommit && savepoint == null) {
+                        savepoint = connection.setSavepoint();
+                    }
+                    yield null;
+                }
+                case "commit" -> {
+                    if (!nested) {
+                        yield StatementCache.invoke(connection, method, args);
+                    }
+                    if (savepoint != null) {
+                        // Only the outer transaction commits the changes
+                        connection.releaseSavepoint(savepoint);
+                        savepoint = connection.setSavepoint();
+                    }
+                    yield null;
+                }
+                case "rollback" -> {
+                    if (!nested || (args != null && args.length == 1)) {
+                        yield StatementCache.invoke(connection, method, args);
+                    }
+                    if (savepoint != null) {
+                        connection.rollback(savepoint);
+                    }
+                    yield null;
+                }
+                case "prepareStatement" -> {
+                    if (args.length == 1) {
+                        yield statements.prepareStatement(connection, (String) args[0]);
+                    }
+                    yield StatementCache.invoke(connection, method, args);
+                }
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> StatementCache.invoke(connection, method, args);
+            };
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.asamk.signal.manager.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe cache with a maximum number of entries, evicting the least recently used entries.
+ * <p>
+ * Reads don't take a lock. When the cache grows beyond its maximum size, a tenth of the entries is evicted at once,
+ * so the necessary scan over all entries only happens every few inserts.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final int evictionBatchSize;
+    private final BiConsumer<K, V> evictionListener;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(final int maxSize) {
+        this(maxSize, (key, value) -> {});
+    }
+
+    /**
+     * @param evictionListener Called for each entry evicted because the cache is full, not for removed entries
+     */
+    public BoundedCache(final int maxSize, final BiConsumer<K, V> evictionListener) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.evictionBatchSize = Math.max(1, maxSize / 10);
+        this.evictionListener = evictionListener;
+    }
+
+    public V get(final K key) {
+        final var entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        entry.lastAccess = clock.incrementAndGet();
+        return entry.value;
+    }
+
+    public void put(final K key, final V value) {
+        entries.put(key, new Entry<>(value, clock.incrementAndGet()));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * @return the value that was already cached for the key, or null if the given value was added
+     */
+    public V putIfAbsent(final K key, final V value) {
+        final var existing = entries.putIfAbsent(key, new Entry<>(value, clock.incrementAndGet()));
+        if (existing != null) {
+            return existing.value;
+        }
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return null;
+    }
+
+    public void remove(final K key) {
+        entries.remove(key);
+    }
+
+    public void removeIf(final Predicate<K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // Another thread is already evicting entries
+            return;
+        }
+        try {
+            final var excess = entries.size() - maxSize;
+            if (excess <= 0) {
+                return;
+            }
+            final var accessTimes = entries.values().stream().mapToLong(e -> e.lastAccess).toArray();
+            Arrays.sort(accessTimes);
+            final var evictCount = Math.min(accessTimes.length, excess + evictionBatchSize);
+            final var threshold = accessTimes[evictCount - 1];
+            entries.entrySet().removeIf(e -> {
+                if (e.getValue().lastAccess > threshold) {
+                    return false;
+                }
+                evictions.increment();
+                evictionListener.accept(e.getKey(), e.getValue().value);
+                return true;
+            });
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public record Statistics(long hits, long misses, long evictions, int size, int maxSize) {}
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private volatile long lastAccess;
+
+        private Entry(final V value, final long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -3,19 +3,31 @@ package org.asamk.signal.manager.storage;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import org.asamk.signal.manager.api.DatabaseProfile;
 import org.slf4j.Logger;
 import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 public abstract class Database implements AutoCloseable {
 
+    private static final int PERFORMANCE_CACHE_SIZE_KIB = 16 * 1024;
+    private static final long PERFORMANCE_MMAP_SIZE = 64 * 1024 * 1024;
+    // Readers don't block each other in WAL mode, so each thread accessing the database concurrently can get its own
+    // connection. Writers still wait for each other through the busy timeout.
+    private static final int PERFORMANCE_POOL_SIZE = 16;
+
     private final Logger logger;
     private final long databaseVersion;
     private final HikariDataSource dataSource;
+    private final ThreadLocal<BoundConnection> boundConnection = new ThreadLocal<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
 
     protected Database(final Logger logger, final long databaseVersion, final HikariDataSource dataSource) {
         this.logger = logger;
@@ -24,12 +36,12 @@ public abstract class Database implements AutoCloseable {
     }
 
     public static <T extends Database> T initDatabase(
-            File databaseFile, Function<HikariDataSource, T> newDatabase
+            File databaseFile, DatabaseProfile profile, Function<HikariDataSource, T> newDatabase
     ) throws SQLException {
         HikariDataSource dataSource = null;
 
         try {
-            dataSource = getHikariDataSource(databaseFile.getAbsolutePath());
+            dataSource = getHikariDataSource(databaseFile.getAbsolutePath(), profile);
 
             final var result = newDatabase.apply(dataSource);
             result.initDb();
@@ -43,12 +55,48 @@ public abstract class Database implements AutoCloseable {
     }
 
     public final Connection getConnection() throws SQLException {
+        final var connection = boundConnection.get();
+        if (connection != null) {
+            return connection.getConnection();
+        }
         return dataSource.getConnection();
     }
 
+    /**
+     * Binds a connection to the current thread, so all following calls to {@link #getConnection()} on this thread reuse
+     * it until the returned binding is closed. Nested bindings share the outer connection.
+     * The connection is taken from the pool on first use and is held until the binding is closed, so the binding
+     * should only span database work and not wait for network requests.
+     */
+    public final BoundConnection bindConnection() {
+        var connection = boundConnection.get();
+        if (connection != null) {
+            connection.retain();
+            return connection;
+        }
+        connection = new BoundConnection(this, boundConnection::remove);
+        boundConnection.set(connection);
+        return connection;
+    }
+
+    final Connection getPooledConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * @return the statement cache of the physical connection behind the given pooled connection
+     */
+    final StatementCache getStatementCache(final Connection pooledConnection) throws SQLException {
+        final var physicalConnection = pooledConnection.unwrap(Connection.class);
+        // Connections that were evicted from the pool have closed their statements already
+        statementCaches.values().removeIf(StatementCache::isClosed);
+        return statementCaches.computeIfAbsent(physicalConnection, StatementCache::new);
+    }
+
     @Override
     public void close() {
         dataSource.close();
+        statementCaches.clear();
     }
 
     protected final void initDb() throws SQLException {
@@ -69,6 +117,9 @@ public abstract class Database implements AutoCloseable {
             }
             connection.commit();
         }
+        try (final var connection = dataSource.getConnection()) {
+            logPragmas(connection);
+        }
     }
 
     protected abstract void createDatabase(final Connection connection) throws SQLException;
@@ -88,15 +139,47 @@ public abstract class Database implements AutoCloseable {
         }
     }
 
-    private static HikariDataSource getHikariDataSource(final String databaseFile) {
+    private void logPragmas(final Connection connection) throws SQLException {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        final var pragmas = new StringBuilder();
+        try (final var statement = connection.createStatement()) {
+            for (final var pragma : List.of("journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store")) {
+                try (final var resultSet = statement.executeQuery("PRAGMA " + pragma)) {
+                    if (!pragmas.isEmpty()) {
+                        pragmas.append(", ");
+                    }
+                    pragmas.append(pragma).append("=").append(resultSet.next() ? resultSet.getString(1) : "?");
+                }
+            }
+        }
+        logger.debug("Database settings: {}", pragmas);
+    }
+
+    private static HikariDataSource getHikariDataSource(final String databaseFile, final DatabaseProfile profile) {
         final var sqliteConfig = new SQLiteConfig();
         sqliteConfig.setBusyTimeout(60_000);
         sqliteConfig.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
 
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl("jdbc:sqlite:" + databaseFile);
-        config.setDataSourceProperties(sqliteConfig.toProperties());
         config.setMinimumIdle(1);
+        if (profile == DatabaseProfile.PERFORMANCE) {
+            // WAL allows readers to run concurrently with the single writer,
+            // synchronous=NORMAL is still durable against application crashes in WAL mode
+            sqliteConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            sqliteConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+            sqliteConfig.setCacheSize(-PERFORMANCE_CACHE_SIZE_KIB);
+            sqliteConfig.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(PERFORMANCE_MMAP_SIZE));
+            sqliteConfig.setTempStore(SQLiteConfig.TempStore.MEMORY);
+            config.setMaximumPoolSize(PERFORMANCE_POOL_SIZE);
+        } else {
+            // The WAL journal mode is stored in the database file, so it needs to be reset explicitly after the
+            // performance profile was used
+            sqliteConfig.setJournalMode(SQLiteConfig.JournalMode.DELETE);
+        }
+        config.setDataSourceProperties(sqliteConfig.toProperties());
         config.setConnectionInitSql("PRAGMA foreign_keys=ON");
         return new HikariDataSource(config);
     }
@@ -3,6 +3,7 @@ package org.asamk.signal.manager.storage;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.asamk.signal.manager.ManagerRuntime;
 import org.asamk.signal.manager.Settings;
 import org.asamk.signal.manager.api.Contact;
 import org.asamk.signal.manager.api.GroupId;
@@ -21,6 +22,7 @@ import org.asamk.signal.manager.storage.groups.LegacyGroupStore;
 import org.asamk.signal.manager.storage.identities.IdentityKeyStore;
 import org.asamk.signal.manager.storage.identities.LegacyIdentityKeyStore;
 import org.asamk.signal.manager.storage.identities.SignalIdentityKeyStore;
+import org.asamk.signal.manager.storage.jobs.JobStore;
 import org.asamk.signal.manager.storage.keyValue.KeyValueEntry;
 import org.asamk.signal.manager.storage.keyValue.KeyValueStore;
 import org.asamk.signal.manager.storage.messageCache.MessageCache;
@@ -98,10 +100,16 @@ import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -119,8 +127,13 @@ public class SignalAccount implements Closeable {
 
     private final ObjectMapper jsonProcessor = Utils.createStorageObjectMapper();
 
+    private static final long SAVE_DELAY_MILLIS = 200;
+    private static final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("account-save").daemon().factory());
+
     private final FileChannel fileChannel;
     private final FileLock lock;
+    private boolean savePending;
 
     private int previousStorageVersion;
 
@@ -160,6 +173,7 @@ public class SignalAccount implements Closeable {
             false);
     private boolean isMultiDevice = false;
     private boolean registered = false;
+    private volatile Runnable ownSessionsAccessHandler = () -> {};
 
     private final AccountData<ACI> aciAccountData = new AccountData<>(ServiceIdType.ACI);
     private final AccountData<PNI> pniAccountData = new AccountData<>(ServiceIdType.PNI);
@@ -172,9 +186,11 @@ public class SignalAccount implements Closeable {
     private ConfigurationStore configurationStore;
     private KeyValueStore keyValueStore;
     private CdsiStore cdsiStore;
+    private JobStore jobStore;
 
     private MessageCache messageCache;
     private MessageSendLogStore messageSendLogStore;
+    private ExecutorService executor;
 
     private AccountDatabase accountDatabase;
     private RecipientId selfRecipientId;
@@ -242,7 +258,7 @@ public class SignalAccount implements Closeable {
 
         signalAccount.previousStorageVersion = CURRENT_STORAGE_VERSION;
         signalAccount.init();
-        signalAccount.save();
+        signalAccount.saveNow();
 
         return signalAccount;
     }
@@ -308,7 +324,7 @@ public class SignalAccount implements Closeable {
         pniAccountData.getSessionStore().archiveAllSessions();
         clearAllPreKeys();
         getKeyValueStore().storeEntry(lastRecipientsRefresh, null);
-        save();
+        saveNow();
     }
 
     public void finishLinking(
@@ -318,7 +334,7 @@ public class SignalAccount implements Closeable {
         this.deviceId = deviceId;
         setPreKeys(ServiceIdType.ACI, aciPreKeys);
         setPreKeys(ServiceIdType.PNI, pniPreKeys);
-        save();
+        saveNow();
     }
 
     public void finishRegistration(
@@ -342,7 +358,7 @@ public class SignalAccount implements Closeable {
         init();
         this.registrationLockPin = pin;
         getKeyValueStore().storeEntry(lastReceiveTimestamp, 0L);
-        save();
+        saveNow();
 
         setPreKeys(ServiceIdType.ACI, aciPreKeys);
         setPreKeys(ServiceIdType.PNI, pniPreKeys);
@@ -947,8 +963,33 @@ public class SignalAccount implements Closeable {
         }
     }
 
+    /**
+     * Schedules writing the account file. Multiple changes in short succession result in a single write.
+     */
     private void save() {
         synchronized (fileChannel) {
+            if (savePending) {
+                return;
+            }
+            savePending = true;
+            saveExecutor.schedule(this::saveIfPending, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void saveIfPending() {
+        synchronized (fileChannel) {
+            if (savePending && fileChannel.isOpen()) {
+                saveNow();
+            }
+        }
+    }
+
+    /**
+     * Writes the account file immediately, for changes that must not be lost if the process is terminated.
+     */
+    private void saveNow() {
+        synchronized (fileChannel) {
+            savePending = false;
             final var base64 = Base64.getEncoder();
             final var storage = new Storage(CURRENT_STORAGE_VERSION,
                     serviceEnvironment.name(),
@@ -1204,6 +1245,10 @@ public class SignalAccount implements Closeable {
         return getOrCreate(() -> cdsiStore, () -> cdsiStore = new CdsiStore(getAccountDatabase()));
     }
 
+    public JobStore getJobStore() {
+        return getOrCreate(() -> jobStore, () -> jobStore = new JobStore(getAccountDatabase()));
+    }
+
     private RecipientIdCreator getRecipientIdCreator() {
         return recipientId -> getRecipientStore().create(recipientId);
     }
@@ -1217,7 +1262,19 @@ public class SignalAccount implements Closeable {
     }
 
     public RecipientAddressResolver getRecipientAddressResolver() {
-        return recipientId -> getRecipientStore().resolveRecipientAddress(recipientId);
+        return new RecipientAddressResolver() {
+            @Override
+            public RecipientAddress resolveRecipientAddress(final RecipientId recipientId) {
+                return getRecipientStore().resolveRecipientAddress(recipientId);
+            }
+
+            @Override
+            public Map<RecipientId, RecipientAddress> resolveRecipientAddresses(
+                    final Collection<RecipientId> recipientIds
+            ) {
+                return getRecipientStore().resolveRecipientAddresses(recipientIds);
+            }
+        };
     }
 
     public RecipientStore getRecipientStore() {
@@ -1261,17 +1318,29 @@ public class SignalAccount implements Closeable {
     public AccountDatabase getAccountDatabase() {
         return getOrCreate(() -> accountDatabase, () -> {
             try {
-                accountDatabase = AccountDatabase.init(getDatabaseFile(dataPath, accountPath));
+                accountDatabase = AccountDatabase.init(getDatabaseFile(dataPath, accountPath),
+                        settings.databaseProfile());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
         });
     }
 
+    /**
+     * Reuses one database connection and its prepared statements for all store accesses of the current thread, until
+     * the returned binding is closed. The binding must not span network requests, as it holds a pooled connection.
+     */
+    public BoundConnection bindDatabaseConnection() {
+        return getAccountDatabase().bindConnection();
+    }
+
     public MessageSendLogStore getMessageSendLogStore() {
         return getOrCreate(() -> messageSendLogStore,
                 () -> messageSendLogStore = new MessageSendLogStore(getAccountDatabase(),
-                        settings.disableMessageSendLog()));
+                        settings.disableMessageSendLog(),
+                        settings.messageSendLogRetention(),
+                        settings.runtime().getScheduler(),
+                        getExecutor()));
     }
 
     public CredentialsProvider getCredentialsProvider() {
@@ -1616,6 +1685,13 @@ public class SignalAccount implements Closeable {
         save();
     }
 
+    /**
+     * @param handler called before the signal service library accesses the sessions of our own devices
+     */
+    public void setOwnSessionsAccessHandler(final Runnable handler) {
+        this.ownSessionsAccessHandler = handler;
+    }
+
     public boolean isMultiDevice() {
         return isMultiDevice;
     }
@@ -1649,6 +1725,26 @@ public class SignalAccount implements Closeable {
         return phoneNumberUnlisted == null || !phoneNumberUnlisted;
     }
 
+    public boolean useVirtualThreads() {
+        return settings.virtualThreads();
+    }
+
+    public ManagerRuntime getRuntime() {
+        return settings.runtime();
+    }
+
+    /**
+     * The executor for all background tasks of this account, so together they don't use more workers of the runtime
+     * than the per-account limit. It's shut down when the account is closed.
+     */
+    public ExecutorService getExecutor() {
+        return getOrCreate(() -> executor, () -> executor = settings.runtime().newAccountExecutor());
+    }
+
+    public int getSendParallelism() {
+        return settings.sendParallelism();
+    }
+
     private void trustSelfIdentity(ServiceIdType serviceIdType) {
         final var accountData = getAccountData(serviceIdType);
         final var serviceId = accountData.getServiceId();
@@ -1674,13 +1770,25 @@ public class SignalAccount implements Closeable {
 
     @Override
     public void close() {
+        if (executor != null) {
+            // Wait outside the lock, the remaining background tasks may still access the account
+            executor.close();
+        }
         synchronized (fileChannel) {
-            if (accountDatabase != null) {
-                accountDatabase.close();
+            if (savePending && fileChannel.isOpen()) {
+                saveNow();
             }
+            aciAccountData.logSessionCacheStatistics();
+            pniAccountData.logSessionCacheStatistics();
             if (messageSendLogStore != null) {
                 messageSendLogStore.close();
             }
+            if (accountDatabase != null) {
+                accountDatabase.close();
+            }
+            if (messageCache != null) {
+                messageCache.close();
+            }
             try {
                 try {
                     lock.close();
@@ -1799,7 +1907,15 @@ public class SignalAccount implements Closeable {
                             getSessionStore(),
                             getIdentityKeyStore(),
                             getSenderKeyStore(),
-                            SignalAccount.this::isMultiDevice));
+                            SignalAccount.this::isMultiDevice,
+                            this::onSessionAccess));
+        }
+
+        private void onSessionAccess(final String addressName) {
+            final var aci = getAci();
+            if (aci != null && addressName.equals(aci.toString())) {
+                ownSessionsAccessHandler.run();
+            }
         }
 
         public PreKeyStore getPreKeyStore() {
@@ -1822,6 +1938,12 @@ public class SignalAccount implements Closeable {
                     () -> sessionStore = new SessionStore(getAccountDatabase(), serviceIdType));
         }
 
+        private void logSessionCacheStatistics() {
+            if (sessionStore != null) {
+                logger.debug("Session cache statistics for {}: {}", serviceIdType, sessionStore.getCacheStatistics());
+            }
+        }
+
         public SignalIdentityKeyStore getIdentityKeyStore() {
             return getOrCreate(() -> identityKeyStore,
                     () -> identityKeyStore = new SignalIdentityKeyStore(() -> identityKeyPair,
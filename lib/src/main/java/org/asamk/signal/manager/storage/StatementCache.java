@@ -0,0 +1,132 @@
+package org.asamk.signal.manager.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared statements of one physical database connection, cached by their SQL text.
+ * <p>
+ * The statements are prepared on the unwrapped connection, so they aren't closed when the pooled connection is
+ * returned to the pool and can be reused by the next binding that gets the same connection. They're only used by the
+ * thread that currently holds the connection.
+ */
+final class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+    private static final int MAX_CACHED_STATEMENTS = 100;
+
+    private final Connection physicalConnection;
+    private final Map<String, CachedStatement> statements = new HashMap<>();
+
+    StatementCache(final Connection physicalConnection) {
+        this.physicalConnection = physicalConnection;
+    }
+
+    boolean isClosed() {
+        try {
+            return physicalConnection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @param connection the pooled connection, used for statements that aren't cached
+     */
+    PreparedStatement prepareStatement(final Connection connection, final String sql) throws SQLException {
+        var cachedStatement = statements.get(sql);
+        if (cachedStatement == null) {
+            if (statements.size() >= MAX_CACHED_STATEMENTS) {
+                return connection.prepareStatement(sql);
+            }
+            cachedStatement = new CachedStatement(physicalConnection.prepareStatement(sql));
+            statements.put(sql, cachedStatement);
+        } else if (cachedStatement.inUse) {
+            // The same statement is already used further up the stack
+            return connection.prepareStatement(sql);
+        }
+        cachedStatement.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                cachedStatement);
+    }
+
+    /**
+     * Resets the statements that weren't closed, before the connection is returned to the pool.
+     */
+    void releaseAll() {
+        for (final var statement : statements.values()) {
+            if (statement.inUse) {
+                try {
+                    statement.release();
+                } catch (SQLException e) {
+                    logger.debug("Failed to reset cached statement, ignoring: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final List<ResultSet> resultSets = new ArrayList<>();
+        private boolean inUse;
+
+        private CachedStatement(final PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "close" -> {
+                    if (inUse) {
+                        release();
+                    }
+                    yield null;
+                }
+                case "isClosed" -> !inUse || statement.isClosed();
+                case "executeQuery" -> {
+                    final var resultSet = (ResultSet) StatementCache.invoke(statement, method, args);
+                    resultSets.add(resultSet);
+                    yield resultSet;
+                }
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> StatementCache.invoke(statement, method, args);
+            };
+        }
+
+        private void release() throws SQLException {
+            inUse = false;
+            // Closing the result sets resets the statement, so it doesn't keep a read transaction open
+            for (final var resultSet : resultSets) {
+                resultSet.close();
+            }
+            resultSets.clear();
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+    }
+}
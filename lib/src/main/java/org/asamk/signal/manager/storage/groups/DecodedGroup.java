@@ -0,0 +1,43 @@
+package org.asamk.signal.manager.storage.groups;
+
+import org.asamk.signal.manager.storage.recipients.RecipientId;
+import org.asamk.signal.manager.storage.recipients.RecipientResolver;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.whispersystems.signalservice.api.push.ServiceId;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Decoded group data of a v2 group, shared by all {@link GroupInfoV2} instances loaded from the same stored data.
+ * The resolved member recipient ids are computed only once.
+ */
+final class DecodedGroup {
+
+    private final byte[] groupData;
+    private final DecryptedGroup group;
+    private volatile Set<RecipientId> members;
+
+    DecodedGroup(final byte[] groupData, final DecryptedGroup group) {
+        this.groupData = groupData;
+        this.group = group;
+    }
+
+    DecryptedGroup getGroup() {
+        return group;
+    }
+
+    boolean isDecodedFrom(final byte[] groupData) {
+        return Arrays.equals(this.groupData, groupData);
+    }
+
+    Set<RecipientId> getMembers(final RecipientResolver recipientResolver) {
+        var members = this.members;
+        if (members == null) {
+            final var serviceIds = group.members.stream().map(m -> ServiceId.parseOrThrow(m.aciBytes)).toList();
+            members = Set.copyOf(recipientResolver.resolveRecipients(serviceIds).values());
+            this.members = members;
+        }
+        return members;
+    }
+}
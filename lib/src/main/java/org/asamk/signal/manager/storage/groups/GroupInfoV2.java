@@ -14,6 +14,8 @@ import org.signal.storageservice.protos.groups.local.EnabledState;
 import org.whispersystems.signalservice.api.push.DistributionId;
 import org.whispersystems.signalservice.api.push.ServiceId;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -27,6 +29,7 @@ public final class GroupInfoV2 extends GroupInfo {
     private DecryptedGroup group;
     private byte[] storageRecord;
     private boolean permissionDenied;
+    private DecodedGroup decodedGroup;
 
     private final RecipientResolver recipientResolver;
 
@@ -83,6 +86,12 @@ public final class GroupInfoV2 extends GroupInfo {
             this.permissionDenied = false;
         }
         this.group = group;
+        this.decodedGroup = null;
+    }
+
+    void setDecodedGroup(final DecodedGroup decodedGroup) {
+        this.group = decodedGroup.getGroup();
+        this.decodedGroup = decodedGroup;
     }
 
     public DecryptedGroup getGroup() {
@@ -123,10 +132,12 @@ public final class GroupInfoV2 extends GroupInfo {
         if (this.group == null) {
             return Set.of();
         }
-        return group.members.stream()
+        if (decodedGroup != null) {
+            return decodedGroup.getMembers(recipientResolver);
+        }
+        return resolveRecipients(group.members.stream()
                 .map(m -> ServiceId.parseOrThrow(m.aciBytes))
-                .map(recipientResolver::resolveRecipient)
-                .collect(Collectors.toSet());
+                .toList());
     }
 
     @Override
@@ -134,10 +145,9 @@ public final class GroupInfoV2 extends GroupInfo {
         if (this.group == null) {
             return Set.of();
         }
-        return group.bannedMembers.stream()
+        return resolveRecipients(group.bannedMembers.stream()
                 .map(m -> ServiceId.parseOrThrow(m.serviceIdBytes))
-                .map(recipientResolver::resolveRecipient)
-                .collect(Collectors.toSet());
+                .toList());
     }
 
     @Override
@@ -145,10 +155,9 @@ public final class GroupInfoV2 extends GroupInfo {
         if (this.group == null) {
             return Set.of();
         }
-        return group.pendingMembers.stream()
+        return resolveRecipients(group.pendingMembers.stream()
                 .map(m -> ServiceId.parseOrThrow(m.serviceIdBytes))
-                .map(recipientResolver::resolveRecipient)
-                .collect(Collectors.toSet());
+                .toList());
     }
 
     @Override
@@ -156,10 +165,9 @@ public final class GroupInfoV2 extends GroupInfo {
         if (this.group == null) {
             return Set.of();
         }
-        return group.requestingMembers.stream()
+        return resolveRecipients(group.requestingMembers.stream()
                 .map(m -> ServiceId.parseOrThrow(m.aciBytes))
-                .map(recipientResolver::resolveRecipient)
-                .collect(Collectors.toSet());
+                .toList());
     }
 
     @Override
@@ -176,6 +184,10 @@ public final class GroupInfoV2 extends GroupInfo {
                 .collect(Collectors.toSet());
     }
 
+    private Set<RecipientId> resolveRecipients(final List<ServiceId> serviceIds) {
+        return new HashSet<>(recipientResolver.resolveRecipients(serviceIds).values());
+    }
+
     @Override
     public boolean isBlocked() {
         return blocked;
@@ -4,6 +4,7 @@ import org.asamk.signal.manager.api.GroupId;
 import org.asamk.signal.manager.api.GroupIdV1;
 import org.asamk.signal.manager.api.GroupIdV2;
 import org.asamk.signal.manager.groups.GroupUtils;
+import org.asamk.signal.manager.storage.BoundedCache;
 import org.asamk.signal.manager.storage.Database;
 import org.asamk.signal.manager.storage.Utils;
 import org.asamk.signal.manager.storage.recipients.RecipientId;
@@ -42,9 +43,12 @@ public class GroupStore {
     private static final String TABLE_GROUP_V1 = "group_v1";
     private static final String TABLE_GROUP_V1_MEMBER = "group_v1_member";
 
+    private static final int GROUP_CACHE_SIZE = 100;
+
     private final Database database;
     private final RecipientResolver recipientResolver;
     private final RecipientIdCreator recipientIdCreator;
+    private final BoundedCache<GroupIdV2, DecodedGroup> decodedGroups = new BoundedCache<>(GROUP_CACHE_SIZE);
 
     public static void createSql(Connection connection) throws SQLException {
         // When modifying the CREATE statement here, also add a migration in AccountDatabase.java
@@ -184,6 +188,7 @@ public class GroupStore {
     }
 
     public void deleteGroup(GroupIdV2 groupIdV2) {
+        decodedGroups.remove(groupIdV2);
         try (final var connection = database.getConnection()) {
             final var sql = (
                     """
@@ -323,6 +328,9 @@ public class GroupStore {
     public void mergeRecipients(
             final Connection connection, final RecipientId recipientId, final RecipientId toBeMergedRecipientId
     ) throws SQLException {
+        // The resolved members of cached groups may contain the merged recipient
+        decodedGroups.clear();
+
         final var sql = (
                 """
                 UPDATE OR REPLACE %s
@@ -507,6 +515,7 @@ public class GroupStore {
                 }
             }
         } else if (group instanceof GroupInfoV2 groupV2) {
+            decodedGroups.remove(groupV2.getGroupId());
             final var sql = (
                     """
                     INSERT OR REPLACE INTO %s (_id, group_id, master_key, group_data, distribution_id, blocked, permission_denied, storage_id, profile_sharing)
@@ -619,20 +628,35 @@ public class GroupStore {
             final var profileSharingEnabled = resultSet.getBoolean("profile_sharing");
             final var permissionDenied = resultSet.getBoolean("permission_denied");
             final var storageRecord = resultSet.getBytes("storage_record");
-            return new GroupInfoV2(GroupId.v2(groupId),
+            final var groupIdV2 = GroupId.v2(groupId);
+            final var groupInfo = new GroupInfoV2(groupIdV2,
                     new GroupMasterKey(masterKey),
-                    groupData == null ? null : DecryptedGroup.ADAPTER.decode(groupData),
+                    null,
                     DistributionId.from(UuidUtil.parseOrThrow(distributionId)),
                     blocked,
                     profileSharingEnabled,
                     permissionDenied,
                     storageRecord,
                     recipientResolver);
+            if (groupData != null) {
+                groupInfo.setDecodedGroup(getDecodedGroup(groupIdV2, groupData));
+            }
+            return groupInfo;
         } catch (InvalidInputException | IOException e) {
             return null;
         }
     }
 
+    private DecodedGroup getDecodedGroup(final GroupIdV2 groupId, final byte[] groupData) throws IOException {
+        final var cachedGroup = decodedGroups.get(groupId);
+        if (cachedGroup != null && cachedGroup.isDecodedFrom(groupData)) {
+            return cachedGroup;
+        }
+        final var decodedGroup = new DecodedGroup(groupData, DecryptedGroup.ADAPTER.decode(groupData));
+        decodedGroups.put(groupId, decodedGroup);
+        return decodedGroup;
+    }
+
     private StorageId getGroupV1StorageIdFromResultSet(ResultSet resultSet) throws SQLException {
         final var storageId = resultSet.getBytes("storage_id");
         return storageId == null
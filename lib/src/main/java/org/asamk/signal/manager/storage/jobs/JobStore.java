@@ -0,0 +1,173 @@
+package org.asamk.signal.manager.storage.jobs;
+
+import org.asamk.signal.manager.storage.Database;
+import org.asamk.signal.manager.storage.Utils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JobStore {
+
+    private static final String TABLE_JOB = "job";
+
+    private final Database database;
+
+    public static void createSql(Connection connection) throws SQLException {
+        // When modifying the CREATE statement here, also add a migration in AccountDatabase.java
+        try (final var statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                                    CREATE TABLE job (
+                                      _id INTEGER PRIMARY KEY,
+                                      key TEXT UNIQUE NOT NULL,
+                                      type TEXT NOT NULL,
+                                      data TEXT NOT NULL,
+                                      attempts INTEGER NOT NULL DEFAULT 0,
+                                      run_after INTEGER NOT NULL DEFAULT 0,
+                                      generation INTEGER NOT NULL DEFAULT 0
+                                    ) STRICT;
+                                    """);
+        }
+    }
+
+    public JobStore(final Database database) {
+        this.database = database;
+    }
+
+    /**
+     * @return the stored jobs, in the order they were added
+     */
+    public List<StoredJob> getJobs() {
+        final var sql = (
+                """
+                SELECT j.key, j.type, j.data, j.attempts, j.run_after, j.generation
+                FROM %s j
+                ORDER BY j._id
+                """
+        ).formatted(TABLE_JOB);
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                try (var result = Utils.executeQueryForStream(statement, this::getStoredJobFromResultSet)) {
+                    return result.toList();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed read from job store", e);
+        }
+    }
+
+    /**
+     * Adds the job, replacing a stored job with the same key.
+     *
+     * @return the generation of the stored job, it's higher than that of any replaced job with the same key
+     */
+    public long addJob(final String key, final String type, final String data, final long runAfter) {
+        final var sql = (
+                """
+                INSERT INTO %s (key, type, data, run_after, generation)
+                VALUES (?, ?, ?, ?, (SELECT IFNULL(MAX(generation), 0) + 1 FROM %s))
+                ON CONFLICT (key) DO UPDATE
+                SET type = excluded.type, data = excluded.data, attempts = 0, run_after = excluded.run_after,
+                  generation = excluded.generation
+                RETURNING generation
+                """
+        ).formatted(TABLE_JOB, TABLE_JOB);
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                statement.setString(1, key);
+                statement.setString(2, type);
+                statement.setString(3, data);
+                statement.setLong(4, runAfter);
+                return Utils.executeQuerySingleRow(statement, resultSet -> resultSet.getLong("generation"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed update job store", e);
+        }
+    }
+
+    /**
+     * Replaces the data of a stored job, keeping its attempts.
+     */
+    public void updateJobData(final String key, final String type, final String data) {
+        final var sql = (
+                """
+                UPDATE %s
+                SET type = ?, data = ?
+                WHERE key = ?
+                """
+        ).formatted(TABLE_JOB);
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                statement.setString(1, type);
+                statement.setString(2, data);
+                statement.setString(3, key);
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed update job store", e);
+        }
+    }
+
+    /**
+     * Updates the attempts of a stored job, unless it has been replaced by a newer job with the same key.
+     *
+     * @return true if the stored job was updated
+     */
+    public boolean updateJobAttempts(final String key, final long generation, final int attempts, final long runAfter) {
+        final var sql = (
+                """
+                UPDATE %s
+                SET attempts = ?, run_after = ?
+                WHERE key = ? AND generation = ?
+                """
+        ).formatted(TABLE_JOB);
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, attempts);
+                statement.setLong(2, runAfter);
+                statement.setString(3, key);
+                statement.setLong(4, generation);
+                return statement.executeUpdate() > 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed update job store", e);
+        }
+    }
+
+    /**
+     * Deletes a stored job, unless it has been replaced by a newer job with the same key.
+     */
+    public void deleteJob(final String key, final long generation) {
+        final var sql = (
+                """
+                DELETE FROM %s
+                WHERE key = ? AND generation = ?
+                """
+        ).formatted(TABLE_JOB);
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                statement.setString(1, key);
+                statement.setLong(2, generation);
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed update job store", e);
+        }
+    }
+
+    private StoredJob getStoredJobFromResultSet(ResultSet resultSet) throws SQLException {
+        return new StoredJob(resultSet.getString("key"),
+                resultSet.getString("type"),
+                resultSet.getString("data"),
+                resultSet.getInt("attempts"),
+                resultSet.getLong("run_after"),
+                resultSet.getLong("generation"));
+    }
+
+    /**
+     * @param runAfter   timestamp in milliseconds before which the job must not run
+     * @param generation identifies the stored job, to detect whether it has been replaced by a newer equal job
+     */
+    public record StoredJob(String key, String type, String data, int attempts, long runAfter, long generation) {}
+}
@@ -5,52 +5,61 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 
 public final class CachedMessage {
 
     private static final Logger logger = LoggerFactory.getLogger(CachedMessage.class);
 
-    private final File file;
+    private final MessageJournal journal;
+    private final long id;
 
     private SignalServiceEnvelope envelope;
 
-    CachedMessage(final File file) {
-        this.file = file;
+    CachedMessage(final MessageJournal journal, final long id) {
+        this.journal = journal;
+        this.id = id;
     }
 
-    CachedMessage(final File file, SignalServiceEnvelope envelope) {
-        this.file = file;
+    CachedMessage(final MessageJournal journal, final long id, SignalServiceEnvelope envelope) {
+        this.journal = journal;
+        this.id = id;
         this.envelope = envelope;
     }
 
-    File getFile() {
-        return file;
+    long getId() {
+        return id;
     }
 
-    public SignalServiceEnvelope loadEnvelope() {
+    /**
+     * @return the envelope, or null if the message has already been deleted or can't be parsed
+     * @throws IOException if the message cache can't be read, the message should be kept for a later attempt then
+     */
+    public SignalServiceEnvelope loadEnvelope() throws IOException {
         if (envelope == null) {
+            final var payload = journal.read(id);
+            if (payload == null) {
+                logger.debug("Cached message {} has already been deleted", id);
+                return null;
+            }
             try {
-                envelope = MessageCacheUtils.loadEnvelope(file);
+                envelope = MessageCacheUtils.loadEnvelope(new ByteArrayInputStream(payload));
             } catch (Exception e) {
-                logger.error("Failed to load cached message envelope “{}”: {}", file, e.getMessage(), e);
+                logger.error("Failed to load cached message envelope {}: {}", id, e.getMessage(), e);
             }
         }
         return envelope;
     }
 
     public void delete() {
-        try {
-            Files.delete(file.toPath());
-        } catch (IOException e) {
-            logger.warn("Failed to delete cached message file “{}”, ignoring: {}", file, e.getMessage());
+        if (id == MessageCache.NOT_STORED) {
+            return;
         }
-        // Delete parent directory, if empty
         try {
-            Files.delete(file.toPath().getParent());
-        } catch (IOException ignored) {
+            journal.delete(id);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cached message {}, ignoring: {}", id, e.getMessage());
         }
     }
 }
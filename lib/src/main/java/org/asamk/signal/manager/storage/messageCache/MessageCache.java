@@ -1,141 +1,147 @@
 package org.asamk.signal.manager.storage.messageCache;
 
 import org.asamk.signal.manager.storage.recipients.RecipientId;
-import org.asamk.signal.manager.util.IOUtils;
 import org.asamk.signal.manager.util.MessageCacheUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Objects;
-import java.util.stream.Stream;
 
-public class MessageCache {
+/**
+ * Stores received envelopes until they have been handled successfully.
+ * Envelopes are kept in an append-only journal in the {@code journal} sub directory. Older versions stored each
+ * envelope in its own file, named {@code <recipientId>/<now>_<timestamp>}, these are migrated to the journal on
+ * startup.
+ */
+public class MessageCache implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageCache.class);
 
-    private final File messageCachePath;
+    static final long NOT_STORED = -1;
+    private static final String JOURNAL_DIR = "journal";
+
+    private final MessageJournal journal;
 
     public MessageCache(final File messageCachePath) {
-        this.messageCachePath = messageCachePath;
+        try {
+            this.journal = new MessageJournal(new File(messageCachePath, JOURNAL_DIR));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open message cache journal", e);
+        }
+        migrateLegacyMessageFiles(messageCachePath);
     }
 
     public Iterable<CachedMessage> getCachedMessages() {
-        if (!messageCachePath.exists()) {
-            return Collections.emptyList();
-        }
-
-        return Arrays.stream(Objects.requireNonNull(messageCachePath.listFiles())).flatMap(dir -> {
-            if (dir.isFile()) {
-                return Stream.of(dir);
-            }
-
-            final var files = Objects.requireNonNull(dir.listFiles());
-            if (files.length == 0) {
-                try {
-                    Files.delete(dir.toPath());
-                } catch (IOException e) {
-                    logger.warn("Failed to delete cache dir “{}”, ignoring: {}", dir, e.getMessage());
-                }
-                return Stream.empty();
-            }
-            return Arrays.stream(files).filter(File::isFile);
-        }).map(CachedMessage::new).toList();
+        return journal.getEntryIds().stream().map(id -> new CachedMessage(journal, id)).toList();
     }
 
     public CachedMessage cacheMessage(SignalServiceEnvelope envelope, RecipientId recipientId) {
-        final var now = System.currentTimeMillis();
-
-        File cacheFile;
         try {
-            cacheFile = getMessageCacheFile(recipientId, now, envelope.getTimestamp());
-        } catch (IOException e) {
-            logger.warn("Failed to create recipient folder in disk cache: {}", e.getMessage());
-            throw new RuntimeException(e);
-        }
-
-        final var cachedMessage = new CachedMessage(cacheFile, envelope);
-        try {
-            MessageCacheUtils.storeEnvelope(envelope, cacheFile);
-            return cachedMessage;
+            final var output = new ByteArrayOutputStream();
+            MessageCacheUtils.storeEnvelope(envelope, output);
+            final var id = journal.append(toJournalRecipientId(recipientId), output.toByteArray());
+            return new CachedMessage(journal, id, envelope);
         } catch (IOException e) {
             logger.warn("Failed to store encrypted message in disk cache, ignoring: {}", e.getMessage());
-            return cachedMessage;
+            return new CachedMessage(journal, NOT_STORED, envelope);
         }
     }
 
     public CachedMessage replaceSender(CachedMessage cachedMessage, RecipientId sender) throws IOException {
-        final var cacheFile = getMessageCacheFile(sender, cachedMessage.getFile().getName());
-        if (cacheFile.equals(cachedMessage.getFile())) {
-            return cachedMessage;
-        }
-        logger.debug("Moving cached message {} to {}", cachedMessage.getFile().toPath(), cacheFile.toPath());
-        Files.move(cachedMessage.getFile().toPath(), cacheFile.toPath());
-        return new CachedMessage(cacheFile);
+        logger.debug("Moving cached message {} to recipient {}", cachedMessage.getId(), sender);
+        journal.setRecipient(cachedMessage.getId(), toJournalRecipientId(sender));
+        return cachedMessage;
     }
 
     public void deleteMessages(final RecipientId recipientId) {
-        final var recipientMessageCachePath = getMessageCachePath(recipientId);
-        if (!recipientMessageCachePath.exists()) {
-            return;
-        }
-
-        for (var file : Objects.requireNonNull(recipientMessageCachePath.listFiles())) {
-            if (!file.isFile()) {
-                continue;
-            }
-
+        for (final var id : journal.getEntryIds(toJournalRecipientId(recipientId))) {
             try {
-                Files.delete(file.toPath());
+                journal.delete(id);
             } catch (IOException e) {
-                logger.warn("Failed to delete cache file “{}”, ignoring: {}", file, e.getMessage());
+                logger.warn("Failed to delete cached message {}, ignoring: {}", id, e.getMessage());
             }
         }
     }
 
-    private File getMessageCachePath(RecipientId recipientId) {
-        if (recipientId == null) {
-            return messageCachePath;
+    public void mergeRecipients(final RecipientId recipientId, final RecipientId toBeMergedRecipientId) {
+        final var journalRecipientId = toJournalRecipientId(recipientId);
+        for (final var id : journal.getEntryIds(toJournalRecipientId(toBeMergedRecipientId))) {
+            try {
+                journal.setRecipient(id, journalRecipientId);
+            } catch (IOException e) {
+                logger.warn("Failed to move cached message {}, ignoring: {}", id, e.getMessage(), e);
+            }
         }
-
-        var sender = String.valueOf(recipientId.id());
-        return new File(messageCachePath, sender.replace("/", "_"));
     }
 
-    private File getMessageCacheFile(RecipientId recipientId, String filename) throws IOException {
-        var cachePath = getMessageCachePath(recipientId);
-        IOUtils.createPrivateDirectories(cachePath);
-        return new File(cachePath, filename);
+    @Override
+    public void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close message cache journal: {}", e.getMessage());
+        }
     }
 
-    private File getMessageCacheFile(RecipientId recipientId, long now, long timestamp) throws IOException {
-        var cachePath = getMessageCachePath(recipientId);
-        IOUtils.createPrivateDirectories(cachePath);
-        return new File(cachePath, now + "_" + timestamp);
+    private static long toJournalRecipientId(final RecipientId recipientId) {
+        return recipientId == null ? MessageJournal.NO_RECIPIENT : recipientId.id();
     }
 
-    public void mergeRecipients(final RecipientId recipientId, final RecipientId toBeMergedRecipientId) {
-        final var toBeMergedMessageCachePath = getMessageCachePath(toBeMergedRecipientId);
-        if (!toBeMergedMessageCachePath.exists()) {
+    private void migrateLegacyMessageFiles(final File messageCachePath) {
+        final var legacyFiles = new ArrayList<LegacyMessageFile>();
+        for (final var file : Objects.requireNonNull(messageCachePath.listFiles())) {
+            if (file.isFile()) {
+                legacyFiles.add(new LegacyMessageFile(file, MessageJournal.NO_RECIPIENT));
+            } else if (!file.getName().equals(JOURNAL_DIR)) {
+                final long recipientId;
+                try {
+                    recipientId = Long.parseLong(file.getName());
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unknown directory in message cache “{}”", file);
+                    continue;
+                }
+                for (final var messageFile : Objects.requireNonNull(file.listFiles())) {
+                    if (messageFile.isFile()) {
+                        legacyFiles.add(new LegacyMessageFile(messageFile, recipientId));
+                    }
+                }
+            }
+        }
+        if (legacyFiles.isEmpty()) {
             return;
         }
 
-        for (var file : Objects.requireNonNull(toBeMergedMessageCachePath.listFiles())) {
-            if (!file.isFile()) {
+        logger.info("Migrating {} cached messages to message cache journal", legacyFiles.size());
+        // File names start with the time the message was received, keep that order in the journal
+        legacyFiles.sort(Comparator.comparing(f -> f.file().getName()));
+        for (final var legacyFile : legacyFiles) {
+            final var file = legacyFile.file();
+            try {
+                // The journal uses the same serialization format as the legacy files
+                journal.append(legacyFile.recipientId(), Files.readAllBytes(file.toPath()));
+                Files.delete(file.toPath());
+            } catch (IOException e) {
+                logger.warn("Failed to migrate cached message file “{}”, ignoring: {}", file, e.getMessage());
+            }
+        }
+        for (final var dir : Objects.requireNonNull(messageCachePath.listFiles(File::isDirectory))) {
+            if (dir.getName().equals(JOURNAL_DIR)) {
                 continue;
             }
-
             try {
-                final var cacheFile = getMessageCacheFile(recipientId, file.getName());
-                Files.move(file.toPath(), cacheFile.toPath());
+                Files.delete(dir.toPath());
             } catch (IOException e) {
-                logger.warn("Failed to move cache file “{}”, ignoring: {}", file, e.getMessage(), e);
+                logger.debug("Failed to delete legacy message cache dir “{}”, ignoring: {}", dir, e.getMessage());
             }
         }
     }
+
+    private record LegacyMessageFile(File file, long recipientId) {}
 }
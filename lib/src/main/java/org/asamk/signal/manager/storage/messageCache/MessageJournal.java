@@ -0,0 +1,386 @@
+package org.asamk.signal.manager.storage.messageCache;
+
+import org.asamk.signal.manager.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Append-only log of cached envelopes, split into segment files.
+ * <p>
+ * Each entry is written once and later invalidated by a tombstone record. Changes of the sender recipient are
+ * appended as separate records as well. The in-memory index is rebuilt by replaying all segments on startup.
+ * Segments are deleted once they and all older segments contain no live entries anymore. When a new segment is started
+ * while the journal is more than twice as large as its live entries, the live entries of the oldest segment are
+ * copied to the active segment, so the disk usage stays bounded even if old segments keep some live entries forever.
+ */
+final class MessageJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final byte RECORD_ENTRY = 1;
+    private static final byte RECORD_TOMBSTONE = 2;
+    private static final byte RECORD_RECIPIENT = 3;
+    private static final int ENTRY_HEADER_SIZE = 1 + 8 + 8 + 4;
+    private static final int TOMBSTONE_SIZE = 1 + 8;
+    private static final int RECIPIENT_SIZE = 1 + 8 + 8;
+
+    static final long NO_RECIPIENT = -1;
+
+    private final File journalPath;
+    private final long maxSegmentSize;
+    private final TreeMap<Long, IndexEntry> index = new TreeMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private long nextId = 1;
+    private long activeSegmentNumber;
+    private FileChannel activeChannel;
+    private long activeSegmentSize;
+
+    MessageJournal(final File journalPath) throws IOException {
+        this(journalPath, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    MessageJournal(final File journalPath, final long maxSegmentSize) throws IOException {
+        this.journalPath = journalPath;
+        this.maxSegmentSize = maxSegmentSize;
+        IOUtils.createPrivateDirectories(journalPath);
+
+        final var segmentFiles = Objects.requireNonNull(journalPath.listFiles((dir, name) -> name.startsWith(
+                SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)));
+        for (final var file : segmentFiles) {
+            final var number = parseSegmentNumber(file.getName());
+            if (number == null) {
+                logger.warn("Ignoring unknown file in message cache journal “{}”", file);
+                continue;
+            }
+            segments.put(number, new Segment(file));
+        }
+        for (final var entry : segments.entrySet()) {
+            final var segment = entry.getValue();
+            replaySegment(entry.getKey(), segment.file);
+            segment.size = segment.file.length();
+        }
+        for (final var entry : index.values()) {
+            segments.get(entry.segment()).liveSize += entry.recordSize();
+        }
+
+        if (segments.isEmpty()) {
+            createSegment(1);
+        } else {
+            openSegment(segments.lastKey());
+        }
+        deleteDeadSegments();
+        logger.debug("Loaded message cache journal with {} entries in {} segments", index.size(), segments.size());
+    }
+
+    synchronized List<Long> getEntryIds() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    synchronized List<Long> getEntryIds(final long recipientId) {
+        return index.entrySet()
+                .stream()
+                .filter(e -> e.getValue().recipientId() == recipientId)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    synchronized long append(final long recipientId, final byte[] payload) throws IOException {
+        final var id = nextId++;
+        writeEntry(id, recipientId, payload);
+        return id;
+    }
+
+    /**
+     * The segment file is read without holding the lock, so it may have been compacted and deleted in the meantime.
+     * In that case the entry is looked up again, an I/O failure for an entry that's still there is rethrown.
+     *
+     * @return the payload of the entry, or null if the entry doesn't exist (anymore)
+     */
+    byte[] read(final long id) throws IOException {
+        var entry = getIndexEntry(id);
+        while (entry != null) {
+            final File file;
+            synchronized (this) {
+                final var segment = segments.get(entry.segment());
+                file = segment == null ? null : segment.file;
+            }
+            IOException exception = null;
+            if (file != null) {
+                try {
+                    return readPayload(file, entry);
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+            final var current = getIndexEntry(id);
+            if (entry.equals(current)) {
+                throw exception != null
+                        ? exception
+                        : new IOException("Message cache segment " + entry.segment() + " missing for entry " + id);
+            }
+            // The entry was moved to another segment or deleted while reading
+            entry = current;
+        }
+        return null;
+    }
+
+    synchronized void delete(final long id) throws IOException {
+        final var entry = index.remove(id);
+        if (entry == null) {
+            return;
+        }
+        segments.get(entry.segment()).liveSize -= entry.recordSize();
+        writeRecord(ByteBuffer.allocate(TOMBSTONE_SIZE).put(RECORD_TOMBSTONE).putLong(id).flip());
+        deleteDeadSegments();
+    }
+
+    synchronized void setRecipient(final long id, final long recipientId) throws IOException {
+        final var entry = index.get(id);
+        if (entry == null || entry.recipientId() == recipientId) {
+            return;
+        }
+        writeRecord(ByteBuffer.allocate(RECIPIENT_SIZE)
+                .put(RECORD_RECIPIENT)
+                .putLong(id)
+                .putLong(recipientId)
+                .flip());
+        index.put(id, entry.withRecipientId(recipientId));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    private synchronized IndexEntry getIndexEntry(final long id) {
+        return index.get(id);
+    }
+
+    private static byte[] readPayload(final File file, final IndexEntry entry) throws IOException {
+        try (final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final var buffer = ByteBuffer.allocate(entry.length());
+            var position = entry.offset();
+            while (buffer.hasRemaining()) {
+                final var read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of message cache segment " + file);
+                }
+                position += read;
+            }
+            return buffer.array();
+        }
+    }
+
+    private void writeEntry(final long id, final long recipientId, final byte[] payload) throws IOException {
+        if (activeSegmentSize > 0 && activeSegmentSize + ENTRY_HEADER_SIZE + payload.length > maxSegmentSize) {
+            startNewSegment();
+        }
+        appendEntry(id, recipientId, payload);
+    }
+
+    private void appendEntry(final long id, final long recipientId, final byte[] payload) throws IOException {
+        final var recordSize = ENTRY_HEADER_SIZE + payload.length;
+        final var offset = activeSegmentSize + ENTRY_HEADER_SIZE;
+        writeRecord(ByteBuffer.allocate(recordSize)
+                .put(RECORD_ENTRY)
+                .putLong(id)
+                .putLong(recipientId)
+                .putInt(payload.length)
+                .put(payload)
+                .flip());
+
+        final var previous = index.put(id, new IndexEntry(activeSegmentNumber, offset, payload.length, recipientId));
+        if (previous != null) {
+            segments.get(previous.segment()).liveSize -= previous.recordSize();
+        }
+        segments.get(activeSegmentNumber).liveSize += recordSize;
+    }
+
+    private void writeRecord(final ByteBuffer record) throws IOException {
+        try {
+            while (record.hasRemaining()) {
+                activeChannel.write(record);
+            }
+        } catch (IOException e) {
+            // Remove a partially written record, so later records can still be read
+            activeChannel.truncate(activeSegmentSize);
+            activeChannel.position(activeSegmentSize);
+            throw e;
+        }
+        activeSegmentSize += record.limit();
+        segments.get(activeSegmentNumber).size = activeSegmentSize;
+    }
+
+    private void startNewSegment() throws IOException {
+        activeChannel.close();
+        createSegment(activeSegmentNumber + 1);
+        compactOldestSegment();
+        deleteDeadSegments();
+    }
+
+    /**
+     * Copies the live entries of the oldest segment to the active segment, if the journal is more than twice as large
+     * as its live entries. Only the oldest segment is compacted, because the tombstones and recipient records of a
+     * segment may refer to entries of older segments, so segments can only be deleted in order.
+     */
+    private void compactOldestSegment() throws IOException {
+        long totalSize = 0;
+        long liveSize = 0;
+        for (final var segment : segments.values()) {
+            totalSize += segment.size;
+            liveSize += segment.liveSize;
+        }
+        final var oldestSegmentNumber = segments.firstKey();
+        if (oldestSegmentNumber == activeSegmentNumber || totalSize <= 2 * liveSize + maxSegmentSize) {
+            return;
+        }
+
+        final var liveEntries = index.entrySet()
+                .stream()
+                .filter(e -> e.getValue().segment() == oldestSegmentNumber)
+                .toList();
+        logger.trace("Compacting message cache segment {} with {} live entries",
+                oldestSegmentNumber,
+                liveEntries.size());
+        for (final var e : liveEntries) {
+            final var payload = readPayload(segments.get(oldestSegmentNumber).file, e.getValue());
+            // The active segment may grow beyond its maximum size here, to not start another segment while compacting
+            appendEntry(e.getKey(), e.getValue().recipientId(), payload);
+        }
+    }
+
+    private void createSegment(final long number) throws IOException {
+        final var file = getSegmentFile(number);
+        IOUtils.createPrivateFile(file);
+        segments.put(number, new Segment(file));
+        openSegment(number);
+    }
+
+    private void openSegment(final long number) throws IOException {
+        activeSegmentNumber = number;
+        activeChannel = FileChannel.open(segments.get(number).file.toPath(), StandardOpenOption.WRITE);
+        activeSegmentSize = activeChannel.size();
+        activeChannel.position(activeSegmentSize);
+    }
+
+    private void deleteDeadSegments() {
+        while (!segments.isEmpty()) {
+            final var oldest = segments.firstEntry();
+            if (oldest.getKey() == activeSegmentNumber || oldest.getValue().liveSize > 0) {
+                break;
+            }
+            try {
+                Files.delete(oldest.getValue().file.toPath());
+            } catch (IOException e) {
+                logger.warn("Failed to delete message cache segment “{}”, ignoring: {}",
+                        oldest.getValue().file,
+                        e.getMessage());
+                break;
+            }
+            segments.remove(oldest.getKey());
+        }
+    }
+
+    private void replaySegment(final long number, final File file) throws IOException {
+        long position = 0;
+        try (final var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                final int type = in.read();
+                if (type == -1) {
+                    return;
+                }
+                switch (type) {
+                    case RECORD_ENTRY -> {
+                        final var id = in.readLong();
+                        final var recipientId = in.readLong();
+                        final var length = in.readInt();
+                        if (length < 0) {
+                            throw new IOException("Invalid entry length " + length);
+                        }
+                        in.skipNBytes(length);
+                        index.put(id, new IndexEntry(number, position + ENTRY_HEADER_SIZE, length, recipientId));
+                        nextId = Math.max(nextId, id + 1);
+                        position += ENTRY_HEADER_SIZE + length;
+                    }
+                    case RECORD_TOMBSTONE -> {
+                        index.remove(in.readLong());
+                        position += TOMBSTONE_SIZE;
+                    }
+                    case RECORD_RECIPIENT -> {
+                        final var id = in.readLong();
+                        final var recipientId = in.readLong();
+                        index.computeIfPresent(id, (k, e) -> e.withRecipientId(recipientId));
+                        position += RECIPIENT_SIZE;
+                    }
+                    default -> throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Message cache segment “{}” is damaged at offset {}, truncating: {}",
+                    file,
+                    position,
+                    e.getMessage());
+            try (final var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private File getSegmentFile(final long number) {
+        return new File(journalPath, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private static Long parseSegmentNumber(final String name) {
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record IndexEntry(long segment, long offset, int length, long recipientId) {
+
+        long recordSize() {
+            return ENTRY_HEADER_SIZE + length;
+        }
+
+        IndexEntry withRecipientId(final long recipientId) {
+            return new IndexEntry(segment, offset, length, recipientId);
+        }
+    }
+
+    private static final class Segment {
+
+        private final File file;
+        private long size;
+        private long liveSize;
+
+        private Segment(final File file) {
+            this.file = file;
+        }
+    }
+}
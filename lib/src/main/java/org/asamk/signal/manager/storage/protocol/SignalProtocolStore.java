@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class SignalProtocolStore implements SignalServiceAccountDataStore {
@@ -35,7 +36,11 @@ public class SignalProtocolStore implements SignalServiceAccountDataStore {
     private final IdentityKeyStore identityKeyStore;
     private final SignalServiceSenderKeyStore senderKeyStore;
     private final Supplier<Boolean> isMultiDevice;
+    private final Consumer<String> sessionAccessListener;
 
+    /**
+     * @param sessionAccessListener called with the address name before sessions are accessed
+     */
     public SignalProtocolStore(
             final SignalServicePreKeyStore preKeyStore,
             final SignedPreKeyStore signedPreKeyStore,
@@ -43,7 +48,8 @@ public class SignalProtocolStore implements SignalServiceAccountDataStore {
             final SignalServiceSessionStore sessionStore,
             final IdentityKeyStore identityKeyStore,
             final SignalServiceSenderKeyStore senderKeyStore,
-            final Supplier<Boolean> isMultiDevice
+            final Supplier<Boolean> isMultiDevice,
+            final Consumer<String> sessionAccessListener
     ) {
         this.preKeyStore = preKeyStore;
         this.signedPreKeyStore = signedPreKeyStore;
@@ -52,6 +58,7 @@ public class SignalProtocolStore implements SignalServiceAccountDataStore {
         this.identityKeyStore = identityKeyStore;
         this.senderKeyStore = senderKeyStore;
         this.isMultiDevice = isMultiDevice;
+        this.sessionAccessListener = sessionAccessListener;
     }
 
     @Override
@@ -101,47 +108,56 @@ public class SignalProtocolStore implements SignalServiceAccountDataStore {
 
     @Override
     public SessionRecord loadSession(SignalProtocolAddress address) {
+        sessionAccessListener.accept(address.getName());
         return sessionStore.loadSession(address);
     }
 
     @Override
     public List<SessionRecord> loadExistingSessions(final List<SignalProtocolAddress> addresses) throws NoSessionException {
+        addresses.forEach(address -> sessionAccessListener.accept(address.getName()));
         return sessionStore.loadExistingSessions(addresses);
     }
 
     @Override
     public List<Integer> getSubDeviceSessions(String name) {
+        sessionAccessListener.accept(name);
         return sessionStore.getSubDeviceSessions(name);
     }
 
     @Override
     public void storeSession(SignalProtocolAddress address, SessionRecord record) {
+        sessionAccessListener.accept(address.getName());
         sessionStore.storeSession(address, record);
     }
 
     @Override
     public boolean containsSession(SignalProtocolAddress address) {
+        sessionAccessListener.accept(address.getName());
         return sessionStore.containsSession(address);
     }
 
     @Override
     public void deleteSession(SignalProtocolAddress address) {
+        sessionAccessListener.accept(address.getName());
         sessionStore.deleteSession(address);
     }
 
     @Override
     public void deleteAllSessions(String name) {
+        sessionAccessListener.accept(name);
         sessionStore.deleteAllSessions(name);
     }
 
     @Override
     public void archiveSession(final SignalProtocolAddress address) {
+        sessionAccessListener.accept(address.getName());
         sessionStore.archiveSession(address);
         senderKeyStore.clearSenderKeySharedWith(List.of(address));
     }
 
     @Override
     public Map<SignalProtocolAddress, SessionRecord> getAllAddressesWithActiveSessions(final List<String> addressNames) {
+        addressNames.forEach(sessionAccessListener);
         return sessionStore.getAllAddressesWithActiveSessions(addressNames);
     }
 
@@ -0,0 +1,48 @@
+package org.asamk.signal.manager.storage.recipients;
+
+import org.asamk.signal.manager.storage.BoundedCache;
+import org.whispersystems.signalservice.api.push.ServiceId;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of the recipients resolved by service id.
+ * <p>
+ * Lookups don't take a lock. An index from recipient to its cached service ids allows invalidating all entries of a
+ * recipient without scanning the whole cache.
+ */
+final class RecipientAddressCache {
+
+    private final BoundedCache<ServiceId, RecipientWithAddress> cache;
+    private final Map<Long, Set<ServiceId>> serviceIdsByRecipient = new ConcurrentHashMap<>();
+
+    RecipientAddressCache(final int maxSize) {
+        this.cache = new BoundedCache<>(maxSize, this::removeFromIndex);
+    }
+
+    RecipientWithAddress get(final ServiceId serviceId) {
+        return cache.get(serviceId);
+    }
+
+    void put(final ServiceId serviceId, final RecipientWithAddress recipientWithAddress) {
+        serviceIdsByRecipient.computeIfAbsent(recipientWithAddress.id().id(), id -> ConcurrentHashMap.newKeySet())
+                .add(serviceId);
+        cache.put(serviceId, recipientWithAddress);
+    }
+
+    void invalidate(final RecipientId recipientId) {
+        final var serviceIds = serviceIdsByRecipient.remove(recipientId.id());
+        if (serviceIds != null) {
+            serviceIds.forEach(cache::remove);
+        }
+    }
+
+    private void removeFromIndex(final ServiceId serviceId, final RecipientWithAddress recipientWithAddress) {
+        serviceIdsByRecipient.computeIfPresent(recipientWithAddress.id().id(), (id, serviceIds) -> {
+            serviceIds.remove(serviceId);
+            return serviceIds.isEmpty() ? null : serviceIds;
+        });
+    }
+}
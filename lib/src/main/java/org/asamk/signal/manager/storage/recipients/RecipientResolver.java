@@ -3,6 +3,9 @@ package org.asamk.signal.manager.storage.recipients;
 import org.whispersystems.signalservice.api.push.ServiceId;
 import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Supplier;
 
 public interface RecipientResolver {
@@ -19,6 +22,17 @@ public interface RecipientResolver {
 
     RecipientId resolveRecipient(ServiceId serviceId);
 
+    /**
+     * Resolve multiple recipients at once, implementations should look them up with a single query.
+     */
+    default Map<ServiceId, RecipientId> resolveRecipients(Collection<ServiceId> serviceIds) {
+        final var recipientIds = new HashMap<ServiceId, RecipientId>();
+        for (final var serviceId : serviceIds) {
+            recipientIds.put(serviceId, resolveRecipient(serviceId));
+        }
+        return recipientIds;
+    }
+
     class RecipientResolverWrapper implements RecipientResolver {
 
         private final Supplier<RecipientResolver> recipientResolverSupplier;
@@ -46,5 +60,10 @@ public interface RecipientResolver {
         public RecipientId resolveRecipient(final ServiceId serviceId) {
             return recipientResolverSupplier.get().resolveRecipient(serviceId);
         }
+
+        @Override
+        public Map<ServiceId, RecipientId> resolveRecipients(final Collection<ServiceId> serviceIds) {
+            return recipientResolverSupplier.get().resolveRecipients(serviceIds);
+        }
     }
 }
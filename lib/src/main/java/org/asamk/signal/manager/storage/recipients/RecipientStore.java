@@ -27,12 +27,15 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -40,6 +43,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
 
     private static final Logger logger = LoggerFactory.getLogger(RecipientStore.class);
     private static final String TABLE_RECIPIENT = "recipient";
+    private static final int RECIPIENT_ADDRESS_CACHE_SIZE = 10_000;
+    private static final int BULK_QUERY_SIZE = 500;
     private static final String SQL_IS_CONTACT = "r.given_name IS NOT NULL OR r.family_name IS NOT NULL OR r.nick_name IS NOT NULL OR r.expiration_time > 0 OR r.profile_sharing = TRUE OR r.color IS NOT NULL OR r.blocked = TRUE OR r.archived = TRUE";
 
     private final RecipientMergeHandler recipientMergeHandler;
@@ -47,10 +52,10 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
     private final SelfProfileKeyProvider selfProfileKeyProvider;
     private final Database database;
 
-    private final Object recipientsLock = new Object();
+    private final ReentrantLock recipientsLock = new ReentrantLock();
     private final Map<Long, Long> recipientsMerged = new HashMap<>();
 
-    private final Map<ServiceId, RecipientWithAddress> recipientAddressCache = new HashMap<>();
+    private final RecipientAddressCache recipientAddressCache = new RecipientAddressCache(RECIPIENT_ADDRESS_CACHE_SIZE);
 
     public static void createSql(Connection connection) throws SQLException {
         // When modifying the CREATE statement here, also add a migration in AccountDatabase.java
@@ -115,6 +120,41 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
         }
     }
 
+    public Map<RecipientId, RecipientAddress> resolveRecipientAddresses(Collection<RecipientId> recipientIds) {
+        final var ids = recipientIds.stream().map(RecipientId::id).distinct().toList();
+        final var addressesById = new HashMap<Long, RecipientAddress>();
+        try (final var connection = database.getConnection()) {
+            for (var i = 0; i < ids.size(); i += BULK_QUERY_SIZE) {
+                final var chunk = ids.subList(i, Math.min(i + BULK_QUERY_SIZE, ids.size()));
+                final var sql = (
+                        """
+                        SELECT r._id, r.number, r.aci, r.pni, r.username
+                        FROM %s r
+                        WHERE r._id IN (%s)
+                        """
+                ).formatted(TABLE_RECIPIENT, getQueryParameters(chunk.size()));
+                try (final var statement = connection.prepareStatement(sql)) {
+                    for (var j = 0; j < chunk.size(); j++) {
+                        statement.setLong(j + 1, chunk.get(j));
+                    }
+                    try (var result = Utils.executeQueryForStream(statement,
+                            this::getRecipientWithAddressFromResultSet)) {
+                        result.forEach(r -> addressesById.put(r.id().id(), r.address()));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed read from recipient store", e);
+        }
+
+        final var addresses = new HashMap<RecipientId, RecipientAddress>();
+        for (final var recipientId : recipientIds) {
+            final var address = addressesById.get(recipientId.id());
+            addresses.put(recipientId, address != null ? address : resolveRecipientAddress(recipientId));
+        }
+        return addresses;
+    }
+
     public Collection<RecipientId> getRecipientIdsWithEnabledProfileSharing() {
         final var sql = (
                 """
@@ -164,7 +204,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
     }
 
     private RecipientId resolveRecipientByNumber(final String number) {
-        synchronized (recipientsLock) {
+        recipientsLock.lock();
+        try {
             final RecipientId recipientId;
             try (final var connection = database.getConnection()) {
                 connection.setAutoCommit(false);
@@ -174,16 +215,19 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
                 throw new RuntimeException("Failed read recipient store", e);
             }
             return recipientId;
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
     @Override
     public RecipientId resolveRecipient(final ServiceId serviceId) {
-        synchronized (recipientsLock) {
-            final var recipientWithAddress = recipientAddressCache.get(serviceId);
-            if (recipientWithAddress != null) {
-                return recipientWithAddress.id();
-            }
+        final var recipientWithAddress = recipientAddressCache.get(serviceId);
+        if (recipientWithAddress != null) {
+            return recipientWithAddress.id();
+        }
+        recipientsLock.lock();
+        try {
             try (final var connection = database.getConnection()) {
                 connection.setAutoCommit(false);
                 final var recipientId = resolveRecipientLocked(connection, serviceId);
@@ -192,9 +236,60 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
             } catch (SQLException e) {
                 throw new RuntimeException("Failed read recipient store", e);
             }
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
+    @Override
+    public Map<ServiceId, RecipientId> resolveRecipients(final Collection<ServiceId> serviceIds) {
+        final var recipientIds = new HashMap<ServiceId, RecipientId>();
+        final var uncachedServiceIds = new HashSet<ServiceId>();
+        for (final var serviceId : serviceIds) {
+            final var recipientWithAddress = recipientAddressCache.get(serviceId);
+            if (recipientWithAddress != null) {
+                recipientIds.put(serviceId, recipientWithAddress.id());
+            } else {
+                uncachedServiceIds.add(serviceId);
+            }
+        }
+        if (uncachedServiceIds.isEmpty()) {
+            return recipientIds;
+        }
+
+        recipientsLock.lock();
+        try (final var connection = database.getConnection()) {
+            final var acis = uncachedServiceIds.stream().filter(ACI.class::isInstance).toList();
+            final var pnis = uncachedServiceIds.stream().filter(PNI.class::isInstance).toList();
+            final var found = new ArrayList<RecipientWithAddress>();
+            found.addAll(findAllByServiceIds(connection, "r.aci", acis));
+            found.addAll(findAllByServiceIds(connection, "r.pni", pnis));
+            for (final var recipientWithAddress : found) {
+                final var address = recipientWithAddress.address();
+                address.aci().filter(uncachedServiceIds::contains).ifPresent(aci -> {
+                    recipientAddressCache.put(aci, recipientWithAddress);
+                    recipientIds.put(aci, recipientWithAddress.id());
+                });
+                address.pni().filter(uncachedServiceIds::contains).ifPresent(pni -> {
+                    recipientAddressCache.put(pni, recipientWithAddress);
+                    recipientIds.put(pni, recipientWithAddress.id());
+                });
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed read recipient store", e);
+        } finally {
+            recipientsLock.unlock();
+        }
+
+        for (final var serviceId : uncachedServiceIds) {
+            if (!recipientIds.containsKey(serviceId)) {
+                // Unknown recipients still need to be created one by one
+                recipientIds.put(serviceId, resolveRecipient(serviceId));
+            }
+        }
+        return recipientIds;
+    }
+
     /**
      * Should only be used for recipientIds from the database.
      * Where the foreign key relations ensure a valid recipientId.
@@ -258,7 +353,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
     }
 
     public RecipientId resolveRecipient(RecipientAddress address) {
-        synchronized (recipientsLock) {
+        recipientsLock.lock();
+        try {
             final RecipientId recipientId;
             try (final var connection = database.getConnection()) {
                 connection.setAutoCommit(false);
@@ -268,6 +364,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
                 throw new RuntimeException("Failed read recipient store", e);
             }
             return recipientId;
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
@@ -550,8 +648,9 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
 
     public void deleteRecipientData(RecipientId recipientId) {
         logger.debug("Deleting recipient data for {}", recipientId);
-        synchronized (recipientsLock) {
-            recipientAddressCache.entrySet().removeIf(e -> e.getValue().id().equals(recipientId));
+        recipientsLock.lock();
+        try {
+            recipientAddressCache.invalidate(recipientId);
             try (final var connection = database.getConnection()) {
                 connection.setAutoCommit(false);
                 storeContact(connection, recipientId, null);
@@ -563,6 +662,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
             } catch (SQLException e) {
                 throw new RuntimeException("Failed update recipient store", e);
             }
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
@@ -1026,7 +1127,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
 
     private RecipientId resolveRecipientTrusted(RecipientAddress address, boolean isSelf) {
         final Pair<RecipientId, List<RecipientId>> pair;
-        synchronized (recipientsLock) {
+        recipientsLock.lock();
+        try {
             try (final var connection = database.getConnection()) {
                 connection.setAutoCommit(false);
                 pair = resolveRecipientTrustedLocked(connection, address, isSelf);
@@ -1034,6 +1136,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
             } catch (SQLException e) {
                 throw new RuntimeException("Failed update recipient store", e);
             }
+        } finally {
+            recipientsLock.unlock();
         }
 
         if (!pair.second().isEmpty()) {
@@ -1073,8 +1177,11 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
         for (final var toBeMergedRecipientId : toBeMergedRecipientIds) {
             recipientMergeHandler.mergeRecipients(connection, recipientId, toBeMergedRecipientId);
             deleteRecipient(connection, toBeMergedRecipientId);
-            synchronized (recipientsLock) {
-                recipientAddressCache.entrySet().removeIf(e -> e.getValue().id().equals(toBeMergedRecipientId));
+            recipientsLock.lock();
+            try {
+                recipientAddressCache.invalidate(toBeMergedRecipientId);
+            } finally {
+                recipientsLock.unlock();
             }
         }
     }
@@ -1164,8 +1271,9 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
     }
 
     private void removeRecipientAddress(Connection connection, RecipientId recipientId) throws SQLException {
-        synchronized (recipientsLock) {
-            recipientAddressCache.entrySet().removeIf(e -> e.getValue().id().equals(recipientId));
+        recipientsLock.lock();
+        try {
+            recipientAddressCache.invalidate(recipientId);
             final var sql = (
                     """
                     UPDATE %s
@@ -1177,14 +1285,17 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
                 statement.setLong(1, recipientId.id());
                 statement.executeUpdate();
             }
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
     private void updateRecipientAddress(
             Connection connection, RecipientId recipientId, final RecipientAddress address
     ) throws SQLException {
-        synchronized (recipientsLock) {
-            recipientAddressCache.entrySet().removeIf(e -> e.getValue().id().equals(recipientId));
+        recipientsLock.lock();
+        try {
+            recipientAddressCache.invalidate(recipientId);
             final var sql = (
                     """
                     UPDATE %s
@@ -1201,6 +1312,8 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
                 statement.executeUpdate();
             }
             rotateStorageId(connection, recipientId);
+        } finally {
+            recipientsLock.unlock();
         }
     }
 
@@ -1299,6 +1412,34 @@ public class RecipientStore implements RecipientIdCreator, RecipientResolver, Re
         }
     }
 
+    private List<RecipientWithAddress> findAllByServiceIds(
+            final Connection connection, final String column, final List<ServiceId> serviceIds
+    ) throws SQLException {
+        final var recipients = new ArrayList<RecipientWithAddress>();
+        for (var i = 0; i < serviceIds.size(); i += BULK_QUERY_SIZE) {
+            final var chunk = serviceIds.subList(i, Math.min(i + BULK_QUERY_SIZE, serviceIds.size()));
+            final var sql = """
+                            SELECT r._id, r.number, r.aci, r.pni, r.username
+                            FROM %s r
+                            WHERE %s IN (%s)
+                            """.formatted(TABLE_RECIPIENT, column, getQueryParameters(chunk.size()));
+            try (final var statement = connection.prepareStatement(sql)) {
+                for (var j = 0; j < chunk.size(); j++) {
+                    statement.setString(j + 1, chunk.get(j).toString());
+                }
+                try (var result = Utils.executeQueryForStream(statement,
+                        this::getRecipientWithAddressFromResultSet)) {
+                    result.forEach(recipients::add);
+                }
+            }
+        }
+        return recipients;
+    }
+
+    private static String getQueryParameters(final int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
     private Set<RecipientWithAddress> findAllByAddress(
             final Connection connection, final RecipientAddress address
     ) throws SQLException {
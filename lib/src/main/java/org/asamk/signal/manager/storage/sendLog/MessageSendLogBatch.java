@@ -0,0 +1,71 @@
+package org.asamk.signal.manager.storage.sendLog;
+
+import org.whispersystems.signalservice.api.crypto.ContentHint;
+import org.whispersystems.signalservice.api.messages.SendMessageResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the send results of a single message sent to multiple recipients, e.g. a group message.
+ * The results are written to the message send log in a single transaction when the batch is committed, instead of
+ * one transaction per partial send result.
+ */
+public class MessageSendLogBatch {
+
+    private final MessageSendLogStore messageSendLogStore;
+    private final long sentTimestamp;
+    private final ContentHint contentHint;
+    private final boolean urgent;
+    private final boolean sendLogDisabled;
+
+    private final List<SendMessageResult> sendMessageResults = new ArrayList<>();
+    private long contentId = -1;
+
+    MessageSendLogBatch(
+            final MessageSendLogStore messageSendLogStore,
+            final long sentTimestamp,
+            final ContentHint contentHint,
+            final boolean urgent,
+            final boolean sendLogDisabled
+    ) {
+        this.messageSendLogStore = messageSendLogStore;
+        this.sentTimestamp = sentTimestamp;
+        this.contentHint = contentHint;
+        this.urgent = urgent;
+        this.sendLogDisabled = sendLogDisabled;
+    }
+
+    public void add(final SendMessageResult sendMessageResult) {
+        if (sendLogDisabled || !sendMessageResult.isSuccess()) {
+            return;
+        }
+        synchronized (sendMessageResults) {
+            sendMessageResults.add(sendMessageResult);
+        }
+    }
+
+    public void add(final List<SendMessageResult> sendMessageResults) {
+        sendMessageResults.forEach(this::add);
+    }
+
+    /**
+     * Write the results added since the last commit to the message send log.
+     * All results of the batch are added to the same log entry.
+     */
+    public synchronized void commit() {
+        final List<SendMessageResult> results;
+        synchronized (sendMessageResults) {
+            if (sendMessageResults.isEmpty()) {
+                return;
+            }
+            results = List.copyOf(sendMessageResults);
+            sendMessageResults.clear();
+        }
+        if (contentId == -1) {
+            contentId = messageSendLogStore.insertIfPossible(sentTimestamp, results, contentHint, urgent);
+        } else {
+            messageSendLogStore.addRecipientToExistingEntryIfPossible(contentId, results);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.asamk.signal.manager.storage.sendLog;
 
 import org.asamk.signal.manager.api.GroupId;
+import org.asamk.signal.manager.api.MessageSendLogRetention;
 import org.asamk.signal.manager.groups.GroupUtils;
 import org.asamk.signal.manager.storage.Database;
 import org.asamk.signal.manager.storage.Utils;
@@ -21,6 +22,14 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MessageSendLogStore implements AutoCloseable {
 
@@ -29,32 +38,37 @@ public class MessageSendLogStore implements AutoCloseable {
     private static final String TABLE_MESSAGE_SEND_LOG = "message_send_log";
     private static final String TABLE_MESSAGE_SEND_LOG_CONTENT = "message_send_log_content";
 
-    private static final Duration LOG_DURATION = Duration.ofDays(1);
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+    private static final int CLEANUP_CHUNK_SIZE = 500;
 
     private final Database database;
-    private final Thread cleanupThread;
+    private final ExecutorService cleanupExecutor;
+    private final ScheduledFuture<?> cleanupSchedule;
+    // Guarded by this
+    private Future<?> runningCleanup;
+    private boolean closed;
     private final boolean sendLogDisabled;
+    private final MessageSendLogRetention retention;
 
-    public MessageSendLogStore(final Database database, final boolean disableMessageSendLog) {
+    private final AtomicLong prunedEntries = new AtomicLong();
+    private volatile long entryCount = -1;
+
+    public MessageSendLogStore(
+            final Database database,
+            final boolean disableMessageSendLog,
+            final MessageSendLogRetention retention,
+            final ScheduledExecutorService scheduler,
+            final ExecutorService accountExecutor
+    ) {
         this.database = database;
         this.sendLogDisabled = disableMessageSendLog;
-        this.cleanupThread = Thread.ofPlatform().name("msl-cleanup").daemon().start(() -> {
-            try {
-                final var interval = Duration.ofHours(1).toMillis();
-                while (!Thread.interrupted()) {
-                    try (final var connection = database.getConnection()) {
-                        deleteOutdatedEntries(connection);
-                    } catch (SQLException e) {
-                        logger.debug("MSL", e);
-                        logger.warn("Deleting outdated entries failed");
-                        break;
-                    }
-                    Thread.sleep(interval);
-                }
-            } catch (InterruptedException e) {
-                logger.debug("Stopping msl cleanup thread");
-            }
-        });
+        this.retention = retention;
+        // The shared scheduler only triggers the cleanup, the deletion runs on a worker of the account
+        this.cleanupExecutor = accountExecutor;
+        this.cleanupSchedule = scheduler.scheduleWithFixedDelay(this::startCleanup,
+                0,
+                CLEANUP_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
     }
 
     public static void createSql(Connection connection) throws SQLException {
@@ -91,9 +105,11 @@ public class MessageSendLogStore implements AutoCloseable {
                              INNER JOIN %s lc ON l.content_id = lc._id
                         WHERE l.address = ? AND l.device_id = ? AND lc.timestamp = ?
                         """.formatted(TABLE_MESSAGE_SEND_LOG, TABLE_MESSAGE_SEND_LOG_CONTENT);
+        if (timestamp < getOldestRetainedTimestamp()) {
+            // Outdated entries that haven't been removed by the cleanup yet
+            return List.of();
+        }
         try (final var connection = database.getConnection()) {
-            deleteOutdatedEntries(connection);
-
             try (final var statement = connection.prepareStatement(sql)) {
                 statement.setString(1, serviceId.toString());
                 statement.setInt(2, deviceId);
@@ -151,19 +167,14 @@ public class MessageSendLogStore implements AutoCloseable {
         return insert(recipientDevices, sentTimestamp, content, contentHint, urgent);
     }
 
-    public void addRecipientToExistingEntryIfPossible(final long contentId, final SendMessageResult sendMessageResult) {
-        if (sendLogDisabled) {
-            return;
-        }
-        final RecipientDevices recipientDevice = getRecipientDevices(sendMessageResult);
-        if (recipientDevice == null) {
-            return;
-        }
-
-        insertRecipientsForExistingContent(contentId, List.of(recipientDevice));
+    /**
+     * Start a batch for the results of a message that is sent to multiple recipients.
+     */
+    public MessageSendLogBatch startBatch(long sentTimestamp, ContentHint contentHint, boolean urgent) {
+        return new MessageSendLogBatch(this, sentTimestamp, contentHint, urgent, sendLogDisabled);
     }
 
-    public void addRecipientToExistingEntryIfPossible(
+    void addRecipientToExistingEntryIfPossible(
             final long contentId, final List<SendMessageResult> sendMessageResults
     ) {
         if (sendLogDisabled) {
@@ -243,13 +254,31 @@ public class MessageSendLogStore implements AutoCloseable {
         }
     }
 
+    public Statistics getStatistics() {
+        return new Statistics(prunedEntries.get(), entryCount);
+    }
+
+    /**
+     * Waits for a running cleanup, the account executor itself is shared and closed by the account.
+     */
     @Override
     public void close() {
-        cleanupThread.interrupt();
-        try {
-            cleanupThread.join();
-        } catch (InterruptedException ignored) {
+        cleanupSchedule.cancel(false);
+        final Future<?> cleanup;
+        synchronized (this) {
+            closed = true;
+            cleanup = runningCleanup;
         }
+        if (cleanup != null) {
+            try {
+                cleanup.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.debug("Message send log cleanup failed, ignoring: {}", e.getMessage());
+            }
+        }
+        logger.debug("Message send log statistics: {}", getStatistics());
     }
 
     private RecipientDevices getRecipientDevices(final SendMessageResult sendMessageResult) {
@@ -352,18 +381,91 @@ public class MessageSendLogStore implements AutoCloseable {
         }
     }
 
-    private void deleteOutdatedEntries(final Connection connection) throws SQLException {
+    private long getOldestRetainedTimestamp() {
+        return System.currentTimeMillis() - retention.logDuration().toMillis();
+    }
+
+    /**
+     * Delete the entries that are older than the log duration and the oldest entries exceeding the maximum number of
+     * entries.
+     * Entries are deleted in chunks, each in its own transaction, so the cleanup doesn't block sending messages for
+     * long.
+     */
+    private synchronized void startCleanup() {
+        if (closed || (runningCleanup != null && !runningCleanup.isDone())) {
+            return;
+        }
+        try {
+            runningCleanup = cleanupExecutor.submit(this::cleanup);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Account executor has been shut down, skipping message send log cleanup");
+        }
+    }
+
+    private void cleanup() {
+        try {
+            deleteOutdatedEntries();
+        } catch (SQLException e) {
+            logger.debug("MSL", e);
+            logger.warn("Deleting outdated entries failed, retrying later");
+        }
+    }
+
+    private void deleteOutdatedEntries() throws SQLException {
+        var deleted = deleteOldestEntries(getOldestRetainedTimestamp(), Long.MAX_VALUE);
+        if (deleted > 0) {
+            logger.debug("Removed {} outdated entries from the message send log", deleted);
+        }
+
+        var count = countEntries();
+        final var excess = count - retention.maxEntries();
+        if (excess > 0) {
+            final var deletedExcess = deleteOldestEntries(Long.MAX_VALUE, excess);
+            logger.debug("Removed {} entries exceeding the maximum size of the message send log", deletedExcess);
+            deleted += deletedExcess;
+            count -= deletedExcess;
+        }
+
+        prunedEntries.addAndGet(deleted);
+        entryCount = count;
+        logger.trace("Message send log contains {} entries", count);
+    }
+
+    /**
+     * Delete up to maxEntries of the oldest entries before the given timestamp.
+     */
+    private long deleteOldestEntries(final long beforeTimestamp, final long maxEntries) throws SQLException {
         final var sql = """
                         DELETE FROM %s
-                        WHERE timestamp < ?
+                        WHERE _id IN (SELECT _id FROM %s WHERE timestamp < ? ORDER BY timestamp LIMIT ?)
+                        """.formatted(TABLE_MESSAGE_SEND_LOG_CONTENT, TABLE_MESSAGE_SEND_LOG_CONTENT);
+        var deleted = 0L;
+        while (deleted < maxEntries && !Thread.currentThread().isInterrupted()) {
+            final var chunkSize = (int) Math.min(CLEANUP_CHUNK_SIZE, maxEntries - deleted);
+            final int rowCount;
+            try (final var connection = database.getConnection()) {
+                try (final var statement = connection.prepareStatement(sql)) {
+                    statement.setLong(1, beforeTimestamp);
+                    statement.setInt(2, chunkSize);
+                    rowCount = statement.executeUpdate();
+                }
+            }
+            deleted += rowCount;
+            if (rowCount < chunkSize) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    private long countEntries() throws SQLException {
+        final var sql = """
+                        SELECT COUNT(*)
+                        FROM %s
                         """.formatted(TABLE_MESSAGE_SEND_LOG_CONTENT);
-        try (final var statement = connection.prepareStatement(sql)) {
-            statement.setLong(1, System.currentTimeMillis() - LOG_DURATION.toMillis());
-            final var rowCount = statement.executeUpdate();
-            if (rowCount > 0) {
-                logger.debug("Removed {} outdated entries from the message send log", rowCount);
-            } else {
-                logger.trace("No outdated entries to be removed from message send log.");
+        try (final var connection = database.getConnection()) {
+            try (final var statement = connection.prepareStatement(sql)) {
+                return Utils.executeQueryForOptional(statement, resultSet -> resultSet.getLong(1)).orElse(0L);
             }
         }
     }
@@ -393,4 +495,10 @@ public class MessageSendLogStore implements AutoCloseable {
     }
 
     private record RecipientDevices(ServiceId serviceId, List<Integer> deviceIds) {}
+
+    /**
+     * @param prunedEntries Number of entries removed by the cleanup since the store was opened
+     * @param entries       Number of entries after the last cleanup, or -1 if the cleanup hasn't run yet
+     */
+    public record Statistics(long prunedEntries, long entries) {}
 }
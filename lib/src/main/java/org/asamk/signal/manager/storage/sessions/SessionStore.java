@@ -1,6 +1,7 @@
 package org.asamk.signal.manager.storage.sessions;
 
 import org.asamk.signal.manager.api.Pair;
+import org.asamk.signal.manager.storage.BoundedCache;
 import org.asamk.signal.manager.storage.Database;
 import org.asamk.signal.manager.storage.Utils;
 import org.signal.libsignal.protocol.NoSessionException;
@@ -18,18 +19,24 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 public class SessionStore implements SignalServiceSessionStore {
 
     private static final String TABLE_SESSION = "session";
     private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    private static final int CACHE_SIZE = 10_000;
+    // Stay well below SQLite's limit for the number of parameters of a single statement
+    private static final int MAX_ADDRESSES_PER_QUERY = 500;
 
-    private final Map<Key, SessionRecord> cachedSessions = new HashMap<>();
+    private final BoundedCache<Key, SessionRecord> cachedSessions = new BoundedCache<>(CACHE_SIZE);
+    // Incremented on every change of the cached sessions, only written while holding the cachedSessions lock
+    private volatile long cacheVersion;
 
     private final Database database;
     private final int accountIdType;
@@ -71,13 +78,8 @@ public class SessionStore implements SignalServiceSessionStore {
         final var keys = addresses.stream().map(this::getKey).toList();
 
         try (final var connection = database.getConnection()) {
-            final var sessions = new ArrayList<SessionRecord>();
-            for (final var key : keys) {
-                final var sessionRecord = loadSession(connection, key);
-                if (sessionRecord != null) {
-                    sessions.add(sessionRecord);
-                }
-            }
+            final var loadedSessions = loadSessions(connection, keys);
+            final var sessions = keys.stream().map(loadedSessions::get).filter(Objects::nonNull).toList();
 
             if (sessions.size() != addresses.size()) {
                 String message = "Mismatch! Asked for "
@@ -198,25 +200,17 @@ public class SessionStore implements SignalServiceSessionStore {
 
     @Override
     public Map<SignalProtocolAddress, SessionRecord> getAllAddressesWithActiveSessions(final List<String> addressNames) {
-        final var serviceIdsCommaSeparated = addressNames.stream()
-                .map(address -> "'" + address.replaceAll("'", "''") + "'")
-                .collect(Collectors.joining(","));
-        final var sql = (
-                """
-                SELECT s.address, s.device_id, s.record
-                FROM %s AS s
-                WHERE s.account_id_type = ? AND s.address IN (%s)
-                """
-        ).formatted(TABLE_SESSION, serviceIdsCommaSeparated);
         try (final var connection = database.getConnection()) {
-            try (final var statement = connection.prepareStatement(sql)) {
-                statement.setInt(1, accountIdType);
-                return Utils.executeQueryForStream(statement,
-                                res -> new Pair<>(getKeyFromResultSet(res), getSessionRecordFromResultSet(res)))
-                        .filter(pair -> isActive(pair.second()))
-                        .collect(Collectors.toMap(pair -> new SignalProtocolAddress(pair.first().address(),
-                                pair.first().deviceId()), Pair::second));
+            final var sessions = new HashMap<SignalProtocolAddress, SessionRecord>();
+            final var version = cacheVersion;
+            for (final var pair : loadSessionsForAddresses(connection, addressNames)) {
+                final var key = pair.first();
+                final var session = cacheLoadedSession(key, pair.second(), version);
+                if (isActive(session)) {
+                    sessions.put(new SignalProtocolAddress(key.address(), key.deviceId()), session);
+                }
             }
+            return sessions;
         } catch (SQLException e) {
             throw new RuntimeException("Failed read from session store", e);
         }
@@ -279,6 +273,10 @@ public class SessionStore implements SignalServiceSessionStore {
         }
     }
 
+    public BoundedCache.Statistics getCacheStatistics() {
+        return cachedSessions.getStatistics();
+    }
+
     void addLegacySessions(final Collection<Pair<Key, SessionRecord>> sessions) {
         logger.debug("Migrating legacy sessions to database");
         long start = System.nanoTime();
@@ -299,12 +297,11 @@ public class SessionStore implements SignalServiceSessionStore {
     }
 
     private SessionRecord loadSession(Connection connection, final Key key) throws SQLException {
-        synchronized (cachedSessions) {
-            final var session = cachedSessions.get(key);
-            if (session != null) {
-                return session;
-            }
+        final var cachedSession = cachedSessions.get(key);
+        if (cachedSession != null) {
+            return cachedSession;
         }
+        final var version = cacheVersion;
         final var sql = (
                 """
                 SELECT s.record
@@ -316,8 +313,87 @@ public class SessionStore implements SignalServiceSessionStore {
             statement.setInt(1, accountIdType);
             statement.setString(2, key.address());
             statement.setInt(3, key.deviceId());
-            return Utils.executeQueryForOptional(statement, this::getSessionRecordFromResultSet).orElse(null);
+            final var session = Utils.executeQueryForOptional(statement, this::getSessionRecordFromResultSet)
+                    .orElse(null);
+            return session == null ? null : cacheLoadedSession(key, session, version);
+        }
+    }
+
+    /**
+     * Loads the sessions for the given keys, using the cache where possible and fetching the missing sessions with
+     * as few queries as possible.
+     */
+    private Map<Key, SessionRecord> loadSessions(
+            final Connection connection, final Collection<Key> keys
+    ) throws SQLException {
+        final var sessions = new HashMap<Key, SessionRecord>();
+        final var missingKeys = new HashSet<Key>();
+        for (final var key : keys) {
+            final var session = cachedSessions.get(key);
+            if (session != null) {
+                sessions.put(key, session);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return sessions;
+        }
+
+        final var version = cacheVersion;
+        final var addresses = missingKeys.stream().map(Key::address).distinct().toList();
+        for (final var pair : loadSessionsForAddresses(connection, addresses)) {
+            final var key = pair.first();
+            if (missingKeys.contains(key)) {
+                sessions.put(key, cacheLoadedSession(key, pair.second(), version));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Adds a session read from the database to the cache, unless the cached sessions were changed since the read
+     * started. Otherwise a concurrent read could replace a newer stored session with the previous record, or bring back
+     * a deleted session.
+     *
+     * @param version the cache version from before the session was read
+     * @return the session that should be used, which may be a newer session from the cache
+     */
+    private SessionRecord cacheLoadedSession(final Key key, final SessionRecord session, final long version) {
+        synchronized (cachedSessions) {
+            if (cacheVersion != version) {
+                return session;
+            }
+            final var cachedSession = cachedSessions.putIfAbsent(key, session);
+            return cachedSession == null ? session : cachedSession;
+        }
+    }
+
+    private List<Pair<Key, SessionRecord>> loadSessionsForAddresses(
+            final Connection connection, final List<String> addresses
+    ) throws SQLException {
+        final var sessions = new ArrayList<Pair<Key, SessionRecord>>();
+        for (var i = 0; i < addresses.size(); i += MAX_ADDRESSES_PER_QUERY) {
+            final var chunk = addresses.subList(i, Math.min(i + MAX_ADDRESSES_PER_QUERY, addresses.size()));
+            final var sql = (
+                    """
+                    SELECT s.address, s.device_id, s.record
+                    FROM %s AS s
+                    WHERE s.account_id_type = ? AND s.address IN (%s)
+                    """
+            ).formatted(TABLE_SESSION, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            try (final var statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, accountIdType);
+                for (var j = 0; j < chunk.size(); j++) {
+                    statement.setString(j + 2, chunk.get(j));
+                }
+                Utils.executeQueryForStream(statement,
+                                res -> new Pair<>(getKeyFromResultSet(res), getSessionRecordFromResultSet(res)))
+                        .filter(pair -> pair.second() != null)
+                        .forEach(sessions::add);
+            }
         }
+        return sessions;
     }
 
     private Key getKeyFromResultSet(ResultSet resultSet) throws SQLException {
@@ -340,6 +416,7 @@ public class SessionStore implements SignalServiceSessionStore {
             final Connection connection, final Key key, final SessionRecord session
     ) throws SQLException {
         synchronized (cachedSessions) {
+            cacheVersion++;
             cachedSessions.put(key, session);
         }
 
@@ -358,7 +435,8 @@ public class SessionStore implements SignalServiceSessionStore {
 
     private void deleteAllSessions(final Connection connection, final String address) throws SQLException {
         synchronized (cachedSessions) {
-            cachedSessions.clear();
+            cacheVersion++;
+            cachedSessions.removeIf(key -> key.address().equals(address));
         }
 
         final var sql = (
@@ -376,6 +454,7 @@ public class SessionStore implements SignalServiceSessionStore {
 
     private void deleteSession(Connection connection, final Key key) throws SQLException {
         synchronized (cachedSessions) {
+            cacheVersion++;
             cachedSessions.remove(key);
         }
 
@@ -0,0 +1,250 @@
+package org.asamk.signal.manager.internal;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.asamk.signal.manager.ManagerRuntime;
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.helper.Context;
+import org.asamk.signal.manager.jobs.DownloadProfileAvatarJob;
+import org.asamk.signal.manager.jobs.Job;
+import org.asamk.signal.manager.jobs.PersistentJob;
+import org.asamk.signal.manager.storage.Database;
+import org.asamk.signal.manager.storage.jobs.JobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobExecutorTest {
+
+    @TempDir
+    File tempDir;
+
+    private ManagerRuntime runtime;
+    private Database database;
+    private JobStore jobStore;
+    private final List<String> ranJobs = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        runtime = new ManagerRuntime(1, 1, false);
+        database = Database.initDatabase(new File(tempDir, "jobs.db"), DatabaseProfile.DEFAULT, TestDatabase::new);
+        jobStore = new JobStore(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+        runtime.close();
+    }
+
+    @Test
+    void waitingJobsRunByPriority() throws InterruptedException {
+        final var blocker = new BlockingJob();
+        final var executor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        executor.enqueueJob(blocker);
+        blocker.awaitStarted();
+
+        executor.enqueueJob(new RecordingJob(null, "low", Job.Priority.LOW));
+        executor.enqueueJob(new RecordingJob(null, "normal", Job.Priority.NORMAL));
+        executor.enqueueJob(new RecordingJob(null, "high", Job.Priority.HIGH));
+        blocker.release();
+        executor.close();
+
+        assertEquals(List.of("high", "normal", "low"), ranJobs);
+    }
+
+    @Test
+    void equalJobReplacesWaitingJob() throws InterruptedException {
+        final var blocker = new BlockingJob();
+        final var executor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        executor.enqueueJob(blocker);
+        blocker.awaitStarted();
+
+        executor.enqueueJob(new RecordingJob("key", "first", Job.Priority.NORMAL));
+        executor.enqueueJob(new RecordingJob(null, "other", Job.Priority.NORMAL));
+        executor.enqueueJob(new RecordingJob("key", "second", Job.Priority.NORMAL));
+        blocker.release();
+        executor.close();
+
+        // The newer job keeps the place of the replaced one in the queue
+        assertEquals(List.of("second", "other"), ranJobs);
+    }
+
+    @Test
+    void equalPersistentJobReplacesStoredData() {
+        final var executor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        executor.enqueueJob(new DownloadProfileAvatarJob("old-avatar"), Duration.ofHours(1));
+        executor.enqueueJob(new DownloadProfileAvatarJob("new-avatar"), Duration.ofHours(1));
+        executor.close();
+
+        final var storedJobs = jobStore.getJobs();
+        assertEquals(1, storedJobs.size());
+        assertEquals("new-avatar", storedJobs.getFirst().data());
+    }
+
+    @Test
+    void waitingPersistentJobsAreResumed() {
+        final var executor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        executor.enqueueJob(new DownloadProfileAvatarJob("avatar"), Duration.ofHours(1));
+        executor.close();
+
+        final var resumedExecutor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        resumedExecutor.resumePersistedJobs();
+        // The resumed job is still delayed, so it's not run but kept stored when closing
+        resumedExecutor.close();
+
+        assertEquals(1, jobStore.getJobs().size());
+    }
+
+    @Test
+    void finishedJobKeepsStoredEntryOfRunningEqualJob() throws InterruptedException {
+        runtime.close();
+        runtime = new ManagerRuntime(2, 2, false);
+        final var executor = new JobExecutor(null, runtime, runtime.newAccountExecutor(), () -> jobStore);
+        final var oldJob = new BlockingPersistentJob("old");
+        executor.enqueueJob(oldJob);
+        oldJob.awaitStarted();
+        final var newJob = new BlockingPersistentJob("new");
+        executor.enqueueJob(newJob);
+        newJob.awaitStarted();
+
+        // Only runs once the old job has finished and freed its slot
+        final var nextJob = new BlockingJob();
+        executor.enqueueJob(nextJob);
+        oldJob.release();
+        nextJob.awaitStarted();
+
+        final var storedJobs = jobStore.getJobs();
+        assertEquals(1, storedJobs.size());
+        assertEquals("new", storedJobs.getFirst().data());
+
+        newJob.release();
+        nextJob.release();
+        executor.close();
+        assertEquals(List.of(), jobStore.getJobs());
+    }
+
+    private final class RecordingJob implements Job {
+
+        private final String key;
+        private final String name;
+        private final Priority priority;
+
+        private RecordingJob(final String key, final String name, final Priority priority) {
+            this.key = key;
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run(final Context context) {
+            ranJobs.add(name);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+    }
+
+    private static final class BlockingJob implements Job {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void run(final Context context) {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+
+    private static final class BlockingPersistentJob implements PersistentJob {
+
+        private final String data;
+        private final BlockingJob blocker = new BlockingJob();
+
+        private BlockingPersistentJob(final String data) {
+            this.data = data;
+        }
+
+        @Override
+        public void run(final Context context) {
+            blocker.run(context);
+        }
+
+        @Override
+        public String getKey() {
+            return "blocking";
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return 2;
+        }
+
+        @Override
+        public String getType() {
+            return "blocking";
+        }
+
+        @Override
+        public String serialize() {
+            return data;
+        }
+
+        void awaitStarted() throws InterruptedException {
+            blocker.awaitStarted();
+        }
+
+        void release() {
+            blocker.release();
+        }
+    }
+
+    private static final class TestDatabase extends Database {
+
+        private TestDatabase(final HikariDataSource dataSource) {
+            super(LoggerFactory.getLogger(TestDatabase.class), 1, dataSource);
+        }
+
+        @Override
+        protected void createDatabase(final Connection connection) throws SQLException {
+            JobStore.createSql(connection);
+        }
+
+        @Override
+        protected void upgradeDatabase(final Connection connection, final long oldVersion) {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.asamk.signal.manager.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionLockManagerTest {
+
+    @Test
+    void differentRecipientsDontBlockEachOther() throws InterruptedException {
+        final var sessionLock = new SessionLockManager();
+        final var acquired = new CountDownLatch(1);
+
+        try (final var ignored = sessionLock.openScope(List.of("a")); final var ignored2 = sessionLock.acquire()) {
+            runInThread(() -> lockSessions(sessionLock, "b", false, acquired));
+            assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void ownSessionsAreLockedUntilTheSessionLockIsReleased() throws InterruptedException {
+        final var sessionLock = new SessionLockManager();
+        final var acquired = new CountDownLatch(1);
+
+        final Thread thread;
+        try (final var ignored = sessionLock.openScope(List.of("a")); final var ignored2 = sessionLock.acquire()) {
+            try (final var ignored3 = sessionLock.acquire()) {
+                sessionLock.lockOwnSessions();
+            }
+            thread = runInThread(() -> lockSessions(sessionLock, "b", true, acquired));
+            // Still locked after the nested acquisition was released
+            assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        thread.join();
+    }
+
+    @Test
+    void lockOwnSessionsWithoutSessionLockDoesNothing() throws InterruptedException {
+        final var sessionLock = new SessionLockManager();
+        final var acquired = new CountDownLatch(1);
+
+        sessionLock.lockOwnSessions();
+        runInThread(() -> lockSessions(sessionLock, "b", true, acquired));
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void lockSessions(
+            final SessionLockManager sessionLock,
+            final String recipient,
+            final boolean ownSessions,
+            final CountDownLatch acquired
+    ) {
+        try (final var ignored = sessionLock.openScope(List.of(recipient))) {
+            try (final var ignored2 = sessionLock.acquire()) {
+                if (ownSessions) {
+                    sessionLock.lockOwnSessions();
+                }
+                acquired.countDown();
+            }
+        }
+    }
+
+    private static Thread runInThread(final Runnable runnable) {
+        return Thread.ofPlatform().daemon().start(runnable);
+    }
+}
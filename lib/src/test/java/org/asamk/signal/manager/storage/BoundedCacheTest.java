@@ -0,0 +1,97 @@
+package org.asamk.signal.manager.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCacheTest {
+
+    @Test
+    void getReturnsStoredValue() {
+        final var cache = new BoundedCache<String, Integer>(10);
+        cache.put("a", 1);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+
+        final var statistics = cache.getStatistics();
+        assertEquals(1, statistics.hits());
+        assertEquals(1, statistics.misses());
+    }
+
+    @Test
+    void sizeStaysBounded() {
+        final var cache = new BoundedCache<Integer, Integer>(100);
+        for (var i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.getStatistics().evictions());
+    }
+
+    @Test
+    void evictionListenerIsCalledForEvictedEntries() {
+        final var evicted = new HashSet<Integer>();
+        final var cache = new BoundedCache<Integer, Integer>(100, (key, value) -> evicted.add(key));
+        for (var i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        cache.remove(999);
+
+        assertEquals(cache.getStatistics().evictions(), evicted.size());
+        for (final var key : evicted) {
+            assertNull(cache.get(key));
+        }
+        assertFalse(evicted.contains(999));
+    }
+
+    @Test
+    void recentlyUsedEntriesAreKept() {
+        final var cache = new BoundedCache<Integer, Integer>(100);
+        for (var i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        for (var i = 0; i < 10; i++) {
+            cache.get(i);
+        }
+        cache.put(100, 100);
+
+        for (var i = 0; i < 10; i++) {
+            assertEquals(i, cache.get(i));
+        }
+        assertEquals(100, cache.get(100));
+        assertNull(cache.get(10));
+    }
+
+    @Test
+    void putIfAbsentKeepsExistingValue() {
+        final var cache = new BoundedCache<String, Integer>(10);
+        cache.put("a", 1);
+
+        assertEquals(1, cache.putIfAbsent("a", 2));
+        assertNull(cache.putIfAbsent("b", 3));
+
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("b"));
+    }
+
+    @Test
+    void removeIfOnlyRemovesMatchingEntries() {
+        final var cache = new BoundedCache<String, Integer>(10);
+        cache.put("a1", 1);
+        cache.put("a2", 2);
+        cache.put("b1", 3);
+
+        cache.removeIf(key -> key.startsWith("a"));
+
+        assertNull(cache.get("a1"));
+        assertNull(cache.get("a2"));
+        assertEquals(3, cache.get("b1"));
+    }
+}
@@ -0,0 +1,105 @@
+package org.asamk.signal.manager.storage.jobs;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.storage.Database;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    private Database database;
+    private JobStore jobStore;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = Database.initDatabase(new File(tempDir, "jobs.db"), DatabaseProfile.DEFAULT, TestDatabase::new);
+        jobStore = new JobStore(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void jobsAreReturnedInTheOrderTheyWereAdded() {
+        final var generationB = jobStore.addJob("b", "type", "data b", 0);
+        final var generationA = jobStore.addJob("a", "type", "data a", 1000);
+
+        assertEquals(List.of(new JobStore.StoredJob("b", "type", "data b", 0, 0, generationB),
+                new JobStore.StoredJob("a", "type", "data a", 0, 1000, generationA)), jobStore.getJobs());
+    }
+
+    @Test
+    void addingJobReplacesStoredJobWithSameKey() {
+        final var oldGeneration = jobStore.addJob("key", "type", "old", 0);
+        jobStore.updateJobAttempts("key", oldGeneration, 3, 5000);
+        final var newGeneration = jobStore.addJob("key", "type", "new", 1000);
+
+        assertTrue(newGeneration > oldGeneration);
+        assertEquals(List.of(new JobStore.StoredJob("key", "type", "new", 0, 1000, newGeneration)),
+                jobStore.getJobs());
+    }
+
+    @Test
+    void updatingJobDataKeepsAttempts() {
+        final var generation = jobStore.addJob("key", "type", "old", 0);
+        jobStore.updateJobAttempts("key", generation, 2, 5000);
+        jobStore.updateJobData("key", "type", "new");
+
+        assertEquals(List.of(new JobStore.StoredJob("key", "type", "new", 2, 5000, generation)), jobStore.getJobs());
+    }
+
+    @Test
+    void deletedJobIsRemoved() {
+        final var generationA = jobStore.addJob("a", "type", "data a", 0);
+        final var generationB = jobStore.addJob("b", "type", "data b", 0);
+        jobStore.deleteJob("a", generationA);
+
+        assertEquals(List.of(new JobStore.StoredJob("b", "type", "data b", 0, 0, generationB)), jobStore.getJobs());
+    }
+
+    @Test
+    void replacedJobIsNeitherUpdatedNorDeleted() {
+        final var oldGeneration = jobStore.addJob("key", "type", "old", 0);
+        final var newGeneration = jobStore.addJob("key", "type", "new", 0);
+
+        assertFalse(jobStore.updateJobAttempts("key", oldGeneration, 3, 5000));
+        jobStore.deleteJob("key", oldGeneration);
+
+        assertEquals(List.of(new JobStore.StoredJob("key", "type", "new", 0, 0, newGeneration)), jobStore.getJobs());
+    }
+
+    private static final class TestDatabase extends Database {
+
+        private TestDatabase(final HikariDataSource dataSource) {
+            super(LoggerFactory.getLogger(TestDatabase.class), 1, dataSource);
+        }
+
+        @Override
+        protected void createDatabase(final Connection connection) throws SQLException {
+            JobStore.createSql(connection);
+        }
+
+        @Override
+        protected void upgradeDatabase(final Connection connection, final long oldVersion) {
+        }
+    }
+}
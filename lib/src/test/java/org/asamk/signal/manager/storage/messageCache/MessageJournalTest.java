@@ -0,0 +1,141 @@
+package org.asamk.signal.manager.storage.messageCache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageJournalTest {
+
+    private static final long MAX_SEGMENT_SIZE = 1024;
+
+    @TempDir
+    File journalPath;
+
+    @Test
+    void readReturnsAppendedPayload() throws IOException {
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            final var id = journal.append(1, payload("a"));
+
+            assertArrayEquals(payload("a"), journal.read(id));
+            assertEquals(List.of(id), journal.getEntryIds(1));
+
+            journal.delete(id);
+            assertNull(journal.read(id));
+            assertEquals(List.of(), journal.getEntryIds());
+        }
+    }
+
+    @Test
+    void entriesAreRestoredAfterReopening() throws IOException {
+        final long keptId;
+        final long deletedId;
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            keptId = journal.append(1, payload("kept"));
+            deletedId = journal.append(1, payload("deleted"));
+            journal.setRecipient(keptId, 2);
+            journal.delete(deletedId);
+        }
+
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            assertEquals(List.of(keptId), journal.getEntryIds());
+            assertEquals(List.of(keptId), journal.getEntryIds(2));
+            assertArrayEquals(payload("kept"), journal.read(keptId));
+            assertNull(journal.read(deletedId));
+            assertTrue(journal.append(1, payload("new")) > deletedId);
+        }
+    }
+
+    @Test
+    void diskUsageStaysBoundedWithLongLivedEntries() throws IOException {
+        final var longLivedIds = new ArrayList<Long>();
+        try (final var journal = new MessageJournal(journalPath, 4 * MAX_SEGMENT_SIZE)) {
+            // More live entries in the oldest segment than can be copied cheaply
+            for (var i = 0; i < 100; i++) {
+                longLivedIds.add(journal.append(1, payload(String.valueOf(i))));
+            }
+            for (var i = 0; i < 3000; i++) {
+                journal.delete(journal.append(1, payload("message " + i)));
+            }
+
+            assertTrue(getSegmentCount() <= 3, "Too many segments: " + getSegmentCount());
+        }
+
+        try (final var journal = new MessageJournal(journalPath, 4 * MAX_SEGMENT_SIZE)) {
+            assertEquals(longLivedIds, journal.getEntryIds());
+            for (var i = 0; i < 100; i++) {
+                assertArrayEquals(payload(String.valueOf(i)), journal.read(longLivedIds.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void liveEntriesAreKeptWhenCompacting() throws IOException {
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            for (var i = 0; i < 500; i++) {
+                final var id = journal.append(i % 3, payload("message " + i));
+                if (i % 4 != 0) {
+                    journal.delete(id);
+                }
+            }
+        }
+
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            final var ids = journal.getEntryIds();
+            assertEquals(125, ids.size());
+            for (var i = 0; i < 500; i += 4) {
+                final var id = ids.get(i / 4);
+                assertArrayEquals(payload("message " + i), journal.read(id));
+                assertTrue(journal.getEntryIds(i % 3).contains(id));
+            }
+        }
+    }
+
+    @Test
+    void readsDontFailWhileEntriesAreCompacted() throws Exception {
+        try (final var journal = new MessageJournal(journalPath, MAX_SEGMENT_SIZE)) {
+            final var longLivedId = journal.append(1, payload("long lived"));
+            final var running = new AtomicBoolean(true);
+            final var failure = new AtomicReference<Throwable>();
+            final var reader = Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    try {
+                        assertArrayEquals(payload("long lived"), journal.read(longLivedId));
+                    } catch (Throwable e) {
+                        failure.set(e);
+                        return;
+                    }
+                }
+            });
+            try {
+                for (var i = 0; i < 5000; i++) {
+                    journal.delete(journal.append(1, payload("message " + i)));
+                }
+            } finally {
+                running.set(false);
+                reader.join();
+            }
+            assertNull(failure.get());
+        }
+    }
+
+    private int getSegmentCount() {
+        return Objects.requireNonNull(journalPath.listFiles()).length;
+    }
+
+    private static byte[] payload(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
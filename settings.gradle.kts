@@ -20,9 +20,13 @@ dependencyResolutionManagement {
             library("hikari", "com.zaxxer", "HikariCP").version("5.1.0")
             library("junit.jupiter", "org.junit.jupiter", "junit-jupiter").version("5.10.1")
             library("junit.launcher", "org.junit.platform", "junit-platform-launcher").version("1.10.1")
+            version("jmh", "1.37")
+            library("jmh.core", "org.openjdk.jmh", "jmh-core").versionRef("jmh")
+            library("jmh.annprocess", "org.openjdk.jmh", "jmh-generator-annprocess").versionRef("jmh")
         }
     }
 }
 
 rootProject.name = "signal-cli"
 include("lib")
+include("benchmark")
@@ -17,16 +17,21 @@ import org.asamk.signal.commands.exceptions.IOErrorException;
 import org.asamk.signal.commands.exceptions.UnexpectedErrorException;
 import org.asamk.signal.commands.exceptions.UserErrorException;
 import org.asamk.signal.manager.Manager;
+import org.asamk.signal.manager.ManagerRuntime;
 import org.asamk.signal.manager.RegistrationManager;
 import org.asamk.signal.manager.Settings;
 import org.asamk.signal.manager.SignalAccountFiles;
 import org.asamk.signal.manager.api.AccountCheckException;
+import org.asamk.signal.manager.api.AccountHibernation;
+import org.asamk.signal.manager.api.DatabaseProfile;
+import org.asamk.signal.manager.api.MessageSendLogRetention;
 import org.asamk.signal.manager.api.NotRegisteredException;
 import org.asamk.signal.manager.api.ServiceEnvironment;
 import org.asamk.signal.manager.api.TrustNewIdentity;
 import org.asamk.signal.output.JsonWriterImpl;
 import org.asamk.signal.output.OutputWriter;
 import org.asamk.signal.output.PlainTextWriterImpl;
+import org.asamk.signal.util.DaemonExecutors;
 import org.asamk.signal.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +40,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.time.Duration;
 import java.util.Set;
 
 import static net.sourceforge.argparse4j.DefaultSettings.VERSION_0_9_0_DEFAULT_SETTINGS;
@@ -95,6 +101,52 @@ public class App {
                 .help("Disable message send log (for resending messages that recipient couldn't decrypt)")
                 .action(Arguments.storeTrue());
 
+        parser.addArgument("--send-log-retention")
+                .type(long.class)
+                .setDefault(MessageSendLogRetention.DEFAULT.logDuration().toSeconds())
+                .help("Number of seconds sent messages are kept in the message send log for resending them.");
+
+        parser.addArgument("--send-log-max-entries")
+                .type(int.class)
+                .setDefault(MessageSendLogRetention.DEFAULT.maxEntries())
+                .help("Maximum number of sent messages kept in the message send log.");
+
+        parser.addArgument("--database-profile")
+                .help("Choose the performance profile of the account database.")
+                .type(Arguments.enumStringType(DatabaseProfileCli.class))
+                .setDefault(DatabaseProfileCli.DEFAULT);
+
+        parser.addArgument("--virtual-threads")
+                .help("Use virtual threads for background tasks and for handling daemon connections and requests.")
+                .action(Arguments.storeTrue());
+
+        parser.addArgument("--send-parallelism")
+                .type(int.class)
+                .setDefault(Settings.DEFAULT_SEND_PARALLELISM)
+                .help("Maximum number of recipients a message is sent to concurrently.");
+
+        parser.addArgument("--worker-threads")
+                .type(int.class)
+                .setDefault(ManagerRuntime.DEFAULT_WORKER_THREADS)
+                .help("Maximum number of threads for background tasks, shared by all accounts.");
+
+        parser.addArgument("--account-worker-threads")
+                .type(int.class)
+                .setDefault(ManagerRuntime.DEFAULT_WORKER_THREADS_PER_ACCOUNT)
+                .help("Maximum number of background task threads a single account can use at once.");
+
+        parser.addArgument("--hibernate-after")
+                .type(long.class)
+                .setDefault(0L)
+                .help("Only open accounts when they are used and close them after this many seconds of inactivity "
+                        + "(multi-account mode only).");
+
+        parser.addArgument("--hibernate-wake-interval")
+                .type(long.class)
+                .setDefault(AccountHibernation.DEFAULT_WAKE_INTERVAL.toSeconds())
+                .help("Interval in seconds in which hibernated accounts are opened to receive queued messages, "
+                        + "0 to only open them when they are used.");
+
         var subparsers = parser.addSubparsers().title("subcommands").dest("command");
 
         Commands.getCommandSubparserAttachers().forEach((key, value) -> {
@@ -117,6 +169,8 @@ public class App {
             throw new UserErrorException("Command not implemented!");
         }
 
+        DaemonExecutors.setVirtualThreads(Boolean.TRUE.equals(ns.getBoolean("virtual-threads")));
+
         final var outputWriter = getOutputWriter(command);
         final var commandHandler = new CommandHandler(ns, outputWriter);
 
@@ -134,9 +188,12 @@ public class App {
             throw new UserErrorException("Missing required native library dependency: libsignal-client");
         }
 
-        final var signalAccountFiles = loadSignalAccountFiles();
+        // The runtime's threads are shared by all accounts, they're stopped once the command has closed its managers
+        try (final var runtime = createManagerRuntime()) {
+            final var signalAccountFiles = loadSignalAccountFiles(runtime);
 
-        handleCommand(command, commandHandler, account, signalAccountFiles);
+            handleCommand(command, commandHandler, account, signalAccountFiles);
+        }
     }
 
     private void handleCommand(
@@ -210,7 +267,18 @@ public class App {
         return outputWriter;
     }
 
-    private SignalAccountFiles loadSignalAccountFiles() throws IOErrorException {
+    private ManagerRuntime createManagerRuntime() throws UserErrorException {
+        final int workerThreads = ns.getInt("worker-threads");
+        final int accountWorkerThreads = ns.getInt("account-worker-threads");
+        if (workerThreads < 1 || accountWorkerThreads < 1) {
+            throw new UserErrorException("Number of worker threads must be at least 1");
+        }
+        return new ManagerRuntime(workerThreads, accountWorkerThreads, DaemonExecutors.isVirtualThreads());
+    }
+
+    private SignalAccountFiles loadSignalAccountFiles(
+            final ManagerRuntime runtime
+    ) throws IOErrorException, UserErrorException {
         final File configPath;
         final var config = ns.getString("config");
         if (config != null) {
@@ -230,12 +298,33 @@ public class App {
                 : trustNewIdentityCli == TrustNewIdentityCli.ALWAYS ? TrustNewIdentity.ALWAYS : TrustNewIdentity.NEVER;
 
         final var disableSendLog = Boolean.TRUE.equals(ns.getBoolean("disable-send-log"));
+        final long sendLogRetention = ns.getLong("send-log-retention");
+        final int sendLogMaxEntries = ns.getInt("send-log-max-entries");
+        if (sendLogRetention < 1 || sendLogMaxEntries < 1) {
+            throw new UserErrorException("Message send log retention and maximum entries must be at least 1");
+        }
+
+        final var databaseProfileCli = ns.<DatabaseProfileCli>get("database-profile");
+        final var databaseProfile = databaseProfileCli == DatabaseProfileCli.PERFORMANCE
+                ? DatabaseProfile.PERFORMANCE
+                : DatabaseProfile.DEFAULT;
+
+        final int sendParallelism = ns.getInt("send-parallelism");
+        if (sendParallelism < 1) {
+            throw new UserErrorException("Send parallelism must be at least 1");
+        }
 
         try {
             return new SignalAccountFiles(configPath,
                     serviceEnvironment,
                     BaseConfig.USER_AGENT,
-                    new Settings(trustNewIdentity, disableSendLog));
+                    new Settings(trustNewIdentity,
+                            disableSendLog,
+                            databaseProfile,
+                            DaemonExecutors.isVirtualThreads(),
+                            sendParallelism,
+                            new MessageSendLogRetention(Duration.ofSeconds(sendLogRetention), sendLogMaxEntries),
+                            runtime));
         } catch (IOException e) {
             throw new IOErrorException("Failed to read local accounts list", e);
         }
@@ -279,13 +368,22 @@ public class App {
             final SignalAccountFiles signalAccountFiles,
             final CommandHandler commandHandler
     ) throws CommandException {
-        try (var multiAccountManager = signalAccountFiles.initMultiAccountManager()) {
+        try (var multiAccountManager = signalAccountFiles.initMultiAccountManager(getAccountHibernation())) {
             commandHandler.handleMultiLocalCommand(command, multiAccountManager);
         } catch (IOException e) {
             throw new IOErrorException("Failed to load local accounts file", e);
         }
     }
 
+    private AccountHibernation getAccountHibernation() throws UserErrorException {
+        final long idleTimeout = ns.getLong("hibernate-after");
+        final long wakeInterval = ns.getLong("hibernate-wake-interval");
+        if (idleTimeout < 0 || wakeInterval < 0) {
+            throw new UserErrorException("Hibernation intervals must not be negative");
+        }
+        return new AccountHibernation(Duration.ofSeconds(idleTimeout), Duration.ofSeconds(wakeInterval));
+    }
+
     private RegistrationManager loadRegistrationManager(
             final String account, final SignalAccountFiles signalAccountFiles
     ) throws UnexpectedErrorException {
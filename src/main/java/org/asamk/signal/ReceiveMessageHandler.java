@@ -15,7 +15,7 @@ import org.slf4j.helpers.MessageFormatter;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 
-public class ReceiveMessageHandler implements Manager.ReceiveMessageHandler {
+public class ReceiveMessageHandler implements Manager.ReceiveMessageHandler, Manager.AttachmentDownloadListener {
 
     final Manager m;
     final PlainTextWriter writer;
@@ -32,6 +32,18 @@ public class ReceiveMessageHandler implements Manager.ReceiveMessageHandler {
         }
     }
 
+    @Override
+    public void handleAttachmentDownload(final String id, final boolean success) {
+        synchronized (writer) {
+            if (success) {
+                writer.println("Downloaded attachment {} of {}", id, m.getSelfNumber());
+            } else {
+                writer.println("Failed to download attachment {} of {}", id, m.getSelfNumber());
+            }
+            writer.println();
+        }
+    }
+
     private void handleMessageInternal(MessageEnvelope envelope, Throwable exception) {
         var source = envelope.sourceAddress();
         writer.println("Envelope from: {} (device: {}) to {}",
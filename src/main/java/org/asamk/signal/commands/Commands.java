@@ -16,6 +16,7 @@ public class Commands {
         addCommand(new DeleteLocalAccountDataCommand());
         addCommand(new FinishChangeNumberCommand());
         addCommand(new FinishLinkCommand());
+        addCommand(new GetAccountStatisticsCommand());
         addCommand(new GetAttachmentCommand());
         addCommand(new GetUserStatusCommand());
         addCommand(new AddStickerPackCommand());
@@ -9,13 +9,17 @@ import org.asamk.signal.ReceiveMessageHandler;
 import org.asamk.signal.Shutdown;
 import org.asamk.signal.commands.exceptions.CommandException;
 import org.asamk.signal.commands.exceptions.IOErrorException;
+import org.asamk.signal.commands.exceptions.UserErrorException;
 import org.asamk.signal.dbus.DbusHandler;
 import org.asamk.signal.http.HttpServerHandler;
 import org.asamk.signal.json.JsonReceiveMessageHandler;
 import org.asamk.signal.jsonrpc.SocketHandler;
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
+import org.asamk.signal.manager.api.DeliveryOrder;
+import org.asamk.signal.manager.api.ReceiveConfig;
 import org.asamk.signal.output.JsonWriter;
+import org.asamk.signal.output.OutputQueue;
 import org.asamk.signal.output.OutputWriter;
 import org.asamk.signal.output.PlainTextWriter;
 import org.asamk.signal.util.IOUtils;
@@ -63,6 +67,14 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
                 .nargs("?")
                 .setConst("localhost:8080")
                 .help("Expose a JSON-RPC interface as http endpoint (default localhost:8080).");
+        subparser.addArgument("--client-queue-size")
+                .type(int.class)
+                .setDefault(OutputQueue.Config.DEFAULT.capacity())
+                .help("Maximum number of queued output messages for each JSON-RPC and http events client.");
+        subparser.addArgument("--client-overflow-policy")
+                .help("Specify what happens to the output of a client once its queue is full (default spill).")
+                .type(Arguments.enumStringType(OutputQueue.OverflowPolicy.class))
+                .setDefault(OutputQueue.Config.DEFAULT.overflowPolicy());
         subparser.addArgument("--no-receive-stdout")
                 .help("Don’t print received messages to stdout.")
                 .action(Arguments.storeTrue());
@@ -79,6 +91,14 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
         subparser.addArgument("--send-read-receipts")
                 .help("Send read receipts for all incoming data messages (in addition to the default delivery receipts)")
                 .action(Arguments.storeTrue());
+        subparser.addArgument("--decrypt-parallelism")
+                .type(int.class)
+                .setDefault(ReceiveConfig.DEFAULT_DECRYPT_PARALLELISM)
+                .help("Maximum number of senders whose received messages are decrypted concurrently.");
+        subparser.addArgument("--delivery-order")
+                .help("Specify the order in which received messages are output.")
+                .type(Arguments.enumStringType(DeliveryOrder.class))
+                .setDefault(DeliveryOrder.SERVER);
     }
 
     @Override
@@ -99,7 +119,7 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
         m.setReceiveConfig(receiveConfig);
         addDefaultReceiveHandler(m, noReceiveStdOut ? null : outputWriter, receiveMode != ReceiveMode.ON_START);
 
-        try (final var daemonHandler = new SingleAccountDaemonHandler(m, receiveMode)) {
+        try (final var daemonHandler = new SingleAccountDaemonHandler(m, receiveMode, getOutputQueueConfig(ns))) {
             setup(ns, daemonHandler);
 
             m.addClosedListener(Shutdown::triggerShutdown);
@@ -129,7 +149,7 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
             addDefaultReceiveHandler(m, noReceiveStdOut ? null : outputWriter, receiveMode != ReceiveMode.ON_START);
         });
 
-        try (final var daemonHandler = new MultiAccountDaemonHandler(c, receiveMode)) {
+        try (final var daemonHandler = new MultiAccountDaemonHandler(c, receiveMode, getOutputQueueConfig(ns))) {
             setup(ns, daemonHandler);
 
             synchronized (this) {
@@ -141,6 +161,14 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
         }
     }
 
+    private static OutputQueue.Config getOutputQueueConfig(final Namespace ns) throws UserErrorException {
+        final int queueSize = ns.getInt("client-queue-size");
+        if (queueSize < 1) {
+            throw new UserErrorException("Client queue size must be at least 1");
+        }
+        return new OutputQueue.Config(queueSize, ns.get("client-overflow-policy"));
+    }
+
     private static void setup(final Namespace ns, final DaemonHandler daemonHandler) throws CommandException {
         final Channel inheritedChannel;
         try {
@@ -201,15 +229,20 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
             case null -> Manager.ReceiveMessageHandler.EMPTY;
         };
         m.addReceiveHandler(handler, isWeakListener);
+        if (handler instanceof Manager.AttachmentDownloadListener listener) {
+            m.addAttachmentDownloadListener(listener);
+        }
     }
 
     private static abstract class DaemonHandler implements AutoCloseable {
 
         protected final ReceiveMode receiveMode;
+        protected final OutputQueue.Config outputQueueConfig;
         protected final List<AutoCloseable> closeables = new ArrayList<>();
 
-        protected DaemonHandler(final ReceiveMode receiveMode) {
+        protected DaemonHandler(final ReceiveMode receiveMode, final OutputQueue.Config outputQueueConfig) {
             this.receiveMode = receiveMode;
+            this.outputQueueConfig = outputQueueConfig;
         }
 
         public abstract void runSocket(ServerSocketChannel serverChannel) throws CommandException;
@@ -256,14 +289,16 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
 
         private final Manager m;
 
-        public SingleAccountDaemonHandler(final Manager m, final ReceiveMode receiveMode) {
-            super(receiveMode);
+        public SingleAccountDaemonHandler(
+                final Manager m, final ReceiveMode receiveMode, final OutputQueue.Config outputQueueConfig
+        ) {
+            super(receiveMode, outputQueueConfig);
             this.m = m;
         }
 
         @Override
         public void runSocket(final ServerSocketChannel serverChannel) {
-            runSocket(new SocketHandler(serverChannel, m, receiveMode == ReceiveMode.MANUAL));
+            runSocket(new SocketHandler(serverChannel, m, receiveMode == ReceiveMode.MANUAL, outputQueueConfig));
         }
 
         @Override
@@ -273,7 +308,7 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
 
         @Override
         public void runHttp(InetSocketAddress address) throws CommandException {
-            runHttp(new HttpServerHandler(address, m));
+            runHttp(new HttpServerHandler(address, m, outputQueueConfig));
         }
     }
 
@@ -281,14 +316,16 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
 
         private final MultiAccountManager c;
 
-        public MultiAccountDaemonHandler(final MultiAccountManager c, final ReceiveMode receiveMode) {
-            super(receiveMode);
+        public MultiAccountDaemonHandler(
+                final MultiAccountManager c, final ReceiveMode receiveMode, final OutputQueue.Config outputQueueConfig
+        ) {
+            super(receiveMode, outputQueueConfig);
             this.c = c;
         }
 
         @Override
         public void runSocket(final ServerSocketChannel serverChannel) {
-            runSocket(new SocketHandler(serverChannel, c, receiveMode == ReceiveMode.MANUAL));
+            runSocket(new SocketHandler(serverChannel, c, receiveMode == ReceiveMode.MANUAL, outputQueueConfig));
         }
 
         @Override
@@ -298,7 +335,7 @@ public class DaemonCommand implements MultiLocalCommand, LocalCommand {
 
         @Override
         public void runHttp(final InetSocketAddress address) throws CommandException {
-            runHttp(new HttpServerHandler(address, c));
+            runHttp(new HttpServerHandler(address, c, outputQueueConfig));
         }
     }
 }
@@ -0,0 +1,71 @@
+package org.asamk.signal.commands;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.asamk.signal.commands.exceptions.CommandException;
+import org.asamk.signal.commands.exceptions.UserErrorException;
+import org.asamk.signal.manager.MultiAccountManager;
+import org.asamk.signal.manager.api.AccountStatistics;
+import org.asamk.signal.output.JsonWriter;
+import org.asamk.signal.output.OutputWriter;
+import org.asamk.signal.output.PlainTextWriter;
+
+public class GetAccountStatisticsCommand implements JsonRpcMultiLocalCommand {
+
+    @Override
+    public String getName() {
+        return "getAccountStatistics";
+    }
+
+    @Override
+    public void attachToSubparser(final Subparser subparser) {
+        subparser.help("Show the number of active and hibernated accounts and the resources used by them.");
+    }
+
+    @Override
+    public void handleCommand(
+            final Namespace ns, final MultiAccountManager c, final OutputWriter outputWriter
+    ) throws CommandException {
+        final AccountStatistics statistics;
+        try {
+            statistics = c.getAccountStatistics();
+        } catch (UnsupportedOperationException e) {
+            throw new UserErrorException("Account statistics are not available via dbus", e);
+        }
+        switch (outputWriter) {
+            case JsonWriter jsonWriter -> jsonWriter.write(new JsonAccountStatistics(statistics.activeAccounts(),
+                    statistics.hibernatedAccounts(),
+                    statistics.activations(),
+                    statistics.hibernations(),
+                    statistics.releasedFileDescriptors(),
+                    statistics.releasedThreads(),
+                    statistics.openFileDescriptors(),
+                    statistics.threads(),
+                    statistics.heapUsedBytes()));
+            case PlainTextWriter plainTextWriter -> {
+                plainTextWriter.println("Active accounts: {}", statistics.activeAccounts());
+                plainTextWriter.println("Hibernated accounts: {}", statistics.hibernatedAccounts());
+                plainTextWriter.println("Activations: {}", statistics.activations());
+                plainTextWriter.println("Hibernations: {}", statistics.hibernations());
+                plainTextWriter.println("Released file descriptors: {}", statistics.releasedFileDescriptors());
+                plainTextWriter.println("Released threads: {}", statistics.releasedThreads());
+                plainTextWriter.println("Open file descriptors: {}", statistics.openFileDescriptors());
+                plainTextWriter.println("Threads: {}", statistics.threads());
+                plainTextWriter.println("Heap used: {} bytes", statistics.heapUsedBytes());
+            }
+        }
+    }
+
+    private record JsonAccountStatistics(
+            int activeAccounts,
+            int hibernatedAccounts,
+            long activations,
+            long hibernations,
+            long releasedFileDescriptors,
+            long releasedThreads,
+            long openFileDescriptors,
+            int threads,
+            long heapUsedBytes
+    ) {}
+}
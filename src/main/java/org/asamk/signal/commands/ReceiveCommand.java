@@ -80,6 +80,8 @@ public class ReceiveCommand implements LocalCommand, JsonRpcSingleCommand<Receiv
                 case JsonWriter writer -> new JsonReceiveMessageHandler(m, writer);
                 case PlainTextWriter writer -> new ReceiveMessageHandler(m, writer);
             };
+            // Attachments are downloaded in the background, the manager waits for them when it's closed
+            m.addAttachmentDownloadListener(handler);
             final var duration = timeout < 0 ? null : Duration.ofMillis((long) (timeout * 1000));
             final var maxMessages = maxMessagesRaw < 0 ? null : maxMessagesRaw;
             Shutdown.registerShutdownListener(m::stopReceiveMessages);
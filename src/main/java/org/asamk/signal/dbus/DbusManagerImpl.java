@@ -766,6 +766,14 @@ public class DbusManagerImpl implements Manager {
         }
     }
 
+    @Override
+    public void addAttachmentDownloadListener(final AttachmentDownloadListener listener) {
+    }
+
+    @Override
+    public void removeAttachmentDownloadListener(final AttachmentDownloadListener listener) {
+    }
+
     @Override
     public void close() {
         synchronized (this) {
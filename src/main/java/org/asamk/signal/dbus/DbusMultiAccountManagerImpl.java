@@ -7,6 +7,7 @@ import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
 import org.asamk.signal.manager.ProvisioningManager;
 import org.asamk.signal.manager.RegistrationManager;
+import org.asamk.signal.manager.api.AccountStatistics;
 import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
@@ -73,6 +74,18 @@ public class DbusMultiAccountManagerImpl implements MultiAccountManager {
         return new DbusManagerImpl(getRemoteObject(signalControl.getAccount(phoneNumber), Signal.class), connection);
     }
 
+    @Override
+    public Usage useManager(final Manager manager) {
+        // Hibernation is handled by the daemon itself
+        return () -> {
+        };
+    }
+
+    @Override
+    public AccountStatistics getAccountStatistics() {
+        throw new UnsupportedOperationException("Account statistics are not available via dbus");
+    }
+
     @Override
     public URI getNewProvisioningDeviceLinkUri() throws TimeoutException, IOException {
         try {
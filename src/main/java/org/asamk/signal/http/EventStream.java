@@ -0,0 +1,141 @@
+package org.asamk.signal.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import org.asamk.signal.json.JsonReceiveEventBus;
+import org.asamk.signal.manager.Manager;
+import org.asamk.signal.manager.MultiAccountManager;
+import org.asamk.signal.output.OutputQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent events stream of received messages for a single client.
+ * <p>
+ * An open stream doesn't occupy a thread, events are written by its {@link OutputQueue} and keep alive messages are
+ * triggered by a scheduler shared by all streams.
+ * Managers can be subscribed and unsubscribed while the stream is open, each subscription holds the usage of its
+ * account, so the account isn't hibernated while a client listens to it.
+ */
+final class EventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventStream.class);
+    private static final AtomicInteger nextStreamId = new AtomicInteger(0);
+    private static final long KEEP_ALIVE_INTERVAL_SECONDS = 15;
+
+    private final HttpExchange httpExchange;
+    private final String account;
+    private final OutputQueue queue;
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    // Guarded by subscriptions
+    private final Map<Manager, Subscription> subscriptions = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * @param account Only subscribe to the manager of this account, or to all managers if null
+     */
+    EventStream(final HttpExchange httpExchange, final String account, final OutputQueue.Config outputQueueConfig) {
+        this.httpExchange = httpExchange;
+        this.account = account;
+        final var sender = new ServerSentEventSender(httpExchange.getResponseBody());
+        this.queue = new OutputQueue("events-" + nextStreamId.getAndIncrement(),
+                outputQueueConfig,
+                new OutputQueue.Sink() {
+                    @Override
+                    public void write(final String line) throws IOException {
+                        sender.sendEvent(null, "receive", List.of(line));
+                    }
+
+                    @Override
+                    public void writeKeepAlive() throws IOException {
+                        sender.sendKeepAlive();
+                    }
+
+                    @Override
+                    public void flush() {
+                    }
+                },
+                this::finish);
+    }
+
+    /**
+     * Keep the stream open until the client disconnects or {@link #finish()} is called.
+     *
+     * @param cleanupExecutor Used to close the stream, as that may block until the remaining output is written
+     */
+    CompletableFuture<Void> start(final ScheduledExecutorService keepAliveScheduler, final Executor cleanupExecutor) {
+        final var keepAlive = keepAliveScheduler.scheduleAtFixedRate(queue::keepAlive,
+                KEEP_ALIVE_INTERVAL_SECONDS,
+                KEEP_ALIVE_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        return finished.thenRunAsync(() -> close(keepAlive), cleanupExecutor);
+    }
+
+    boolean isFollowing(final Manager manager) {
+        return account == null || account.equals(manager.getSelfNumber());
+    }
+
+    /**
+     * Subscribe to the messages of the manager, the usage is closed when the manager is unsubscribed again.
+     */
+    void subscribe(final Manager manager, final MultiAccountManager.Usage usage) {
+        synchronized (subscriptions) {
+            if (!closed && !subscriptions.containsKey(manager)) {
+                subscriptions.put(manager, new Subscription(JsonReceiveEventBus.subscribe(manager, queue::add), usage));
+                return;
+            }
+        }
+        usage.close();
+    }
+
+    void unsubscribe(final Manager manager) {
+        final Subscription subscription;
+        synchronized (subscriptions) {
+            subscription = subscriptions.remove(manager);
+        }
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    void finish() {
+        finished.complete(null);
+    }
+
+    private void close(final ScheduledFuture<?> keepAlive) {
+        keepAlive.cancel(false);
+        final List<Subscription> remaining;
+        synchronized (subscriptions) {
+            closed = true;
+            remaining = new ArrayList<>(subscriptions.values());
+            subscriptions.clear();
+        }
+        remaining.forEach(Subscription::close);
+        queue.close();
+        try {
+            httpExchange.getResponseBody().close();
+        } catch (IOException e) {
+            logger.debug("Failed to close event stream, ignoring: {}", e.getMessage());
+        }
+    }
+
+    private record Subscription(JsonReceiveEventBus.Subscription subscription, MultiAccountManager.Usage usage) {
+
+        void close() {
+            subscription.unsubscribe();
+            usage.close();
+        }
+    }
+}
@@ -5,14 +5,14 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import org.asamk.signal.commands.Commands;
-import org.asamk.signal.json.JsonReceiveMessageHandler;
 import org.asamk.signal.jsonrpc.JsonRpcReader;
 import org.asamk.signal.jsonrpc.JsonRpcResponse;
 import org.asamk.signal.jsonrpc.JsonRpcSender;
 import org.asamk.signal.jsonrpc.SignalJsonRpcCommandHandler;
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
-import org.asamk.signal.manager.api.Pair;
+import org.asamk.signal.output.OutputQueue;
+import org.asamk.signal.util.DaemonExecutors;
 import org.asamk.signal.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,12 +21,18 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class HttpServerHandler implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpServerHandler.class);
+    private static final MultiAccountManager.Usage NO_USAGE = () -> {
+    };
 
     private final ObjectMapper objectMapper = Util.createJsonObjectMapper();
 
@@ -35,21 +41,31 @@ public class HttpServerHandler implements AutoCloseable {
     private final SignalJsonRpcCommandHandler commandHandler;
     private final MultiAccountManager c;
     private final Manager m;
+    private final OutputQueue.Config outputQueueConfig;
     private HttpServer server;
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
+    private final ExecutorService executor = DaemonExecutors.newExecutor("http-request");
+    private ScheduledExecutorService keepAliveScheduler;
+    private final Map<EventStream, CompletableFuture<Void>> eventStreams = new ConcurrentHashMap<>();
 
-    public HttpServerHandler(final InetSocketAddress address, final Manager m) {
+    public HttpServerHandler(
+            final InetSocketAddress address, final Manager m, final OutputQueue.Config outputQueueConfig
+    ) {
         this.address = address;
         commandHandler = new SignalJsonRpcCommandHandler(m, Commands::getCommand);
         this.c = null;
         this.m = m;
+        this.outputQueueConfig = outputQueueConfig;
     }
 
-    public HttpServerHandler(final InetSocketAddress address, final MultiAccountManager c) {
+    public HttpServerHandler(
+            final InetSocketAddress address, final MultiAccountManager c, final OutputQueue.Config outputQueueConfig
+    ) {
         this.address = address;
         commandHandler = new SignalJsonRpcCommandHandler(c, Commands::getCommand);
         this.c = c;
         this.m = null;
+        this.outputQueueConfig = outputQueueConfig;
     }
 
     public void init() throws IOException {
@@ -59,12 +75,26 @@ public class HttpServerHandler implements AutoCloseable {
         logger.debug("Starting HTTP server on {}", address);
 
         server = HttpServer.create(address, 0);
-        server.setExecutor(Executors.newCachedThreadPool());
+        server.setExecutor(executor);
+        keepAliveScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("http-keep-alive")
+                .daemon()
+                .factory());
 
         server.createContext("/api/v1/rpc", this::handleRpcEndpoint);
         server.createContext("/api/v1/events", this::handleEventsEndpoint);
         server.createContext("/api/v1/check", this::handleCheckEndpoint);
 
+        if (c != null) {
+            // Accounts activated after a client connected are added to its stream as well
+            c.addOnManagerAddedHandler(manager -> eventStreams.keySet()
+                    .stream()
+                    .filter(eventStream -> eventStream.isFollowing(manager))
+                    .forEach(eventStream -> eventStream.subscribe(manager, c.useManager(manager))));
+            c.addOnManagerRemovedHandler(manager -> eventStreams.keySet()
+                    .forEach(eventStream -> eventStream.unsubscribe(manager)));
+        }
+
         server.start();
         logger.info("Started HTTP server on {}", address);
     }
@@ -73,12 +103,13 @@ public class HttpServerHandler implements AutoCloseable {
     public void close() {
         if (server != null) {
             shutdown.set(true);
-            synchronized (this) {
-                this.notifyAll();
-            }
+            eventStreams.keySet().forEach(EventStream::finish);
+            CompletableFuture.allOf(eventStreams.values().toArray(CompletableFuture[]::new)).join();
             // Increase this delay when https://bugs.openjdk.org/browse/JDK-8304065 is fixed
             server.stop(2);
             server = null;
+            keepAliveScheduler.shutdown();
+            keepAliveScheduler = null;
             shutdown.set(false);
         }
     }
@@ -167,39 +198,19 @@ public class HttpServerHandler implements AutoCloseable {
 
             httpExchange.getResponseHeaders().add("Content-Type", "text/event-stream");
             httpExchange.sendResponseHeaders(200, 0);
-            final var sender = new ServerSentEventSender(httpExchange.getResponseBody());
 
-            final var shouldStop = new AtomicBoolean(false);
-            final var handlers = subscribeReceiveHandlers(managers, sender, () -> {
-                shouldStop.set(true);
-                synchronized (this) {
-                    this.notifyAll();
-                }
-            });
-
-            try {
-                while (true) {
-                    synchronized (this) {
-                        wait(15_000);
-                    }
-                    if (shouldStop.get() || shutdown.get()) {
-                        break;
-                    }
-
-                    try {
-                        sender.sendKeepAlive();
-                    } catch (IOException e) {
-                        break;
-                    }
-                }
-            } finally {
-                for (final var pair : handlers) {
-                    unsubscribeReceiveHandler(pair);
-                }
-                try {
-                    httpExchange.getResponseBody().close();
-                } catch (IOException ignored) {
-                }
+            // The stream stays open after returning, until the client disconnects or the server is stopped
+            final var account = c == null ? null : query.get("account");
+            final var eventStream = new EventStream(httpExchange,
+                    account == null || account.isEmpty() ? null : account,
+                    outputQueueConfig);
+            final var closed = eventStream.start(keepAliveScheduler, executor);
+            // Registered before subscribing, so managers added in the meantime aren't missed
+            eventStreams.put(eventStream, closed);
+            closed.thenRun(() -> eventStreams.remove(eventStream));
+            managers.forEach(manager -> eventStream.subscribe(manager, useManager(manager)));
+            if (shutdown.get()) {
+                eventStream.finish();
             }
         } catch (Throwable aEx) {
             logger.error("Failed to process request.", aEx);
@@ -220,6 +231,10 @@ public class HttpServerHandler implements AutoCloseable {
         sendResponse(200, null, httpExchange);
     }
 
+    private MultiAccountManager.Usage useManager(final Manager manager) {
+        return c == null ? NO_USAGE : c.useManager(manager);
+    }
+
     private List<Manager> getManagerFromQuery(final Map<String, String> query) {
         if (m != null) {
             return List.of(m);
@@ -238,31 +253,4 @@ public class HttpServerHandler implements AutoCloseable {
         }
         throw new AssertionError("Unreachable state");
     }
-
-    private List<Pair<Manager, Manager.ReceiveMessageHandler>> subscribeReceiveHandlers(
-            final List<Manager> managers, final ServerSentEventSender sender, Callable unsubscribe
-    ) {
-        return managers.stream().map(m1 -> {
-            final var receiveMessageHandler = new JsonReceiveMessageHandler(m1, s -> {
-                try {
-                    sender.sendEvent(null, "receive", List.of(objectMapper.writeValueAsString(s)));
-                } catch (IOException e) {
-                    unsubscribe.call();
-                }
-            });
-            m1.addReceiveHandler(receiveMessageHandler);
-            return new Pair<>(m1, (Manager.ReceiveMessageHandler) receiveMessageHandler);
-        }).toList();
-    }
-
-    private void unsubscribeReceiveHandler(final Pair<Manager, Manager.ReceiveMessageHandler> pair) {
-        final var m = pair.first();
-        final var handler = pair.second();
-        m.removeReceiveHandler(handler);
-    }
-
-    private interface Callable {
-
-        void call();
-    }
 }
@@ -0,0 +1,3 @@
+package org.asamk.signal.json;
+
+public record JsonAttachmentDownload(String id, boolean success) {}
@@ -0,0 +1,126 @@
+package org.asamk.signal.json;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.asamk.signal.manager.Manager;
+import org.asamk.signal.manager.api.MessageEnvelope;
+import org.asamk.signal.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Converts each message received by a manager to JSON only once and passes the encoded message to all subscribers,
+ * instead of every subscriber converting and serializing it on its own.
+ * Finished attachment downloads are passed to the subscribers as follow-up messages as well.
+ */
+public final class JsonReceiveEventBus implements Manager.ReceiveMessageHandler, Manager.AttachmentDownloadListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonReceiveEventBus.class);
+
+    private static final Map<Manager, JsonReceiveEventBus> buses = new HashMap<>();
+
+    private final ObjectMapper objectMapper = Util.createJsonObjectMapper();
+    private final Manager m;
+    private final List<Consumer<String>> subscribers = new CopyOnWriteArrayList<>();
+
+    private JsonReceiveEventBus(final Manager m) {
+        this.m = m;
+    }
+
+    /**
+     * Subscribe to the messages received by the manager.
+     * The subscriber is called with the message encoded as single line JSON object, which is shared by all
+     * subscribers of the manager.
+     */
+    public static Subscription subscribe(final Manager m, final Consumer<String> subscriber) {
+        final JsonReceiveEventBus bus;
+        final boolean isFirstSubscriber;
+        synchronized (buses) {
+            bus = buses.computeIfAbsent(m, JsonReceiveEventBus::new);
+            isFirstSubscriber = bus.subscribers.isEmpty();
+            bus.subscribers.add(subscriber);
+        }
+        // Registering and removing the handler must happen outside the lock, as the manager calls the handlers
+        // while holding its own lock
+        if (isFirstSubscriber) {
+            m.addReceiveHandler(bus);
+            m.addAttachmentDownloadListener(bus);
+        }
+        return new Subscription(bus, subscriber);
+    }
+
+    @Override
+    public void handleMessage(final MessageEnvelope envelope, final Throwable exception) {
+        publish(JsonReceiveMessageHandler.createMessage(m, envelope, exception));
+    }
+
+    @Override
+    public void handleAttachmentDownload(final String id, final boolean success) {
+        publish(JsonReceiveMessageHandler.createAttachmentDownloadMessage(m, id, success));
+    }
+
+    private void publish(final Object message) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        final String json;
+        try {
+            json = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            // Some issue with json serialization, probably caused by a bug
+            throw new AssertionError(e);
+        }
+
+        for (final var subscriber : subscribers) {
+            try {
+                subscriber.accept(json);
+            } catch (Throwable e) {
+                logger.warn("Receive subscriber failed, ignoring", e);
+            }
+        }
+    }
+
+    private void unsubscribe(final Consumer<String> subscriber) {
+        final boolean isLastSubscriber;
+        synchronized (buses) {
+            if (!subscribers.remove(subscriber)) {
+                return;
+            }
+            isLastSubscriber = subscribers.isEmpty();
+            if (isLastSubscriber) {
+                buses.remove(m, this);
+            }
+        }
+        if (isLastSubscriber) {
+            m.removeReceiveHandler(this);
+            m.removeAttachmentDownloadListener(this);
+        }
+    }
+
+    public static final class Subscription {
+
+        private final JsonReceiveEventBus bus;
+        private final Consumer<String> subscriber;
+
+        private Subscription(final JsonReceiveEventBus bus, final Consumer<String> subscriber) {
+            this.bus = bus;
+            this.subscriber = subscriber;
+        }
+
+        public Manager getManager() {
+            return bus.m;
+        }
+
+        public void unsubscribe() {
+            bus.unsubscribe(subscriber);
+        }
+    }
+}
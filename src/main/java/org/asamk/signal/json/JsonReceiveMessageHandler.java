@@ -7,8 +7,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.Map;
 
-public class JsonReceiveMessageHandler implements Manager.ReceiveMessageHandler {
+public class JsonReceiveMessageHandler implements Manager.ReceiveMessageHandler, Manager.AttachmentDownloadListener {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonReceiveMessageHandler.class);
 
@@ -22,6 +23,15 @@ public class JsonReceiveMessageHandler implements Manager.ReceiveMessageHandler
 
     @Override
     public void handleMessage(MessageEnvelope envelope, Throwable exception) {
+        jsonWriter.write(createMessage(m, envelope, exception));
+    }
+
+    @Override
+    public void handleAttachmentDownload(final String id, final boolean success) {
+        jsonWriter.write(createAttachmentDownloadMessage(m, id, success));
+    }
+
+    static Map<String, Object> createMessage(Manager m, MessageEnvelope envelope, Throwable exception) {
         final var object = new HashMap<String, Object>();
         object.put("account", m.getSelfNumber());
         if (exception != null) {
@@ -32,6 +42,16 @@ public class JsonReceiveMessageHandler implements Manager.ReceiveMessageHandler
             object.put("envelope", JsonMessageEnvelope.from(envelope, exception, m));
         }
 
-        jsonWriter.write(object);
+        return object;
+    }
+
+    /**
+     * Follow-up notification for an attachment of a previously received message, once its download has finished.
+     */
+    static Map<String, Object> createAttachmentDownloadMessage(Manager m, String id, boolean success) {
+        final var object = new HashMap<String, Object>();
+        object.put("account", m.getSelfNumber());
+        object.put("attachmentDownload", new JsonAttachmentDownload(id, success));
+        return object;
     }
 }
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.node.ContainerNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 
+import org.asamk.signal.util.DaemonExecutors;
 import org.asamk.signal.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +16,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -24,6 +25,7 @@ import java.util.stream.StreamSupport;
 public class JsonRpcReader {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonRpcReader.class);
+    private static final int MAX_CONCURRENT_REQUESTS = 64;
 
     private final JsonRpcSender jsonRpcSender;
     private final ObjectMapper objectMapper;
@@ -55,7 +57,9 @@ public class JsonRpcReader {
             return;
         }
 
-        try (final var executor = Executors.newCachedThreadPool()) {
+        // Stop reading further requests while the maximum number of requests is being handled
+        final var requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+        try (final var executor = DaemonExecutors.newExecutor("jsonrpc-request")) {
             while (!Thread.interrupted()) {
                 final var input = lineSupplier.get();
                 if (input == null) {
@@ -69,7 +73,18 @@ public class JsonRpcReader {
                     continue;
                 }
 
-                executor.submit(() -> handleMessage(message, requestHandler, responseHandler));
+                try {
+                    requestPermits.acquire();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                executor.submit(() -> {
+                    try {
+                        handleMessage(message, requestHandler, responseHandler);
+                    } finally {
+                        requestPermits.release();
+                    }
+                });
             }
         }
     }
@@ -91,7 +106,7 @@ public class JsonRpcReader {
             case JsonRpcBatchMessage jsonRpcBatchMessage -> {
                 final var messages = jsonRpcBatchMessage.getMessages();
                 final var responseList = new ArrayList<JsonRpcResponse>(messages.size());
-                try (final var executor = Executors.newCachedThreadPool()) {
+                try (final var executor = DaemonExecutors.newExecutor("jsonrpc-batch")) {
                     final var lock = new ReentrantLock();
                     messages.forEach(jsonNode -> {
                         final JsonRpcRequest request;
@@ -1,5 +1,8 @@
 package org.asamk.signal.jsonrpc;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.util.RawValue;
+
 import org.asamk.signal.output.JsonWriter;
 
 import java.util.List;
@@ -16,6 +19,17 @@ public class JsonRpcSender {
         jsonWriter.write(request);
     }
 
+    /**
+     * Send a notification, whose params are already encoded as JSON.
+     */
+    public void sendNotification(final String method, final RawValue params) {
+        final var notification = JsonNodeFactory.instance.objectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", method);
+        notification.putRawValue("params", params);
+        jsonWriter.write(notification);
+    }
+
     public void sendBatchRequests(List<JsonRpcRequest> requests) {
         jsonWriter.write(requests);
     }
@@ -27,7 +27,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
 public class SignalJsonRpcCommandHandler {
@@ -38,6 +41,9 @@ public class SignalJsonRpcCommandHandler {
     private static final int IO_ERROR = -3;
     private static final int UNTRUSTED_KEY_ERROR = -4;
     private static final int RATELIMIT_ERROR = -5;
+    private static final int MAX_CONCURRENT_REQUESTS_PER_ACCOUNT = 128;
+
+    private static final Map<Manager, Semaphore> accountPermits = Collections.synchronizedMap(new WeakHashMap<>());
 
     private final Manager m;
     private final MultiAccountManager c;
@@ -63,7 +69,7 @@ public class SignalJsonRpcCommandHandler {
             if (command instanceof JsonRpcSingleCommand<?> jsonRpcCommand) {
                 final var manager = getManagerFromParams(params);
                 if (manager != null) {
-                    return runCommand(objectMapper, params, new CommandRunnerImpl<>(manager, jsonRpcCommand));
+                    return runCommandInUse(objectMapper, params, manager, jsonRpcCommand);
                 }
             }
             if (command instanceof JsonRpcMultiCommand<?> jsonRpcCommand) {
@@ -92,13 +98,14 @@ public class SignalJsonRpcCommandHandler {
 
             var manager = getManagerFromParams(params);
             if (manager == null) {
-                final var managers = c.getManagers();
-                if (managers.size() == 1) {
-                    manager = managers.getFirst();
+                // Hibernated accounts are only listed by number, until they're activated by getManager
+                final var accountNumbers = c.getAccountNumbers();
+                if (accountNumbers.size() == 1) {
+                    manager = c.getManager(accountNumbers.getFirst());
                 }
             }
             if (manager != null) {
-                return runCommand(objectMapper, params, new CommandRunnerImpl<>(manager, jsonRpcCommand));
+                return runCommandInUse(objectMapper, params, manager, jsonRpcCommand);
             } else {
                 throw new JsonRpcException(new JsonRpcResponse.Error(JsonRpcResponse.Error.INVALID_PARAMS,
                         "Method requires valid account parameter",
@@ -150,7 +157,19 @@ public class SignalJsonRpcCommandHandler {
 
         @Override
         public void handleCommand(final T request, final JsonWriter jsonWriter) throws CommandException {
-            command.handleCommand(request, m, jsonWriter);
+            // Limit the requests running for one account, independent of the connection they came from
+            final var permits = accountPermits.computeIfAbsent(m,
+                    _m -> new Semaphore(MAX_CONCURRENT_REQUESTS_PER_ACCOUNT));
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                throw new UnexpectedErrorException("Interrupted while waiting for other requests to finish", e);
+            }
+            try {
+                command.handleCommand(request, m, jsonWriter);
+            } finally {
+                permits.release();
+            }
         }
 
         @Override
@@ -196,6 +215,18 @@ public class SignalJsonRpcCommandHandler {
         TypeReference<T> getRequestType();
     }
 
+    private JsonNode runCommandInUse(
+            final ObjectMapper objectMapper,
+            final ContainerNode<?> params,
+            final Manager manager,
+            final JsonRpcSingleCommand<?> command
+    ) throws JsonRpcException {
+        // Keep the account from being hibernated while the command is running
+        try (final var ignored = c.useManager(manager)) {
+            return runCommand(objectMapper, params, new CommandRunnerImpl<>(manager, command));
+        }
+    }
+
     private JsonNode runCommand(
             final ObjectMapper objectMapper, final ContainerNode<?> params, final CommandRunner<?> command
     ) throws JsonRpcException {
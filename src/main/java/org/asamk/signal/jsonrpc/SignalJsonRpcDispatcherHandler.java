@@ -4,9 +4,8 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ContainerNode;
-import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 
 import org.asamk.signal.commands.Command;
 import org.asamk.signal.commands.Commands;
@@ -14,11 +13,12 @@ import org.asamk.signal.commands.JsonRpcMultiCommand;
 import org.asamk.signal.commands.JsonRpcSingleCommand;
 import org.asamk.signal.commands.exceptions.CommandException;
 import org.asamk.signal.commands.exceptions.UserErrorException;
-import org.asamk.signal.json.JsonReceiveMessageHandler;
+import org.asamk.signal.json.JsonReceiveEventBus;
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
-import org.asamk.signal.manager.api.Pair;
 import org.asamk.signal.output.JsonWriter;
+import org.asamk.signal.output.OutputQueue;
+import org.asamk.signal.output.QueuedJsonWriter;
 import org.asamk.signal.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,8 +38,9 @@ public class SignalJsonRpcDispatcherHandler {
     private final JsonRpcSender jsonRpcSender;
     private final JsonRpcReader jsonRpcReader;
     private final boolean noReceiveOnStart;
+    private final Supplier<OutputQueue.Statistics> outputStatistics;
 
-    private final Map<Integer, List<Pair<Manager, Manager.ReceiveMessageHandler>>> receiveHandlers = new HashMap<>();
+    private final Map<Integer, List<JsonReceiveEventBus.Subscription>> receiveHandlers = new HashMap<>();
     private SignalJsonRpcCommandHandler commandHandler;
 
     public SignalJsonRpcDispatcherHandler(
@@ -49,6 +50,9 @@ public class SignalJsonRpcDispatcherHandler {
         this.objectMapper = Util.createJsonObjectMapper();
         this.jsonRpcSender = new JsonRpcSender(jsonWriter);
         this.jsonRpcReader = new JsonRpcReader(jsonRpcSender, lineSupplier);
+        this.outputStatistics = jsonWriter instanceof QueuedJsonWriter queuedJsonWriter
+                ? queuedJsonWriter::getStatistics
+                : null;
     }
 
     public void handleConnection(final MultiAccountManager c) {
@@ -84,49 +88,37 @@ public class SignalJsonRpcDispatcherHandler {
 
     private int subscribeReceive(final List<Manager> managers, boolean internalSubscription) {
         final var subscriptionId = nextSubscriptionId.getAndIncrement();
-        final var handlers = managers.stream().map(m -> {
-            final var receiveMessageHandler = new JsonReceiveMessageHandler(m, s -> {
-                ContainerNode<?> params;
-                if (internalSubscription) {
-                    params = objectMapper.valueToTree(s);
-                } else {
-                    final var paramsNode = new ObjectNode(objectMapper.getNodeFactory());
-                    paramsNode.set("subscription", IntNode.valueOf(subscriptionId));
-                    paramsNode.set("result", objectMapper.valueToTree(s));
-                    params = paramsNode;
+        final var subscriptions = managers.stream().map(m -> JsonReceiveEventBus.subscribe(m, json -> {
+            // Only wrap the already encoded message, instead of converting it again for every subscription
+            final var params = internalSubscription
+                    ? new RawValue(json)
+                    : new RawValue("{\"subscription\":" + subscriptionId + ",\"result\":" + json + "}");
+            try {
+                jsonRpcSender.sendNotification("receive", params);
+            } catch (AssertionError e) {
+                if (e.getCause() instanceof ClosedChannelException) {
+                    unsubscribeReceive(subscriptionId);
                 }
-                final var jsonRpcRequest = JsonRpcRequest.forNotification("receive", params, null);
-                try {
-                    jsonRpcSender.sendRequest(jsonRpcRequest);
-                } catch (AssertionError e) {
-                    if (e.getCause() instanceof ClosedChannelException) {
-                        unsubscribeReceive(subscriptionId);
-                    }
-                }
-            });
-            m.addReceiveHandler(receiveMessageHandler);
-            return new Pair<>(m, (Manager.ReceiveMessageHandler) receiveMessageHandler);
-        }).toList();
-        receiveHandlers.put(subscriptionId, handlers);
+            }
+        })).toList();
+        receiveHandlers.put(subscriptionId, subscriptions);
 
         return subscriptionId;
     }
 
     private boolean unsubscribeReceive(final int subscriptionId) {
-        final var handlers = receiveHandlers.remove(subscriptionId);
-        if (handlers == null) {
+        final var subscriptions = receiveHandlers.remove(subscriptionId);
+        if (subscriptions == null) {
             return false;
         }
-        for (final var pair : handlers) {
-            unsubscribeReceiveHandler(pair);
-        }
+        subscriptions.forEach(JsonReceiveEventBus.Subscription::unsubscribe);
         return true;
     }
 
     private void unsubscribeReceive(final Manager m) {
         final var subscriptionId = receiveHandlers.entrySet()
                 .stream()
-                .filter(e -> e.getValue().size() == 1 && e.getValue().getFirst().first().equals(m))
+                .filter(e -> e.getValue().size() == 1 && e.getValue().getFirst().getManager().equals(m))
                 .map(Map.Entry::getKey)
                 .findFirst();
         subscriptionId.ifPresent(this::unsubscribeReceive);
@@ -137,17 +129,12 @@ public class SignalJsonRpcDispatcherHandler {
             jsonRpcReader.readMessages((method, params) -> commandHandler.handleRequest(objectMapper, method, params),
                     response -> logger.debug("Received unexpected response for id {}", response.getId()));
         } finally {
-            receiveHandlers.forEach((_subscriptionId, handlers) -> handlers.forEach(this::unsubscribeReceiveHandler));
+            receiveHandlers.forEach((_subscriptionId, subscriptions) -> subscriptions.forEach(
+                    JsonReceiveEventBus.Subscription::unsubscribe));
             receiveHandlers.clear();
         }
     }
 
-    private void unsubscribeReceiveHandler(final Pair<Manager, Manager.ReceiveMessageHandler> pair) {
-        final var m = pair.first();
-        final var handler = pair.second();
-        m.removeReceiveHandler(handler);
-    }
-
     private Command getCommand(final String method) {
         if ("subscribeReceive".equals(method)) {
             return new SubscribeReceiveCommand();
@@ -155,6 +142,9 @@ public class SignalJsonRpcDispatcherHandler {
         if ("unsubscribeReceive".equals(method)) {
             return new UnsubscribeReceiveCommand();
         }
+        if ("getOutputStatistics".equals(method)) {
+            return new GetOutputStatisticsCommand();
+        }
         return Commands.getCommand(method);
     }
 
@@ -230,4 +220,43 @@ public class SignalJsonRpcDispatcherHandler {
             };
         }
     }
+
+    private class GetOutputStatisticsCommand implements JsonRpcSingleCommand<Void>, JsonRpcMultiCommand<Void> {
+
+        @Override
+        public String getName() {
+            return "getOutputStatistics";
+        }
+
+        @Override
+        public void handleCommand(
+                final Void request, final Manager m, final JsonWriter jsonWriter
+        ) throws CommandException {
+            writeOutputStatistics(jsonWriter);
+        }
+
+        @Override
+        public void handleCommand(
+                final Void request, final MultiAccountManager c, final JsonWriter jsonWriter
+        ) throws CommandException {
+            writeOutputStatistics(jsonWriter);
+        }
+
+        private void writeOutputStatistics(final JsonWriter jsonWriter) throws UserErrorException {
+            if (outputStatistics == null) {
+                throw new UserErrorException("Output statistics are only available for daemon socket connections");
+            }
+            final var statistics = outputStatistics.get();
+            jsonWriter.write(new JsonOutputStatistics(statistics.written(),
+                    statistics.dropped(),
+                    statistics.spilled(),
+                    statistics.queued(),
+                    statistics.maxQueued(),
+                    statistics.lag().toMillis()));
+        }
+    }
+
+    private record JsonOutputStatistics(
+            long written, long dropped, long spilled, int queued, int maxQueued, long lagMillis
+    ) {}
 }
@@ -2,7 +2,10 @@ package org.asamk.signal.jsonrpc;
 
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.MultiAccountManager;
-import org.asamk.signal.output.JsonWriterImpl;
+import org.asamk.signal.output.JsonWriter;
+import org.asamk.signal.output.OutputQueue;
+import org.asamk.signal.output.QueuedJsonWriter;
+import org.asamk.signal.util.DaemonExecutors;
 import org.asamk.signal.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +19,8 @@ import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 public class SocketHandler implements AutoCloseable {
 
@@ -29,21 +31,34 @@ public class SocketHandler implements AutoCloseable {
 
     private Thread listenerThread;
     private final List<AutoCloseable> channels = new ArrayList<>();
-    private final Consumer<SocketChannel> socketHandler;
+    private final BiConsumer<SocketChannel, JsonWriter> socketHandler;
     private final boolean noReceiveOnStart;
+    private final OutputQueue.Config outputQueueConfig;
 
-    public SocketHandler(final ServerSocketChannel serverChannel, final Manager m, final boolean noReceiveOnStart) {
+    public SocketHandler(
+            final ServerSocketChannel serverChannel,
+            final Manager m,
+            final boolean noReceiveOnStart,
+            final OutputQueue.Config outputQueueConfig
+    ) {
         this.serverChannel = serverChannel;
-        this.socketHandler = channel -> getSignalJsonRpcDispatcherHandler(channel).handleConnection(m);
+        this.socketHandler = (channel, jsonWriter) -> getSignalJsonRpcDispatcherHandler(channel,
+                jsonWriter).handleConnection(m);
         this.noReceiveOnStart = noReceiveOnStart;
+        this.outputQueueConfig = outputQueueConfig;
     }
 
     public SocketHandler(
-            final ServerSocketChannel serverChannel, final MultiAccountManager c, final boolean noReceiveOnStart
+            final ServerSocketChannel serverChannel,
+            final MultiAccountManager c,
+            final boolean noReceiveOnStart,
+            final OutputQueue.Config outputQueueConfig
     ) {
         this.serverChannel = serverChannel;
-        this.socketHandler = channel -> getSignalJsonRpcDispatcherHandler(channel).handleConnection(c);
+        this.socketHandler = (channel, jsonWriter) -> getSignalJsonRpcDispatcherHandler(channel,
+                jsonWriter).handleConnection(c);
         this.noReceiveOnStart = noReceiveOnStart;
+        this.outputQueueConfig = outputQueueConfig;
     }
 
     public void init() {
@@ -61,7 +76,7 @@ public class SocketHandler implements AutoCloseable {
         logger.debug("Starting JSON-RPC server on {}", address);
 
         listenerThread = Thread.ofPlatform().name("daemon-listener").start(() -> {
-            try (final var executor = Executors.newCachedThreadPool()) {
+            try (final var executor = DaemonExecutors.newExecutor("daemon-connection")) {
                 logger.info("Started JSON-RPC server on {}", address);
                 while (true) {
                     final var connectionId = threadNumber.getAndIncrement();
@@ -80,8 +95,9 @@ public class SocketHandler implements AutoCloseable {
                     }
                     channels.add(channel);
                     executor.submit(() -> {
-                        try (final var c = channel) {
-                            socketHandler.accept(c);
+                        // Each connection gets its own output queue, so a slow client doesn't block the others
+                        try (final var c = channel; final var jsonWriter = createJsonWriter(connectionId, c)) {
+                            socketHandler.accept(c, jsonWriter);
                         } catch (IOException e) {
                             logger.warn("Failed to close channel", e);
                         } catch (Throwable e) {
@@ -109,10 +125,26 @@ public class SocketHandler implements AutoCloseable {
         listenerThread = null;
     }
 
-    private SignalJsonRpcDispatcherHandler getSignalJsonRpcDispatcherHandler(final SocketChannel c) {
+    private SignalJsonRpcDispatcherHandler getSignalJsonRpcDispatcherHandler(
+            final SocketChannel c, final JsonWriter jsonOutputWriter
+    ) {
         final var lineSupplier = IOUtils.getLineSupplier(Channels.newReader(c, StandardCharsets.UTF_8));
-        final var jsonOutputWriter = new JsonWriterImpl(Channels.newWriter(c, StandardCharsets.UTF_8));
 
         return new SignalJsonRpcDispatcherHandler(jsonOutputWriter, lineSupplier, noReceiveOnStart);
     }
+
+    private QueuedJsonWriter createJsonWriter(final int connectionId, final SocketChannel c) {
+        return new QueuedJsonWriter("connection-" + connectionId,
+                Channels.newWriter(c, StandardCharsets.UTF_8),
+                outputQueueConfig,
+                () -> closeChannel(c));
+    }
+
+    private static void closeChannel(final SocketChannel c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close channel, ignoring: {}", e.getMessage());
+        }
+    }
 }
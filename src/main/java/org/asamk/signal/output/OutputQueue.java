@@ -0,0 +1,421 @@
+package org.asamk.signal.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of output lines for a single client connection, which are written by a separate writer thread.
+ * <p>
+ * A client that doesn't read its output fast enough therefore no longer blocks the thread producing the output, e.g.
+ * the receive thread of an account. What happens once the queue is full is determined by the {@link OverflowPolicy}.
+ * The writer threads are shared by all queues and only used while a queue has pending output, so idle clients don't
+ * occupy a thread.
+ */
+public final class OutputQueue implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputQueue.class);
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+    private static final ExecutorService writers = Executors.newCachedThreadPool(Thread.ofPlatform()
+            .name("output-writer-", 0)
+            .daemon()
+            .factory());
+
+    private final String name;
+    private final Config config;
+    private final Sink sink;
+    private final Runnable onDisconnect;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writerFinished = lock.newCondition();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private SpillFile spillFile;
+    private boolean writing;
+    private Thread writerThread;
+    private long inFlightSince;
+    private boolean closing;
+    private boolean closed;
+
+    private long written;
+    private long dropped;
+    private long spilled;
+    private int maxQueued;
+    private boolean overflowing;
+
+    public OutputQueue(final String name, final Config config, final Sink sink, final Runnable onDisconnect) {
+        this.name = name;
+        this.config = config;
+        this.sink = sink;
+        this.onDisconnect = onDisconnect;
+    }
+
+    /**
+     * Add a line to the queue, the line must not contain newline chars.
+     */
+    public void add(final String line) {
+        final var entry = new Entry(line, System.nanoTime());
+        var disconnect = false;
+        lock.lock();
+        try {
+            if (closing || closed) {
+                return;
+            }
+            if (spillFile != null) {
+                spill(entry);
+            } else if (queue.size() < config.capacity()) {
+                queue.add(entry);
+                maxQueued = Math.max(maxQueued, queue.size());
+                overflowing = false;
+            } else {
+                if (!overflowing) {
+                    overflowing = true;
+                    logger.warn("Client {} is not reading its output fast enough, applying overflow policy {}: {}",
+                            name,
+                            config.overflowPolicy(),
+                            getStatistics());
+                }
+                switch (config.overflowPolicy()) {
+                    case DROP_OLDEST -> {
+                        queue.poll();
+                        queue.add(entry);
+                        dropped++;
+                    }
+                    case DISCONNECT -> {
+                        dropped += queue.size() + 1;
+                        discard();
+                        disconnect = true;
+                    }
+                    case SPILL -> spill(entry);
+                }
+            }
+            startWriterIfRequired();
+        } finally {
+            lock.unlock();
+        }
+        if (disconnect) {
+            onDisconnect.run();
+        }
+    }
+
+    /**
+     * Let the sink write a keep alive message, unless there's already pending output for the client.
+     */
+    public void keepAlive() {
+        lock.lock();
+        try {
+            if (closing || closed || writing) {
+                return;
+            }
+            queue.add(new Entry(null, System.nanoTime()));
+            startWriterIfRequired();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Statistics getStatistics() {
+        lock.lock();
+        try {
+            final var queued = queue.size() + (spillFile == null ? 0 : spillFile.lines);
+            final long oldest;
+            if (inFlightSince != 0) {
+                oldest = inFlightSince;
+            } else if (!queue.isEmpty()) {
+                oldest = queue.peek().enqueuedAt();
+            } else if (spillFile != null) {
+                oldest = spillFile.firstEnqueuedAt;
+            } else {
+                oldest = 0;
+            }
+            final var lag = oldest == 0 ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest);
+            return new Statistics(written, dropped, spilled, queued, maxQueued, lag);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the remaining queued lines and wait for the writer to finish.
+     * If the client doesn't accept the remaining output in time, it is discarded.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            if (writerThread != Thread.currentThread()) {
+                var remainingNanos = TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+                while (writing && remainingNanos > 0) {
+                    remainingNanos = writerFinished.awaitNanos(remainingNanos);
+                }
+                if (writing) {
+                    logger.debug("Client {} didn't accept remaining output, discarding", name);
+                    discard();
+                    if (writerThread != null) {
+                        // Interrupting a blocked channel write closes the channel, so the writer finishes
+                        writerThread.interrupt();
+                    }
+                    while (writing) {
+                        writerFinished.await();
+                    }
+                }
+            }
+            discard();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        logger.debug("Output queue of client {} closed: {}", name, getStatistics());
+    }
+
+    private void startWriterIfRequired() {
+        if (writing || closed || (queue.isEmpty() && spillFile == null)) {
+            return;
+        }
+        writing = true;
+        writers.execute(this::writeQueuedLines);
+    }
+
+    private void writeQueuedLines() {
+        lock.lock();
+        try {
+            writerThread = Thread.currentThread();
+        } finally {
+            lock.unlock();
+        }
+        var stopped = false;
+        try {
+            while (true) {
+                final List<Entry> entries;
+                final SpillFile file;
+                lock.lock();
+                try {
+                    if (closed || (queue.isEmpty() && spillFile == null)) {
+                        // Must happen together with the check, otherwise a line added in between wouldn't start
+                        // a new writer
+                        stopWriting();
+                        stopped = true;
+                        return;
+                    }
+                    if (!queue.isEmpty()) {
+                        // Spilled lines have been added after the lines in memory
+                        entries = new ArrayList<>(queue);
+                        queue.clear();
+                        file = null;
+                        inFlightSince = entries.getFirst().enqueuedAt();
+                    } else {
+                        // Lines added while the spill file is being written are newer, so they can go to memory again
+                        entries = null;
+                        file = spillFile;
+                        spillFile = null;
+                        file.finishWriting();
+                        inFlightSince = file.firstEnqueuedAt;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                final var count = entries != null ? writeLines(entries) : writeLines(file);
+                sink.flush();
+
+                lock.lock();
+                try {
+                    written += count;
+                    inFlightSince = 0;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to write output to client {}, disconnecting: {}", name, e.getMessage());
+            lock.lock();
+            try {
+                discard();
+            } finally {
+                lock.unlock();
+            }
+            onDisconnect.run();
+        } finally {
+            if (!stopped) {
+                lock.lock();
+                try {
+                    stopWriting();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            // Don't leave the interrupt from close() on the pooled thread
+            Thread.interrupted();
+        }
+    }
+
+    private void stopWriting() {
+        writing = false;
+        writerThread = null;
+        inFlightSince = 0;
+        writerFinished.signalAll();
+    }
+
+    private int writeLines(final List<Entry> entries) throws IOException {
+        for (final var entry : entries) {
+            if (entry.line() == null) {
+                sink.writeKeepAlive();
+            } else {
+                sink.write(entry.line());
+            }
+        }
+        return entries.size();
+    }
+
+    private int writeLines(final SpillFile file) throws IOException {
+        var count = 0;
+        try (final var reader = file.openReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sink.write(line);
+                count++;
+            }
+        } finally {
+            file.delete();
+        }
+        return count;
+    }
+
+    private void spill(final Entry entry) {
+        try {
+            if (spillFile == null) {
+                spillFile = new SpillFile(name, entry.enqueuedAt());
+            }
+            spillFile.write(entry.line());
+            spilled++;
+        } catch (IOException e) {
+            logger.warn("Failed to spill output of client {} to disk, dropping it: {}", name, e.getMessage());
+            dropped++;
+        }
+    }
+
+    private void discard() {
+        closed = true;
+        queue.clear();
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest queued output.
+         */
+        DROP_OLDEST {
+            @Override
+            public String toString() {
+                return "drop-oldest";
+            }
+        },
+        /**
+         * Discard all queued output and close the connection.
+         */
+        DISCONNECT {
+            @Override
+            public String toString() {
+                return "disconnect";
+            }
+        },
+        /**
+         * Write further output to a temporary file, until the client has caught up.
+         */
+        SPILL {
+            @Override
+            public String toString() {
+                return "spill";
+            }
+        },
+    }
+
+    public record Config(int capacity, OverflowPolicy overflowPolicy) {
+
+        // Spilling is the only lossless policy, so clients that were fine with the previous blocking output keep
+        // receiving everything
+        public static final Config DEFAULT = new Config(1000, OverflowPolicy.SPILL);
+    }
+
+    /**
+     * @param queued Number of lines that are waiting to be written, in memory or spilled to disk
+     * @param lag    How long the oldest line that hasn't been written yet has been waiting
+     */
+    public record Statistics(long written, long dropped, long spilled, int queued, int maxQueued, Duration lag) {}
+
+    public interface Sink {
+
+        void write(String line) throws IOException;
+
+        void flush() throws IOException;
+
+        default void writeKeepAlive() throws IOException {
+        }
+    }
+
+    private record Entry(String line, long enqueuedAt) {}
+
+    private static final class SpillFile {
+
+        private final File file;
+        private final BufferedWriter writer;
+        private final long firstEnqueuedAt;
+        private int lines;
+
+        private SpillFile(final String name, final long firstEnqueuedAt) throws IOException {
+            this.file = File.createTempFile("signal-cli-output-" + name + "-", ".spill");
+            this.file.deleteOnExit();
+            this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+            this.firstEnqueuedAt = firstEnqueuedAt;
+        }
+
+        private void write(final String line) throws IOException {
+            writer.write(line);
+            writer.write("\n");
+            lines++;
+        }
+
+        private void finishWriting() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to write spill file, ignoring: {}", e.getMessage());
+            }
+        }
+
+        private BufferedReader openReader() throws IOException {
+            return Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        }
+
+        private void delete() {
+            finishWriting();
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                logger.warn("Failed to delete spill file, ignoring: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.asamk.signal.output;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.asamk.signal.util.Util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JSON writer that serializes the objects on the calling thread, but writes them to the client from the thread of
+ * its {@link OutputQueue}.
+ */
+public class QueuedJsonWriter implements JsonWriter, AutoCloseable {
+
+    private final ObjectMapper objectMapper;
+    private final OutputQueue queue;
+
+    public QueuedJsonWriter(
+            final String name, final Writer writer, final OutputQueue.Config config, final Runnable onDisconnect
+    ) {
+        this.objectMapper = Util.createJsonObjectMapper();
+        this.queue = new OutputQueue(name, config, new OutputQueue.Sink() {
+            @Override
+            public void write(final String line) throws IOException {
+                writer.write(line);
+                writer.write(System.lineSeparator());
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        }, onDisconnect);
+    }
+
+    @Override
+    public void write(final Object object) {
+        try {
+            queue.add(objectMapper.writeValueAsString(object));
+        } catch (JsonProcessingException e) {
+            // Some issue with json serialization, probably caused by a bug
+            throw new AssertionError(e);
+        }
+    }
+
+    public OutputQueue.Statistics getStatistics() {
+        return queue.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        queue.close();
+    }
+}
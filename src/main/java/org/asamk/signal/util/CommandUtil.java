@@ -5,6 +5,7 @@ import net.sourceforge.argparse4j.inf.Namespace;
 import org.asamk.signal.commands.exceptions.UserErrorException;
 import org.asamk.signal.manager.Manager;
 import org.asamk.signal.manager.api.CaptchaRequiredException;
+import org.asamk.signal.manager.api.DeliveryOrder;
 import org.asamk.signal.manager.api.GroupId;
 import org.asamk.signal.manager.api.GroupIdFormatException;
 import org.asamk.signal.manager.api.InvalidNumberException;
@@ -141,11 +142,21 @@ public class CommandUtil {
         return message;
     }
 
-    public static ReceiveConfig getReceiveConfig(final Namespace ns) {
+    public static ReceiveConfig getReceiveConfig(final Namespace ns) throws UserErrorException {
         final var ignoreAttachments = Boolean.TRUE.equals(ns.getBoolean("ignore-attachments"));
         final var ignoreStories = Boolean.TRUE.equals(ns.getBoolean("ignore-stories"));
         final var sendReadReceipts = Boolean.TRUE.equals(ns.getBoolean("send-read-receipts"));
-
-        return new ReceiveConfig(ignoreAttachments, ignoreStories, sendReadReceipts);
+        final var decryptParallelism = ns.getInt("decrypt-parallelism");
+        if (decryptParallelism != null && decryptParallelism < 1) {
+            throw new UserErrorException("Decrypt parallelism must be at least 1");
+        }
+        final var deliveryOrder = ns.<DeliveryOrder>get("delivery-order");
+
+        return new ReceiveConfig(ignoreAttachments,
+                ignoreStories,
+                sendReadReceipts,
+                ReceiveConfig.DEFAULT_BATCH_SIZE,
+                decryptParallelism == null ? ReceiveConfig.DEFAULT_DECRYPT_PARALLELISM : decryptParallelism,
+                deliveryOrder == null ? DeliveryOrder.SERVER : deliveryOrder);
     }
 }
@@ -0,0 +1,31 @@
+package org.asamk.signal.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors for client connections and JSON-RPC requests.
+ * They use platform threads by default, or virtual threads if enabled with {@link #setVirtualThreads(boolean)}.
+ */
+public final class DaemonExecutors {
+
+    private static volatile boolean virtualThreads;
+
+    private DaemonExecutors() {
+    }
+
+    public static void setVirtualThreads(final boolean virtualThreads) {
+        DaemonExecutors.virtualThreads = virtualThreads;
+    }
+
+    public static boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public static ExecutorService newExecutor(final String name) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name(name + "-", 0).factory());
+    }
+}